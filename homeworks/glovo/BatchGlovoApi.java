@@ -0,0 +1,24 @@
+package bg.sofia.uni.fmi.mjt.glovo;
+
+import bg.sofia.uni.fmi.mjt.glovo.delivery.Delivery;
+import bg.sofia.uni.fmi.mjt.glovo.delivery.Order;
+import bg.sofia.uni.fmi.mjt.glovo.exception.InvalidOrderException;
+
+import java.util.List;
+
+public interface BatchGlovoApi extends GlovoApi {
+
+    /**
+     * Assigns delivery guys to a batch of pending orders at once. Instead of serving the orders one by one,
+     * couriers are matched to orders so that the total cost of the batch is minimal, where the cost of an
+     * order is its price or its time (depending on its shipping method) relative to the best option it has.
+     *
+     * @param orders The pending orders.
+     * @return A list with one element per order, in the same order: the Delivery assigned to it,
+     * or null if no delivery guy could be assigned within its constraints.
+     * @throws InvalidOrderException    If any of the orders has no client or restaurant at the specified location
+     *                                  on the map, or if a location is outside the map's defined boundaries.
+     * @throws IllegalArgumentException If orders is null or contains null elements.
+     */
+    List<Delivery> assignBatch(List<Order> orders) throws InvalidOrderException;
+}
@@ -0,0 +1,185 @@
+package bg.sofia.uni.fmi.mjt.glovo.benchmark;
+
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.ControlCenter;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.DispatchMode;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.PackedGrid;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.Location;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntity;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntityType;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.path.AStarPathEngine;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.path.AltPathEngine;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.path.BfsPathEngine;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.path.BidirectionalBfsPathEngine;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.path.LandmarkIndex;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.path.PathEngine;
+import bg.sofia.uni.fmi.mjt.glovo.delivery.DeliveryInfo;
+import bg.sofia.uni.fmi.mjt.glovo.delivery.ShippingMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a single {@link ControlCenter#findOptimalDeliveryGuy} call on generated maps, for every
+ * shipping method and dispatch strategy.
+ * <p>
+ * A strategy is either {@link DispatchMode#DISTANCE_FIELD} mode, with or without the distance field
+ * cache, or {@link DispatchMode#PATH_PER_COURIER} mode with one of the path engines. The cache gets room
+ * for the field of every restaurant the orders visit, so the cached strategy measures cache hits: with a
+ * fixed budget, large maps would evict every field before its restaurant comes round again. The path engine is
+ * only used by the latter and the cache only by the former, so they are not crossed with each other:
+ * the 3 shapes, 2 sizes, 2 courier counts and 6 strategies make 72 trials of the 4 benchmarks, about
+ * half an hour in total. Narrow the parameters with {@code -p} for a quicker run.
+ * <p>
+ * Run {@link #main(String[])} (or the JMH runner with {@code -prof gc}) to also get the allocation
+ * rate per order: {@code gc.alloc.rate.norm} is the number of bytes allocated per call. Orders cycle
+ * through a fixed set of restaurant/client pairs, so the distance field cache sees the same hit pattern
+ * in every run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+    private static final int ORDERS = 64;
+    private static final long SEED = 42;
+    private static final long FIELD_OVERHEAD_BYTES = 1024;
+    private static final int LANDMARKS = 16;
+
+    @Param({"OPEN", "MAZE", "CITY_BLOCK"})
+    private MapGenerator.Shape shape;
+
+    @Param({"100", "1000"})
+    private int size;
+
+    @Param({"10", "1000"})
+    private int couriers;
+
+    @Param({"DISTANCE_FIELD", "DISTANCE_FIELD_UNCACHED", "BFS", "A_STAR", "BIDIRECTIONAL", "ALT"})
+    private String strategy;
+
+    private ControlCenter controlCenter;
+    private Location[] restaurants;
+    private Location[] clients;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        char[][] map = MapGenerator.generate(shape, size, couriers, SEED);
+        controlCenter = createControlCenter(map, strategy, distanceCacheBytes(map));
+
+        List<Location> restaurantLocations = new ArrayList<>();
+        List<Location> clientLocations = new ArrayList<>();
+        for (MapEntity[] row : controlCenter.getLayout()) {
+            for (MapEntity entity : row) {
+                if (entity.getType() == MapEntityType.RESTAURANT) {
+                    restaurantLocations.add(entity.getLocation());
+                } else if (entity.getType() == MapEntityType.CLIENT) {
+                    clientLocations.add(entity.getLocation());
+                }
+            }
+        }
+
+        restaurants = new Location[ORDERS];
+        clients = new Location[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            restaurants[i] = restaurantLocations.get(i % restaurantLocations.size());
+            clients[i] = clientLocations.get((i * 7) % clientLocations.size());
+        }
+    }
+
+    @Benchmark
+    public DeliveryInfo cheapest() {
+        int order = nextOrder();
+        return controlCenter.findOptimalDeliveryGuy(restaurants[order], clients[order], -1, -1,
+            ShippingMethod.CHEAPEST);
+    }
+
+    @Benchmark
+    public DeliveryInfo fastest() {
+        int order = nextOrder();
+        return controlCenter.findOptimalDeliveryGuy(restaurants[order], clients[order], -1, -1,
+            ShippingMethod.FASTEST);
+    }
+
+    @Benchmark
+    public DeliveryInfo fastestUnderPrice() {
+        int order = nextOrder();
+        return controlCenter.findOptimalDeliveryGuy(restaurants[order], clients[order], size * 2.0, -1,
+            ShippingMethod.FASTEST);
+    }
+
+    @Benchmark
+    public DeliveryInfo cheapestWithinTimeLimit() {
+        int order = nextOrder();
+        return controlCenter.findOptimalDeliveryGuy(restaurants[order], clients[order], -1, size * 2,
+            ShippingMethod.CHEAPEST);
+    }
+
+    private int nextOrder() {
+        next = (next + 1) % ORDERS;
+        return next;
+    }
+
+    /**
+     * Returns a budget that holds the distance field of every restaurant the orders visit.
+     */
+    private static long distanceCacheBytes(char[][] map) {
+        int restaurants = 0;
+        for (char[] row : map) {
+            for (char cell : row) {
+                if (cell == MapEntityType.RESTAURANT.getSymbol()) {
+                    restaurants++;
+                }
+            }
+        }
+
+        long fieldBytes = (long) map.length * map[0].length * Integer.BYTES + FIELD_OVERHEAD_BYTES;
+        return Math.min(restaurants, ORDERS) * fieldBytes;
+    }
+
+    private static ControlCenter createControlCenter(char[][] map, String strategy, long distanceCacheBytes) {
+        return switch (strategy) {
+            case "DISTANCE_FIELD" -> new ControlCenter(map, DispatchMode.DISTANCE_FIELD, distanceCacheBytes);
+            case "DISTANCE_FIELD_UNCACHED" -> new ControlCenter(map, DispatchMode.DISTANCE_FIELD, 0);
+            default -> new ControlCenter(map, DispatchMode.PATH_PER_COURIER, createPathEngine(map, strategy), 0);
+        };
+    }
+
+    private static PathEngine createPathEngine(char[][] map, String name) {
+        return switch (name) {
+            case "BFS" -> new BfsPathEngine();
+            case "A_STAR" -> new AStarPathEngine();
+            case "BIDIRECTIONAL" -> new BidirectionalBfsPathEngine();
+            case "ALT" -> new AltPathEngine(LandmarkIndex.build(PackedGrid.of(map), LANDMARKS));
+            default -> throw new IllegalArgumentException("Unknown dispatch strategy: " + name);
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(DispatchBenchmark.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(options).run();
+    }
+}
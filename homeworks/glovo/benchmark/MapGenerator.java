@@ -0,0 +1,140 @@
+package bg.sofia.uni.fmi.mjt.glovo.benchmark;
+
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntityType;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Generates reproducible synthetic maps for the dispatch benchmarks.
+ */
+public final class MapGenerator {
+    /**
+     * The shape of the generated streets.
+     */
+    public enum Shape {
+        /**
+         * Mostly roads with a few scattered walls.
+         */
+        OPEN,
+
+        /**
+         * A perfect maze: corridors one cell wide with exactly one path between any two cells.
+         */
+        MAZE,
+
+        /**
+         * Square blocks of buildings separated by a grid of streets.
+         */
+        CITY_BLOCK
+    }
+
+    private static final double OPEN_WALL_RATIO = 0.1;
+    private static final int BLOCK_SIZE = 8;
+    private static final int STREET_WIDTH = 2;
+
+    private static final char ROAD = MapEntityType.ROAD.getSymbol();
+    private static final char WALL = MapEntityType.WALL.getSymbol();
+
+    private MapGenerator() {
+    }
+
+    /**
+     * Generates a square map with the given number of couriers and one restaurant and client per
+     * hundred couriers (at least one of each), all placed on roads.
+     *
+     * @param shape    the street layout
+     * @param size     the side of the map in cells
+     * @param couriers the number of delivery guys, half cars and half bikes
+     * @param seed     the random seed
+     * @return the map layout
+     */
+    public static char[][] generate(Shape shape, int size, int couriers, long seed) {
+        Random random = new Random(seed);
+        char[][] map = switch (shape) {
+            case OPEN -> open(size, random);
+            case MAZE -> maze(size, random);
+            case CITY_BLOCK -> cityBlock(size);
+        };
+
+        int places = Math.max(1, couriers / 100);
+        place(map, MapEntityType.RESTAURANT, places, random);
+        place(map, MapEntityType.CLIENT, places, random);
+        place(map, MapEntityType.DELIVERY_GUY_CAR, couriers / 2, random);
+        place(map, MapEntityType.DELIVERY_GUY_BIKE, couriers - couriers / 2, random);
+        return map;
+    }
+
+    private static char[][] open(int size, Random random) {
+        char[][] map = new char[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                map[i][j] = random.nextDouble() < OPEN_WALL_RATIO ? WALL : ROAD;
+            }
+        }
+        return map;
+    }
+
+    private static char[][] maze(int size, Random random) {
+        char[][] map = new char[size][size];
+        for (char[] row : map) {
+            Arrays.fill(row, WALL);
+        }
+
+        // Iterative depth-first carving over the cells with even coordinates
+        Deque<int[]> stack = new ArrayDeque<>();
+        map[0][0] = ROAD;
+        stack.push(new int[] {0, 0});
+        int[][] directions = {{-2, 0}, {2, 0}, {0, -2}, {0, 2}};
+
+        while (!stack.isEmpty()) {
+            int[] current = stack.peek();
+            int start = random.nextInt(directions.length);
+            boolean carved = false;
+
+            for (int k = 0; k < directions.length && !carved; k++) {
+                int[] direction = directions[(start + k) % directions.length];
+                int x = current[0] + direction[0];
+                int y = current[1] + direction[1];
+                if (x >= 0 && x < size && y >= 0 && y < size && map[x][y] == WALL) {
+                    map[current[0] + direction[0] / 2][current[1] + direction[1] / 2] = ROAD;
+                    map[x][y] = ROAD;
+                    stack.push(new int[] {x, y});
+                    carved = true;
+                }
+            }
+
+            if (!carved) {
+                stack.pop();
+            }
+        }
+        return map;
+    }
+
+    private static char[][] cityBlock(int size) {
+        char[][] map = new char[size][size];
+        int period = BLOCK_SIZE + STREET_WIDTH;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                boolean street = i % period < STREET_WIDTH || j % period < STREET_WIDTH;
+                map[i][j] = street ? ROAD : WALL;
+            }
+        }
+        return map;
+    }
+
+    private static void place(char[][] map, MapEntityType type, int count, Random random) {
+        int size = map.length;
+        int placed = 0;
+        while (placed < count) {
+            int x = random.nextInt(size);
+            int y = random.nextInt(size);
+            if (map[x][y] == ROAD) {
+                map[x][y] = type.getSymbol();
+                placed++;
+            }
+        }
+    }
+}
@@ -3,38 +3,76 @@ package bg.sofia.uni.fmi.mjt.glovo.controlcenter;
 import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.Location;
 import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntity;
 import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntityType;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.path.BfsPathEngine;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.path.PathEngine;
 import bg.sofia.uni.fmi.mjt.glovo.delivery.DeliveryInfo;
 import bg.sofia.uni.fmi.mjt.glovo.delivery.DeliveryType;
 import bg.sofia.uni.fmi.mjt.glovo.delivery.ShippingMethod;
-import bg.sofia.uni.fmi.mjt.glovo.exception.InvalidOrderException;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 public class ControlCenter implements ControlCenterApi {
-    private final MapEntity[][] layout;
-    private final int rows;
-    private final int cols;
-    private static final int[][] DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    private final PackedGrid grid;
+    private final CourierIndex courierIndex;
+    private final DispatchMode dispatchMode;
+    private final PathEngine pathEngine;
+    private final DistanceFieldCache distanceFieldCache;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<BiConsumer<Location, Location>> moveListeners = new CopyOnWriteArrayList<>();
+    private static final int UNREACHABLE = PackedGrid.UNREACHABLE;
+    private static final long DEFAULT_DISTANCE_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final int PARALLEL_EVALUATION_THRESHOLD = 64;
+    private static final int INITIAL_CANDIDATES = 8;
+    private static final double EPSILON = 1e-9;
 
     public ControlCenter(char[][] mapLayout) {
-        if (mapLayout == null || mapLayout.length == 0 || mapLayout[0].length == 0) {
-            throw new IllegalArgumentException("Invalid map layout");
-        }
+        this(mapLayout, DispatchMode.DISTANCE_FIELD);
+    }
 
-        this.rows = mapLayout.length;
-        this.cols = mapLayout[0].length;
-        this.layout = new MapEntity[rows][cols];
+    public ControlCenter(char[][] mapLayout, DispatchMode dispatchMode) {
+        this(mapLayout, dispatchMode, DEFAULT_DISTANCE_CACHE_BYTES);
+    }
 
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                char c = mapLayout[i][j];
-                MapEntityType type = MapEntityType.fromSymbol(c);
-                this.layout[i][j] = new MapEntity(new Location(i, j), type);
-            }
+    public ControlCenter(char[][] mapLayout, DispatchMode dispatchMode, long distanceCacheBytes) {
+        this(mapLayout, dispatchMode, new BfsPathEngine(), distanceCacheBytes);
+    }
+
+    /**
+     * Creates a control center for the given map.
+     *
+     * @param mapLayout           the map, one symbol per cell
+     * @param dispatchMode        how courier distances are computed
+     * @param pathEngine          the engine for point-to-point searches in {@link DispatchMode#PATH_PER_COURIER} mode
+     * @param distanceCacheBytes  memory budget for cached distance fields; 0 disables caching
+     * @throws IllegalArgumentException if the layout, dispatch mode or path engine is invalid
+     *                                  or the budget is negative
+     */
+    public ControlCenter(char[][] mapLayout, DispatchMode dispatchMode, PathEngine pathEngine,
+                         long distanceCacheBytes) {
+        if (dispatchMode == null) {
+            throw new IllegalArgumentException("Dispatch mode cannot be null");
+        }
+        if (pathEngine == null) {
+            throw new IllegalArgumentException("Path engine cannot be null");
         }
+        if (distanceCacheBytes < 0) {
+            throw new IllegalArgumentException("Distance cache budget cannot be negative");
+        }
+
+        this.grid = PackedGrid.of(mapLayout);
+        this.courierIndex = indexDeliveryGuys();
+        this.dispatchMode = dispatchMode;
+        this.pathEngine = pathEngine;
+        this.distanceFieldCache = distanceCacheBytes == 0 ? null : new DistanceFieldCache(distanceCacheBytes);
     }
 
     @Override
@@ -42,137 +80,505 @@ public class ControlCenter implements ControlCenterApi {
                                              double maxPrice, int maxTime, ShippingMethod shippingMethod) {
         validateLocations(restaurantLocation, clientLocation);
 
-        List<MapEntity> deliveryGuys = findDeliveryGuys();
-        if (deliveryGuys.isEmpty()) {
-            return null;
+        lock.readLock().lock();
+        try {
+            return findOptimal(restaurantLocation, clientLocation, maxPrice, maxTime, shippingMethod);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<DeliveryInfo> findDeliveryOptions(Location restaurantLocation, Location clientLocation,
+                                                  double maxPrice, int maxTime, ShippingMethod shippingMethod) {
+        validateLocations(restaurantLocation, clientLocation);
+
+        lock.readLock().lock();
+        try {
+            return findOptions(restaurantLocation, clientLocation, maxPrice, maxTime, shippingMethod);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public DeliveryInfo findAndReserveDeliveryGuy(Location restaurantLocation, Location clientLocation,
+                                                  double maxPrice, int maxTime, ShippingMethod shippingMethod,
+                                                  Predicate<DeliveryInfo> reserve) {
+        validateLocations(restaurantLocation, clientLocation);
+        if (reserve == null) {
+            throw new IllegalArgumentException("Reserve cannot be null");
         }
 
-        DeliveryInfo bestDelivery = null;
+        // Moves take the write lock, so the options stay current until one of them is reserved
+        lock.readLock().lock();
+        try {
+            return reserveFirst(findOptions(restaurantLocation, clientLocation, maxPrice, maxTime, shippingMethod),
+                reserve);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-        for (MapEntity deliveryGuy : deliveryGuys) {
-            DeliveryType type = deliveryGuy.getType() == MapEntityType.DELIVERY_GUY_CAR ? 
-                              DeliveryType.CAR : DeliveryType.BIKE;
+    @Override
+    public DeliveryInfo reserveDeliveryGuy(List<DeliveryInfo> options, Predicate<DeliveryInfo> reserve) {
+        if (options == null || reserve == null) {
+            throw new IllegalArgumentException("Options and reserve cannot be null");
+        }
 
-            // Calculate paths
-            int toRestaurant = findShortestPath(deliveryGuy.getLocation(), restaurantLocation);
-            int toClient = findShortestPath(restaurantLocation, clientLocation);
+        lock.readLock().lock();
+        try {
+            List<DeliveryInfo> present = new ArrayList<>(options.size());
+            for (DeliveryInfo option : options) {
+                Location location = option.getDeliveryGuyLocation();
+                if (location == null || !grid.isInside(location.getX(), location.getY())) {
+                    continue;
+                }
 
-            if (toRestaurant == -1 || toClient == -1) {
-                continue; // No path found
+                int cell = grid.indexOf(location);
+                if (isDeliveryGuy(grid.typeAt(cell)) && deliveryTypeOf(cell) == option.getDeliveryType()) {
+                    present.add(option);
+                }
             }
+            return reserveFirst(present, reserve);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return grid.version();
+    }
 
-            double price = (toRestaurant + toClient) * type.getPricePerKm();
-            int time = (toRestaurant + toClient) * type.getTimePerKm();
+    /**
+     * Changes the type of a single cell of the map, e.g. to close a road with a wall or to open it again.
+     * Only the cached distance fields that the change can affect are dropped: adding a wall affects
+     * the fields that reach the cell and removing one affects the fields that reach one of its neighbours.
+     *
+     * @param location the location of the cell
+     * @param type     the new type of the cell
+     * @throws IllegalArgumentException if the location is invalid or the type is null
+     */
+    public void updateCell(Location location, MapEntityType type) {
+        validateLocations(location);
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
 
-            // Check constraints
-            if ((maxPrice != -1 && price > maxPrice) || (maxTime != -1 && time > maxTime)) {
-                continue;
+        lock.writeLock().lock();
+        try {
+            int cell = grid.indexOf(location);
+            MapEntityType previous = grid.typeAt(cell);
+            if (previous == type) {
+                return;
             }
 
-            DeliveryInfo current = new DeliveryInfo(deliveryGuy.getLocation(), price, time, type);
+            if (isDeliveryGuy(previous)) {
+                courierIndex.remove(cell);
+            }
+            grid.setType(cell, type);
+            if (isDeliveryGuy(type)) {
+                courierIndex.add(cell);
+            }
 
-            if (bestDelivery == null || isBetterDelivery(current, bestDelivery, shippingMethod)) {
-                bestDelivery = current;
+            if (previous == MapEntityType.WALL || type == MapEntityType.WALL) {
+                invalidateDistanceFields(cell, type == MapEntityType.WALL);
             }
+        } finally {
+            lock.writeLock().unlock();
         }
-
-        return bestDelivery;
     }
 
-    private boolean isBetterDelivery(DeliveryInfo current, DeliveryInfo best, ShippingMethod method) {
-        if (method == ShippingMethod.FASTEST) {
-            return current.getEstimatedTime() < best.getEstimatedTime() ||
-                  (current.getEstimatedTime() == best.getEstimatedTime() && 
-                   current.getPrice() < best.getPrice());
-        } else { // CHEAPEST
-            return current.getPrice() < best.getPrice() ||
-                  (current.getPrice() == best.getPrice() && 
-                   current.getEstimatedTime() < best.getEstimatedTime());
+    /**
+     * Moves a delivery guy to a road cell, leaving a road behind. Distances do not depend on where
+     * couriers stand, so no cached distance field is dropped. The move listeners are called before
+     * the move becomes visible to searches.
+     *
+     * @param from the current location of the delivery guy
+     * @param to   the new location of the delivery guy
+     * @throws IllegalArgumentException if a location is invalid, there is no delivery guy at from
+     *                                  or to is not a road
+     */
+    public void moveDeliveryGuy(Location from, Location to) {
+        validateLocations(from, to);
+
+        lock.writeLock().lock();
+        try {
+            int source = grid.indexOf(from);
+            int target = grid.indexOf(to);
+            MapEntityType type = grid.typeAt(source);
+
+            if (!isDeliveryGuy(type)) {
+                throw new IllegalArgumentException("There is no delivery guy at " + from);
+            }
+            if (grid.typeAt(target) != MapEntityType.ROAD) {
+                throw new IllegalArgumentException("Delivery guys can only move to a road");
+            }
+
+            grid.setType(source, MapEntityType.ROAD);
+            grid.setType(target, type);
+            courierIndex.move(source, target);
+            moveListeners.forEach(listener -> listener.accept(from, to));
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
-    private List<MapEntity> findDeliveryGuys() {
-        List<MapEntity> deliveryGuys = new ArrayList<>();
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                MapEntity entity = layout[i][j];
-                if (entity.getType() == MapEntityType.DELIVERY_GUY_CAR || 
-                    entity.getType() == MapEntityType.DELIVERY_GUY_BIKE) {
-                    deliveryGuys.add(entity);
+    private void invalidateDistanceFields(int cell, boolean wallAdded) {
+        if (distanceFieldCache == null) {
+            return;
+        }
+
+        int[] neighbours = new int[4];
+        int count = grid.neighbours(cell, neighbours);
+
+        distanceFieldCache.invalidateIf((source, field) -> {
+            if (wallAdded || source == cell) {
+                return field[cell] != UNREACHABLE;
+            }
+            for (int i = 0; i < count; i++) {
+                if (field[neighbours[i]] != UNREACHABLE) {
+                    return true;
                 }
             }
+            return false;
+        });
+    }
+
+    private DeliveryInfo findOptimal(Location restaurantLocation, Location clientLocation,
+                                     double maxPrice, int maxTime, ShippingMethod shippingMethod) {
+        if (courierIndex.size() == 0) {
+            return null;
+        }
+
+        int restaurant = grid.indexOf(restaurantLocation);
+        int client = grid.indexOf(clientLocation);
+
+        if (dispatchMode == DispatchMode.DISTANCE_FIELD) {
+            int[] fromRestaurant = restaurantDistanceField(restaurant);
+            if (fromRestaurant == null || fromRestaurant[client] == UNREACHABLE) {
+                return null;
+            }
+
+            int toClient = fromRestaurant[client];
+            int[] candidates = courierIndex.withinDistance(restaurant, limitRadius(toClient, maxPrice, maxTime));
+            int[] distances = distancesFromField(fromRestaurant, candidates, toClient);
+            return createDeliveryInfo(candidates, distances, selectBest(candidates, distances, maxPrice, maxTime,
+                shippingMethod));
+        }
+
+        int toClient = pathEngine.shortestPath(grid, restaurant, client);
+        if (toClient == UNREACHABLE) {
+            return null; // No path found
+        }
+        int radius = limitRadius(toClient, maxPrice, maxTime);
+
+        // Search the nearest couriers first: the best of them bounds how far away a better courier can be,
+        // since no path is shorter than the Manhattan distance
+        int[] nearest = withinRadius(courierIndex.nearest(restaurant, INITIAL_CANDIDATES), restaurant, radius);
+        Arrays.sort(nearest);
+        int[] nearestDistances = searchDistances(nearest, restaurant, toClient, new int[0], new int[0]);
+        int nearestBest = selectBest(nearest, nearestDistances, maxPrice, maxTime, shippingMethod);
+        if (nearestBest != -1) {
+            radius = Math.min(radius, boundRadius(nearest[nearestBest], nearestDistances[nearestBest], toClient,
+                shippingMethod));
         }
-        return deliveryGuys;
+
+        int[] candidates = courierIndex.withinDistance(restaurant, radius);
+        int[] distances = searchDistances(candidates, restaurant, toClient, nearest, nearestDistances);
+        return createDeliveryInfo(candidates, distances, selectBest(candidates, distances, maxPrice, maxTime,
+            shippingMethod));
     }
 
-    private int findShortestPath(Location start, Location end) {
-        if (!isValidLocation(start) || !isValidLocation(end)) {
-            return -1;
+    private List<DeliveryInfo> findOptions(Location restaurantLocation, Location clientLocation,
+                                           double maxPrice, int maxTime, ShippingMethod shippingMethod) {
+        if (courierIndex.size() == 0) {
+            return new ArrayList<>();
         }
 
-        boolean[][] visited = new boolean[rows][cols];
-        Queue<PathNode> queue = new ArrayDeque<>();
-        queue.add(new PathNode(start, 0));
-        visited[start.getX()][start.getY()] = true;
+        int restaurant = grid.indexOf(restaurantLocation);
+        int client = grid.indexOf(clientLocation);
+        int[] candidates;
+        int[] distances;
 
-        while (!queue.isEmpty()) {
-            PathNode current = queue.poll();
-            Location loc = current.location;
+        if (dispatchMode == DispatchMode.DISTANCE_FIELD) {
+            int[] fromRestaurant = restaurantDistanceField(restaurant);
+            if (fromRestaurant == null || fromRestaurant[client] == UNREACHABLE) {
+                return new ArrayList<>();
+            }
 
-            if (loc.equals(end)) {
-                return current.distance;
+            int toClient = fromRestaurant[client];
+            candidates = courierIndex.withinDistance(restaurant, limitRadius(toClient, maxPrice, maxTime));
+            distances = distancesFromField(fromRestaurant, candidates, toClient);
+        } else {
+            int toClient = pathEngine.shortestPath(grid, restaurant, client);
+            if (toClient == UNREACHABLE) {
+                return new ArrayList<>(); // No path found
             }
 
-            for (int[] dir : DIRECTIONS) {
-                int newX = loc.getX() + dir[0];
-                int newY = loc.getY() + dir[1];
+            candidates = courierIndex.withinDistance(restaurant, limitRadius(toClient, maxPrice, maxTime));
+            distances = searchDistances(candidates, restaurant, toClient, new int[0], new int[0]);
+        }
 
-                if (isValidMove(newX, newY, visited)) {
-                    visited[newX][newY] = true;
-                    queue.add(new PathNode(new Location(newX, newY), current.distance + 1));
-                }
+        List<DeliveryInfo> options = new ArrayList<>();
+        for (int i = 0; i < candidates.length; i++) {
+            if (distances[i] != UNREACHABLE && isWithinLimits(candidates[i], distances[i], maxPrice, maxTime)) {
+                options.add(createDeliveryInfo(candidates[i], distances[i]));
+            }
+        }
+
+        options.sort(comparatorFor(shippingMethod));
+        return options;
+    }
+
+    private static DeliveryInfo reserveFirst(List<DeliveryInfo> options, Predicate<DeliveryInfo> reserve) {
+        for (DeliveryInfo option : options) {
+            if (reserve.test(option)) {
+                return option;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the distance field of the restaurant, or null if the restaurant is a wall
+     * and therefore unreachable for every courier.
+     */
+    private int[] restaurantDistanceField(int restaurant) {
+        if (grid.isWall(restaurant)) {
+            return null;
+        }
+
+        // The grid is undirected, so one search from the restaurant yields both
+        // courier -> restaurant and restaurant -> client distances
+        return distanceFieldFrom(restaurant);
+    }
+
+    private static int[] distancesFromField(int[] fromRestaurant, int[] candidates, int toClient) {
+        int[] distances = new int[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            int toRestaurant = fromRestaurant[candidates[i]];
+            distances[i] = toRestaurant == UNREACHABLE ? UNREACHABLE : toRestaurant + toClient;
+        }
+        return distances;
+    }
+
+    /**
+     * Computes the total delivery distance (courier -> restaurant -> client) of the candidates with the path
+     * engine, reusing the distances already known for some of them. Unreachable couriers get {@link #UNREACHABLE}.
+     *
+     * @param known          couriers whose distance is already computed, in ascending order
+     * @param knownDistances the distances of the known couriers
+     */
+    private int[] searchDistances(int[] candidates, int restaurant, int toClient, int[] known, int[] knownDistances) {
+        int[] distances = new int[candidates.length];
+
+        IntStream indices = IntStream.range(0, candidates.length);
+        if (candidates.length >= PARALLEL_EVALUATION_THRESHOLD) {
+            // Path engines keep per-thread workspaces, so couriers can be searched concurrently
+            indices = indices.parallel();
+        }
+        indices.forEach(i -> {
+            int knownIndex = Arrays.binarySearch(known, candidates[i]);
+            if (knownIndex >= 0) {
+                distances[i] = knownDistances[knownIndex];
+                return;
+            }
+
+            int toRestaurant = pathEngine.shortestPath(grid, candidates[i], restaurant);
+            distances[i] = toRestaurant == UNREACHABLE ? UNREACHABLE : toRestaurant + toClient;
+        });
+
+        return distances;
+    }
+
+    /**
+     * Returns the index of the best candidate within the limits, or -1 if there is none. Candidates must be
+     * in ascending cell order so that ties are resolved the same way as a full scan of the map.
+     */
+    private int selectBest(int[] candidates, int[] distances, double maxPrice, int maxTime,
+                           ShippingMethod shippingMethod) {
+        int best = -1;
+        for (int i = 0; i < candidates.length; i++) {
+            if (distances[i] != UNREACHABLE && isWithinLimits(candidates[i], distances[i], maxPrice, maxTime) &&
+                (best == -1 || isBetterDelivery(candidates[i], distances[i],
+                    candidates[best], distances[best], shippingMethod))) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private DeliveryInfo createDeliveryInfo(int[] candidates, int[] distances, int best) {
+        return best == -1 ? null : createDeliveryInfo(candidates[best], distances[best]);
+    }
+
+    /**
+     * Returns the largest Manhattan distance from the restaurant at which a courier can still deliver
+     * within the limits, given that the total distance is at least that distance plus the restaurant -> client one.
+     */
+    private static int limitRadius(int toClient, double maxPrice, int maxTime) {
+        if (maxPrice == -1 && maxTime == -1) {
+            return Integer.MAX_VALUE;
+        }
+
+        double maxDistance = 0;
+        for (DeliveryType type : DeliveryType.values()) {
+            double byPrice = maxPrice == -1 ? Double.MAX_VALUE : maxPrice / type.getPricePerKm() + EPSILON;
+            double byTime = maxTime == -1 ? Double.MAX_VALUE : (double) maxTime / type.getTimePerKm() + EPSILON;
+            maxDistance = Math.max(maxDistance, Math.min(byPrice, byTime));
+        }
+        return toRadius(Math.floor(maxDistance) - toClient);
+    }
+
+    /**
+     * Returns the largest Manhattan distance from the restaurant at which a courier could still be
+     * at least as good as the given one.
+     */
+    private int boundRadius(int courier, int distance, int toClient, ShippingMethod method) {
+        DeliveryType type = deliveryTypeOf(courier);
+        double minRate = Double.MAX_VALUE;
+        double bound;
+
+        if (method == ShippingMethod.FASTEST) {
+            for (DeliveryType candidate : DeliveryType.values()) {
+                minRate = Math.min(minRate, candidate.getTimePerKm());
+            }
+            bound = (double) distance * type.getTimePerKm();
+        } else { // CHEAPEST
+            for (DeliveryType candidate : DeliveryType.values()) {
+                minRate = Math.min(minRate, candidate.getPricePerKm());
             }
+            bound = distance * type.getPricePerKm();
+        }
+
+        return toRadius(Math.floor(bound / minRate + EPSILON) - toClient);
+    }
+
+    private static int toRadius(double radius) {
+        return radius >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.max(-1, radius);
+    }
+
+    private int[] withinRadius(int[] couriers, int restaurant, int radius) {
+        int x = grid.rowOf(restaurant);
+        int y = grid.colOf(restaurant);
+        return Arrays.stream(couriers)
+            .filter(courier -> Math.abs(grid.rowOf(courier) - x) + Math.abs(grid.colOf(courier) - y) <= radius)
+            .toArray();
+    }
+
+    private DeliveryType deliveryTypeOf(int deliveryGuy) {
+        return grid.typeAt(deliveryGuy) == MapEntityType.DELIVERY_GUY_CAR ? DeliveryType.CAR : DeliveryType.BIKE;
+    }
+
+    private boolean isWithinLimits(int deliveryGuy, int distance, double maxPrice, int maxTime) {
+        DeliveryType type = deliveryTypeOf(deliveryGuy);
+        double price = distance * type.getPricePerKm();
+        int time = distance * type.getTimePerKm();
+
+        return (maxPrice == -1 || price <= maxPrice) && (maxTime == -1 || time <= maxTime);
+    }
+
+    private DeliveryInfo createDeliveryInfo(int deliveryGuy, int distance) {
+        DeliveryType type = deliveryTypeOf(deliveryGuy);
+        return new DeliveryInfo(grid.locationOf(deliveryGuy), distance * type.getPricePerKm(),
+            distance * type.getTimePerKm(), type);
+    }
+
+    private boolean isBetterDelivery(int current, int currentDistance, int best, int bestDistance,
+                                     ShippingMethod method) {
+        DeliveryType currentType = deliveryTypeOf(current);
+        DeliveryType bestType = deliveryTypeOf(best);
+        double currentPrice = currentDistance * currentType.getPricePerKm();
+        double bestPrice = bestDistance * bestType.getPricePerKm();
+        int currentTime = currentDistance * currentType.getTimePerKm();
+        int bestTime = bestDistance * bestType.getTimePerKm();
+
+        if (method == ShippingMethod.FASTEST) {
+            return currentTime < bestTime || (currentTime == bestTime && currentPrice < bestPrice);
+        } else { // CHEAPEST
+            return currentPrice < bestPrice || (currentPrice == bestPrice && currentTime < bestTime);
+        }
+    }
+
+    private static Comparator<DeliveryInfo> comparatorFor(ShippingMethod method) {
+        if (method == ShippingMethod.FASTEST) {
+            return Comparator.comparingInt(DeliveryInfo::getEstimatedTime)
+                .thenComparingDouble(DeliveryInfo::getPrice);
+        } else { // CHEAPEST
+            return Comparator.comparingDouble(DeliveryInfo::getPrice)
+                .thenComparingInt(DeliveryInfo::getEstimatedTime);
         }
+    }
 
-        return -1; // No path found
+    private static boolean isDeliveryGuy(MapEntityType type) {
+        return type == MapEntityType.DELIVERY_GUY_CAR || type == MapEntityType.DELIVERY_GUY_BIKE;
     }
 
-    private boolean isValidMove(int x, int y, boolean[][] visited) {
-        return x >= 0 && x < rows && y >= 0 && y < cols && 
-               layout[x][y].getType() != MapEntityType.WALL && 
-               !visited[x][y];
+    private CourierIndex indexDeliveryGuys() {
+        CourierIndex index = new CourierIndex(grid.rows(), grid.cols());
+        for (int cell = 0; cell < grid.size(); cell++) {
+            if (isDeliveryGuy(grid.typeAt(cell))) {
+                index.add(cell);
+            }
+        }
+        return index;
     }
 
-    private boolean isValidLocation(Location location) {
-        int x = location.getX();
-        int y = location.getY();
-        return x >= 0 && x < rows && y >= 0 && y < cols;
+    private int[] distanceFieldFrom(int source) {
+        if (distanceFieldCache == null) {
+            return computeDistanceField(source);
+        }
+
+        int[] field = distanceFieldCache.get(source);
+        if (field == null) {
+            field = computeDistanceField(source);
+            distanceFieldCache.put(source, field);
+        }
+        return field;
+    }
+
+    private int[] computeDistanceField(int source) {
+        int[] distances = new int[grid.size()];
+        grid.distanceField(source, distances);
+        return distances;
     }
 
     private void validateLocations(Location... locations) {
         for (Location loc : locations) {
-            if (loc == null || !isValidLocation(loc)) {
+            if (loc == null || !grid.isInside(loc.getX(), loc.getY())) {
                 throw new IllegalArgumentException("Invalid location: " + loc);
             }
         }
     }
 
     @Override
-    public MapEntity[][] getLayout() {
-        MapEntity[][] copy = new MapEntity[rows][];
-        for (int i = 0; i < rows; i++) {
-            copy[i] = layout[i].clone();
+    public MapEntityType typeAt(int x, int y) {
+        lock.readLock().lock();
+        try {
+            return grid.isInside(x, y) ? grid.typeAt(grid.indexOf(x, y)) : null;
+        } finally {
+            lock.readLock().unlock();
         }
-        return copy;
     }
 
-    private static class PathNode {
-        final Location location;
-        final int distance;
+    @Override
+    public void addMoveListener(BiConsumer<Location, Location> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+
+        moveListeners.add(listener);
+    }
 
-        PathNode(Location location, int distance) {
-            this.location = location;
-            this.distance = distance;
+    @Override
+    public MapEntity[][] getLayout() {
+        lock.readLock().lock();
+        try {
+            return grid.toLayout();
+        } finally {
+            lock.readLock().unlock();
         }
     }
 }
@@ -2,9 +2,14 @@ package bg.sofia.uni.fmi.mjt.glovo.controlcenter;
 
 import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.Location;
 import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntity;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntityType;
 import bg.sofia.uni.fmi.mjt.glovo.delivery.DeliveryInfo;
 import bg.sofia.uni.fmi.mjt.glovo.delivery.ShippingMethod;
 
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
 public interface ControlCenterApi {
     /**
      * Finds the optimal delivery person for a given delivery task. The method
@@ -22,6 +27,76 @@ public interface ControlCenterApi {
     DeliveryInfo findOptimalDeliveryGuy(Location restaurantLocation, Location clientLocation,
                                       double maxPrice, int maxTime, ShippingMethod shippingMethod);
 
+    /**
+     * Returns every delivery option that satisfies the given constraints, best first according
+     * to the shipping method. The first element, if any, is what
+     * {@link #findOptimalDeliveryGuy(Location, Location, double, int, ShippingMethod)} returns.
+     *
+     * @param restaurantLocation The location of the restaurant to start the delivery from.
+     * @param clientLocation     The location of the client receiving the delivery.
+     * @param maxPrice           The maximum price allowed for the delivery. Use -1 for no cost constraint.
+     * @param maxTime            The maximum time allowed for the delivery. Use -1 for no time constraint.
+     * @param shippingMethod     The method for shipping the delivery.
+     * @return A list of DeliveryInfo objects ordered from best to worst. Empty if no valid path is found.
+     */
+    List<DeliveryInfo> findDeliveryOptions(Location restaurantLocation, Location clientLocation,
+                                           double maxPrice, int maxTime, ShippingMethod shippingMethod);
+
+    /**
+     * Finds the delivery options like
+     * {@link #findDeliveryOptions(Location, Location, double, int, ShippingMethod)} and offers them, best first,
+     * to reserve, until it accepts one. No delivery guy can move between the search and the reservation.
+     *
+     * @param restaurantLocation The location of the restaurant to start the delivery from.
+     * @param clientLocation     The location of the client receiving the delivery.
+     * @param maxPrice           The maximum price allowed for the delivery. Use -1 for no cost constraint.
+     * @param maxTime            The maximum time allowed for the delivery. Use -1 for no time constraint.
+     * @param shippingMethod     The method for shipping the delivery.
+     * @param reserve            Reserves the delivery guy of an option; returns false if it is already reserved.
+     * @return The reserved option, or null if reserve accepted none.
+     * @throws IllegalArgumentException if reserve is null
+     */
+    DeliveryInfo findAndReserveDeliveryGuy(Location restaurantLocation, Location clientLocation,
+                                           double maxPrice, int maxTime, ShippingMethod shippingMethod,
+                                           Predicate<DeliveryInfo> reserve);
+
+    /**
+     * Offers delivery options found earlier, in order, to reserve, until it accepts one. Options whose delivery
+     * guy has since moved or left are skipped, and no delivery guy can move while the options are offered.
+     *
+     * @param options The options, usually best first.
+     * @param reserve Reserves the delivery guy of an option; returns false if it is already reserved.
+     * @return The reserved option, or null if reserve accepted none.
+     * @throws IllegalArgumentException if options or reserve is null
+     */
+    DeliveryInfo reserveDeliveryGuy(List<DeliveryInfo> options, Predicate<DeliveryInfo> reserve);
+
+    /**
+     * Returns the version of the map. It changes every time a cell of the map changes,
+     * so callers can tell whether a layout they obtained earlier is still current.
+     *
+     * @return the current version of the map
+     */
+    long getVersion();
+
+    /**
+     * Returns the type of a single cell of the map, without copying the whole layout.
+     *
+     * @param x the row of the cell
+     * @param y the column of the cell
+     * @return the type of the cell, or null if the cell is outside the map
+     */
+    MapEntityType typeAt(int x, int y);
+
+    /**
+     * Registers a listener that is told about every delivery guy that moves, while no delivery options
+     * can be searched, so that state kept per delivery guy location can follow the delivery guy.
+     *
+     * @param listener receives the old and the new location of the delivery guy
+     * @throws IllegalArgumentException if listener is null
+     */
+    void addMoveListener(BiConsumer<Location, Location> listener);
+
     /**
      * Returns the map
      *
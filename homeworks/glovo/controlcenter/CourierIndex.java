@@ -0,0 +1,275 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Spatial index of delivery guy positions on a grid, used to find couriers near a location
+ * without scanning the whole map.
+ * <p>
+ * The grid is split into square buckets of {@value #BUCKET_SIZE} x {@value #BUCKET_SIZE} cells, each
+ * holding the cell indices of the couriers inside it. Queries visit buckets in rings of growing
+ * Chebyshev distance around the bucket of the query cell and stop as soon as no unvisited bucket can
+ * contain a closer courier: every cell outside ring {@code r} is more than {@code r * BUCKET_SIZE}
+ * cells away by Manhattan distance.
+ * <p>
+ * All operations are thread-safe; moves are applied atomically with respect to queries.
+ */
+public class CourierIndex {
+    private static final int BUCKET_SIZE = 16;
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+
+    private final int rows;
+    private final int cols;
+    private final int bucketRows;
+    private final int bucketCols;
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    public CourierIndex(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Grid dimensions must be positive");
+        }
+
+        this.rows = rows;
+        this.cols = cols;
+        this.bucketRows = (rows + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        this.bucketCols = (cols + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        this.buckets = new int[bucketRows * bucketCols][];
+        this.bucketSizes = new int[bucketRows * bucketCols];
+    }
+
+    /**
+     * Adds a courier standing on the given cell.
+     *
+     * @param cell the cell index
+     */
+    public void add(int cell) {
+        lock.writeLock().lock();
+        try {
+            insert(cell);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the courier standing on the given cell.
+     *
+     * @param cell the cell index
+     * @return true if there was a courier on the cell
+     */
+    public boolean remove(int cell) {
+        lock.writeLock().lock();
+        try {
+            return delete(cell);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves a courier from one cell to another.
+     *
+     * @param from the current cell index of the courier
+     * @param to   the new cell index of the courier
+     * @throws IllegalArgumentException if there is no courier on the from cell
+     */
+    public void move(int from, int to) {
+        lock.writeLock().lock();
+        try {
+            if (!delete(from)) {
+                throw new IllegalArgumentException("No courier on cell " + from);
+            }
+            insert(to);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all couriers, in ascending cell order.
+     */
+    public int[] all() {
+        return withinDistance(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the couriers whose Manhattan distance to the given cell is at most the given radius.
+     *
+     * @param cell   the cell index of the query location
+     * @param radius the maximum Manhattan distance
+     * @return the cell indices of the couriers, in ascending cell order
+     */
+    public int[] withinDistance(int cell, int radius) {
+        if (radius < 0) {
+            return new int[0];
+        }
+
+        lock.readLock().lock();
+        try {
+            int x = cell / cols;
+            int y = cell % cols;
+            int[] found = new int[Math.min(size, 64)];
+            int count = 0;
+
+            for (int ring = 0; ring <= maxRing(cell) && (ring == 0 || lowerBoundOfRing(ring) <= radius); ring++) {
+                for (int bucket : bucketsInRing(cell, ring)) {
+                    for (int i = 0; i < bucketSizes[bucket]; i++) {
+                        int courier = buckets[bucket][i];
+                        if (manhattan(x, y, courier) <= radius) {
+                            if (count == found.length) {
+                                found = Arrays.copyOf(found, Math.max(1, count * 2));
+                            }
+                            found[count++] = courier;
+                        }
+                    }
+                }
+            }
+
+            int[] result = Arrays.copyOf(found, count);
+            Arrays.sort(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the k couriers closest to the given cell by Manhattan distance. Ties are broken by cell index.
+     *
+     * @param cell the cell index of the query location
+     * @param k    the number of couriers to return
+     * @return the cell indices of up to k couriers, closest first
+     */
+    public int[] nearest(int cell, int k) {
+        if (k <= 0) {
+            return new int[0];
+        }
+
+        lock.readLock().lock();
+        try {
+            int x = cell / cols;
+            int y = cell % cols;
+            // Candidates are encoded as distance << 32 | cell, so sorting orders them by distance, then cell
+            long[] candidates = new long[Math.min(size, 64)];
+            int count = 0;
+
+            for (int ring = 0; ring <= maxRing(cell); ring++) {
+                for (int bucket : bucketsInRing(cell, ring)) {
+                    for (int i = 0; i < bucketSizes[bucket]; i++) {
+                        int courier = buckets[bucket][i];
+                        if (count == candidates.length) {
+                            candidates = Arrays.copyOf(candidates, Math.max(1, count * 2));
+                        }
+                        candidates[count++] = ((long) manhattan(x, y, courier) << 32) | courier;
+                    }
+                }
+
+                if (countWithin(candidates, count, (long) ring * BUCKET_SIZE) >= k) {
+                    break; // Nothing outside this ring can be closer than what was already found
+                }
+            }
+
+            Arrays.sort(candidates, 0, count);
+            int[] result = new int[Math.min(k, count)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (int) candidates[i];
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int countWithin(long[] candidates, int count, long distance) {
+        int within = 0;
+        for (int i = 0; i < count; i++) {
+            if ((candidates[i] >>> 32) <= distance) {
+                within++;
+            }
+        }
+        return within;
+    }
+
+    private int manhattan(int x, int y, int cell) {
+        return Math.abs(cell / cols - x) + Math.abs(cell % cols - y);
+    }
+
+    private static long lowerBoundOfRing(int ring) {
+        return (long) (ring - 1) * BUCKET_SIZE + 1;
+    }
+
+    private int maxRing(int cell) {
+        int bucketX = cell / cols / BUCKET_SIZE;
+        int bucketY = cell % cols / BUCKET_SIZE;
+        return Math.max(Math.max(bucketX, bucketRows - 1 - bucketX), Math.max(bucketY, bucketCols - 1 - bucketY));
+    }
+
+    private int[] bucketsInRing(int cell, int ring) {
+        int bucketX = cell / cols / BUCKET_SIZE;
+        int bucketY = cell % cols / BUCKET_SIZE;
+
+        if (ring == 0) {
+            return new int[] {bucketX * bucketCols + bucketY};
+        }
+
+        int[] result = new int[8 * ring];
+        int count = 0;
+        for (int bx = bucketX - ring; bx <= bucketX + ring; bx++) {
+            if (bx < 0 || bx >= bucketRows) {
+                continue;
+            }
+            boolean edgeRow = bx == bucketX - ring || bx == bucketX + ring;
+            int step = edgeRow ? 1 : 2 * ring;
+            for (int by = bucketY - ring; by <= bucketY + ring; by += step) {
+                if (by >= 0 && by < bucketCols) {
+                    result[count++] = bx * bucketCols + by;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private int bucketOf(int cell) {
+        if (cell < 0 || cell >= rows * cols) {
+            throw new IllegalArgumentException("Cell is outside the grid: " + cell);
+        }
+        return (cell / cols / BUCKET_SIZE) * bucketCols + (cell % cols / BUCKET_SIZE);
+    }
+
+    private void insert(int cell) {
+        int bucket = bucketOf(cell);
+        if (buckets[bucket] == null) {
+            buckets[bucket] = new int[INITIAL_BUCKET_CAPACITY];
+        } else if (bucketSizes[bucket] == buckets[bucket].length) {
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], bucketSizes[bucket] * 2);
+        }
+        buckets[bucket][bucketSizes[bucket]++] = cell;
+        size++;
+    }
+
+    private boolean delete(int cell) {
+        int bucket = bucketOf(cell);
+        for (int i = 0; i < bucketSizes[bucket]; i++) {
+            if (buckets[bucket][i] == cell) {
+                buckets[bucket][i] = buckets[bucket][--bucketSizes[bucket]];
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+}
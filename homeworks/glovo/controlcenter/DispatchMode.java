@@ -0,0 +1,17 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter;
+
+/**
+ * Strategy used by the control center to compute courier distances for an order.
+ */
+public enum DispatchMode {
+    /**
+     * Runs a separate point-to-point search from every delivery guy to the restaurant.
+     */
+    PATH_PER_COURIER,
+
+    /**
+     * Runs a single search from the restaurant and reads the distance of every delivery guy
+     * (and of the client) from the resulting distance field.
+     */
+    DISTANCE_FIELD
+}
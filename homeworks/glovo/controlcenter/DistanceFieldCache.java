@@ -0,0 +1,129 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Bounded LRU cache of BFS distance fields keyed by the cell index of their source location.
+ * The size of the cache is limited by an approximate memory budget instead of an entry count,
+ * so that the same budget works for both small and large maps.
+ * <p>
+ * Cached fields are shared between callers and must be treated as read-only.
+ * All operations are thread-safe.
+ */
+public class DistanceFieldCache {
+    private static final long ENTRY_OVERHEAD_BYTES = 64;
+
+    private final long budgetBytes;
+    private final LinkedHashMap<Integer, int[]> fields;
+    private long usedBytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param budgetBytes the maximum approximate number of bytes the cached fields may occupy
+     * @throws IllegalArgumentException if budgetBytes is not positive
+     */
+    public DistanceFieldCache(long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive");
+        }
+
+        this.budgetBytes = budgetBytes;
+        this.fields = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached distance field for the given source cell, or null if it is not cached.
+     *
+     * @param sourceIndex the cell index of the field's source
+     * @return the cached field or null
+     */
+    public synchronized int[] get(int sourceIndex) {
+        int[] field = fields.get(sourceIndex);
+        if (field == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return field;
+    }
+
+    /**
+     * Caches a distance field, evicting the least recently used fields if the budget is exceeded.
+     * Fields larger than the whole budget are not cached.
+     *
+     * @param sourceIndex the cell index of the field's source
+     * @param field       the distance field
+     */
+    public synchronized void put(int sourceIndex, int[] field) {
+        long size = sizeOf(field);
+        if (size > budgetBytes) {
+            return;
+        }
+
+        int[] previous = fields.put(sourceIndex, field);
+        if (previous != null) {
+            usedBytes -= sizeOf(previous);
+        }
+        usedBytes += size;
+
+        Iterator<Map.Entry<Integer, int[]>> eldest = fields.entrySet().iterator();
+        while (usedBytes > budgetBytes && eldest.hasNext()) {
+            usedBytes -= sizeOf(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops the cached fields matching the given condition, keeping the rest.
+     *
+     * @param condition tested with the source cell index and the field of every cached entry
+     * @return the number of dropped fields
+     */
+    public synchronized int invalidateIf(BiPredicate<Integer, int[]> condition) {
+        int dropped = 0;
+        Iterator<Map.Entry<Integer, int[]>> entries = fields.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Integer, int[]> entry = entries.next();
+            if (condition.test(entry.getKey(), entry.getValue())) {
+                usedBytes -= sizeOf(entry.getValue());
+                entries.remove();
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Drops every cached field. Must be called whenever the layout the fields were computed on changes.
+     */
+    public synchronized void invalidateAll() {
+        fields.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized int size() {
+        return fields.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static long sizeOf(int[] field) {
+        return (long) field.length * Integer.BYTES + ENTRY_OVERHEAD_BYTES;
+    }
+}
@@ -0,0 +1,73 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter;
+
+import java.util.Arrays;
+
+/**
+ * Reusable scratch memory for searches over a {@link PackedGrid}.
+ * <p>
+ * Visited cells are tracked with epoch stamps: starting a new search only increments
+ * the epoch instead of clearing the arrays, so consecutive searches do not allocate or
+ * touch cells they never visit. A workspace is not thread-safe and is meant to be
+ * confined to a single thread.
+ */
+public final class GridSearchWorkspace {
+    private final int[] stamps;
+    private final int[] distances;
+    private final IntRingQueue queue;
+    private final int[] neighbours;
+    private int epoch;
+
+    public GridSearchWorkspace(int cells) {
+        this.stamps = new int[cells];
+        this.distances = new int[cells];
+        this.queue = new IntRingQueue(cells);
+        this.neighbours = new int[4];
+    }
+
+    /**
+     * Returns the number of cells this workspace was created for.
+     */
+    public int size() {
+        return stamps.length;
+    }
+
+    /**
+     * Starts a new search, forgetting all cells visited by the previous one.
+     */
+    public void reset() {
+        queue.clear();
+        epoch++;
+        if (epoch == 0) {
+            // The stamp counter wrapped around, so stale stamps could collide with new epochs
+            Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+    }
+
+    public boolean isVisited(int cell) {
+        return stamps[cell] == epoch;
+    }
+
+    public void visit(int cell, int distance) {
+        stamps[cell] = epoch;
+        distances[cell] = distance;
+    }
+
+    /**
+     * Returns the distance recorded for a cell visited in the current search.
+     */
+    public int distance(int cell) {
+        return distances[cell];
+    }
+
+    public IntRingQueue queue() {
+        return queue;
+    }
+
+    /**
+     * Returns a scratch array large enough for {@link PackedGrid#neighbours(int, int[])}.
+     */
+    public int[] neighbourBuffer() {
+        return neighbours;
+    }
+}
@@ -0,0 +1,59 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Fixed-capacity FIFO queue of primitive ints backed by a ring buffer.
+ */
+public final class IntRingQueue {
+    private final int[] elements;
+    private final int mask;
+    private int head;
+    private int tail;
+
+    /**
+     * Creates a queue able to hold at least the given number of elements.
+     *
+     * @param capacity the minimal capacity
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public IntRingQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.elements = new int[size];
+        this.mask = size - 1;
+    }
+
+    public void add(int element) {
+        if (tail - head == elements.length) {
+            throw new IllegalStateException("Queue is full");
+        }
+        elements[tail++ & mask] = element;
+    }
+
+    public int poll() {
+        if (head == tail) {
+            throw new NoSuchElementException("Queue is empty");
+        }
+        return elements[head++ & mask];
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    public int size() {
+        return tail - head;
+    }
+
+    public void clear() {
+        head = 0;
+        tail = 0;
+    }
+}
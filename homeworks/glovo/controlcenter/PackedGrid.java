@@ -0,0 +1,295 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter;
+
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.Location;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntity;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntityType;
+
+import java.util.Arrays;
+
+/**
+ * Compact representation of a delivery map: one byte per cell holding the ordinal of its
+ * {@link MapEntityType}, with cells addressed by the int index {@code x * cols + y}.
+ * <p>
+ * Searches over the grid reuse a per-thread {@link GridSearchWorkspace} and do not allocate.
+ * <p>
+ * Cells can be changed with {@link #setType(int, MapEntityType)}; every change increments the grid's
+ * {@link #version()}. The grid itself does not synchronize changes with searches, callers are expected
+ * to guard it with a read-write lock.
+ */
+public class PackedGrid {
+    public static final int UNREACHABLE = -1;
+
+    private static final MapEntityType[] TYPES = MapEntityType.values();
+    private static final byte WALL = (byte) MapEntityType.WALL.ordinal();
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int rows;
+    private final int cols;
+    private final byte[] cells;
+    private final ThreadLocal<GridSearchWorkspace> workspaces;
+    private volatile long version;
+    private volatile long wallsVersion;
+
+    private PackedGrid(int rows, int cols, byte[] cells) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = cells;
+        this.workspaces = ThreadLocal.withInitial(() -> new GridSearchWorkspace(cells.length));
+    }
+
+    /**
+     * Packs a map given as one symbol per cell.
+     *
+     * @param mapLayout the map layout
+     * @return the packed grid
+     * @throws IllegalArgumentException if the layout is empty, not rectangular or contains unknown symbols
+     */
+    public static PackedGrid of(char[][] mapLayout) {
+        if (mapLayout == null || mapLayout.length == 0 || mapLayout[0] == null || mapLayout[0].length == 0) {
+            throw new IllegalArgumentException("Invalid map layout");
+        }
+
+        int rows = mapLayout.length;
+        int cols = mapLayout[0].length;
+        if ((long) rows * cols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Map layout is too large");
+        }
+
+        byte[] cells = new byte[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            if (mapLayout[i] == null || mapLayout[i].length != cols) {
+                throw new IllegalArgumentException("Map layout must be rectangular");
+            }
+            for (int j = 0; j < cols; j++) {
+                cells[i * cols + j] = (byte) MapEntityType.fromSymbol(mapLayout[i][j]).ordinal();
+            }
+        }
+
+        return new PackedGrid(rows, cols, cells);
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int size() {
+        return cells.length;
+    }
+
+    public int indexOf(int x, int y) {
+        return x * cols + y;
+    }
+
+    public int indexOf(Location location) {
+        return indexOf(location.getX(), location.getY());
+    }
+
+    public int rowOf(int cell) {
+        return cell / cols;
+    }
+
+    public int colOf(int cell) {
+        return cell % cols;
+    }
+
+    public Location locationOf(int cell) {
+        return new Location(rowOf(cell), colOf(cell));
+    }
+
+    public boolean isInside(int x, int y) {
+        return x >= 0 && x < rows && y >= 0 && y < cols;
+    }
+
+    public MapEntityType typeAt(int cell) {
+        return TYPES[cells[cell]];
+    }
+
+    public boolean isWall(int cell) {
+        return cells[cell] == WALL;
+    }
+
+    /**
+     * Changes the type of a cell.
+     *
+     * @param cell the cell index
+     * @param type the new type of the cell
+     * @throws IllegalArgumentException if type is null
+     */
+    public void setType(int cell, MapEntityType type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+
+        boolean wasWall = cells[cell] == WALL;
+        cells[cell] = (byte) type.ordinal();
+        version++;
+        if (wasWall != (type == MapEntityType.WALL)) {
+            wallsVersion++;
+        }
+    }
+
+    /**
+     * Returns the number of changes made to the grid since it was created.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the number of changes that turned a cell into a wall or a wall into something else.
+     * Distances only depend on walls, so data derived from distances stays valid while this is unchanged.
+     */
+    public long wallsVersion() {
+        return wallsVersion;
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of the dimensions and of which cells are walls, taken 64 cells at a
+     * time. Couriers, restaurants and clients do not affect distances and are not part of it. Two grids
+     * with the same fingerprint have the same walls with overwhelming probability, which makes it
+     * suitable for checking that distance data precomputed for a grid still belongs to it.
+     */
+    public long fingerprint() {
+        long hash = FNV_OFFSET_BASIS;
+        hash = (hash ^ rows) * FNV_PRIME;
+        hash = (hash ^ cols) * FNV_PRIME;
+        long walls = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] == WALL) {
+                walls |= 1L << cell;
+            }
+            if ((cell & (Long.SIZE - 1)) == Long.SIZE - 1 || cell == cells.length - 1) {
+                hash = (hash ^ walls) * FNV_PRIME;
+                walls = 0;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the workspace of the calling thread.
+     */
+    public GridSearchWorkspace workspace() {
+        return workspaces.get();
+    }
+
+    /**
+     * Writes the up to four non-wall neighbours of a cell into the given array.
+     *
+     * @param cell       the cell index
+     * @param neighbours an array of at least four elements
+     * @return the number of neighbours written
+     */
+    public int neighbours(int cell, int[] neighbours) {
+        int x = cell / cols;
+        int y = cell - x * cols;
+        int count = 0;
+
+        if (x > 0 && cells[cell - cols] != WALL) {
+            neighbours[count++] = cell - cols;
+        }
+        if (x < rows - 1 && cells[cell + cols] != WALL) {
+            neighbours[count++] = cell + cols;
+        }
+        if (y > 0 && cells[cell - 1] != WALL) {
+            neighbours[count++] = cell - 1;
+        }
+        if (y < cols - 1 && cells[cell + 1] != WALL) {
+            neighbours[count++] = cell + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Computes the BFS distance from the source to every cell. Walls are never entered,
+     * although the source itself may be any cell.
+     *
+     * @param source    the source cell index
+     * @param distances output array of {@link #size()} elements; unreachable cells get {@link #UNREACHABLE}
+     */
+    public void distanceField(int source, int[] distances) {
+        Arrays.fill(distances, UNREACHABLE);
+
+        GridSearchWorkspace workspace = workspace();
+        IntRingQueue queue = workspace.queue();
+        queue.clear();
+        int[] neighbours = workspace.neighbourBuffer();
+
+        distances[source] = 0;
+        queue.add(source);
+
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            int count = neighbours(current, neighbours);
+
+            for (int i = 0; i < count; i++) {
+                int next = neighbours[i];
+                if (distances[next] == UNREACHABLE) {
+                    distances[next] = distances[current] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the BFS distance between two cells. Walls are never entered,
+     * although the start itself may be any cell.
+     *
+     * @param start the start cell index
+     * @param end   the end cell index
+     * @return the length of the shortest path, or {@link #UNREACHABLE} if there is none
+     */
+    public int shortestPath(int start, int end) {
+        if (start == end) {
+            return 0;
+        }
+
+        GridSearchWorkspace workspace = workspace();
+        workspace.reset();
+        IntRingQueue queue = workspace.queue();
+        int[] neighbours = workspace.neighbourBuffer();
+
+        workspace.visit(start, 0);
+        queue.add(start);
+
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            int distance = workspace.distance(current) + 1;
+            int count = neighbours(current, neighbours);
+
+            for (int i = 0; i < count; i++) {
+                int next = neighbours[i];
+                if (!workspace.isVisited(next)) {
+                    if (next == end) {
+                        return distance;
+                    }
+                    workspace.visit(next, distance);
+                    queue.add(next);
+                }
+            }
+        }
+
+        return UNREACHABLE;
+    }
+
+    /**
+     * Expands the grid into one {@link MapEntity} per cell.
+     *
+     * @return a freshly allocated layout
+     */
+    public MapEntity[][] toLayout() {
+        MapEntity[][] layout = new MapEntity[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                layout[i][j] = new MapEntity(new Location(i, j), typeAt(indexOf(i, j)));
+            }
+        }
+        return layout;
+    }
+}
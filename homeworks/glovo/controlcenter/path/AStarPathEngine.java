@@ -0,0 +1,169 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter.path;
+
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.PackedGrid;
+
+import java.util.Arrays;
+
+/**
+ * A* search guided by the Manhattan distance to the end. The heuristic never overestimates
+ * on a four-connected grid with unit moves and is consistent, so the first time the end is
+ * taken from the open set its distance is optimal.
+ * <p>
+ * Subclasses may plug in a tighter heuristic by overriding {@link #estimate(PackedGrid, int, int)},
+ * as long as it stays consistent.
+ */
+public class AStarPathEngine implements PathEngine {
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<>();
+
+    @Override
+    public int shortestPath(PackedGrid grid, int start, int end) {
+        if (start == end) {
+            return 0;
+        }
+        if (grid.isWall(end)) {
+            return PackedGrid.UNREACHABLE;
+        }
+
+        Workspace workspace = workspaceFor(grid.size());
+        workspace.reset();
+
+        int[] neighbours = workspace.neighbours;
+
+        workspace.open(start, 0, estimate(grid, start, end));
+
+        while (workspace.heapSize > 0) {
+            long top = workspace.pollMin();
+            int current = (int) top;
+
+            if (workspace.isClosed(current)) {
+                continue; // Stale entry left behind by a later improvement
+            }
+            workspace.close(current);
+
+            int distance = workspace.g[current];
+            if (current == end) {
+                return distance;
+            }
+
+            int count = grid.neighbours(current, neighbours);
+            for (int i = 0; i < count; i++) {
+                int next = neighbours[i];
+                if (!workspace.isClosed(next) && (!workspace.isSeen(next) || workspace.g[next] > distance + 1)) {
+                    workspace.open(next, distance + 1, distance + 1 + estimate(grid, next, end));
+                }
+            }
+        }
+
+        return PackedGrid.UNREACHABLE;
+    }
+
+    /**
+     * Returns a lower bound of the distance between a cell and the end of the search.
+     *
+     * @param grid the grid being searched
+     * @param cell the cell index
+     * @param end  the end cell index
+     * @return the Manhattan distance between the cells
+     */
+    protected int estimate(PackedGrid grid, int cell, int end) {
+        return Math.abs(grid.rowOf(cell) - grid.rowOf(end)) + Math.abs(grid.colOf(cell) - grid.colOf(end));
+    }
+
+    private Workspace workspaceFor(int cells) {
+        Workspace workspace = workspaces.get();
+        if (workspace == null || workspace.g.length != cells) {
+            workspace = new Workspace(cells);
+            workspaces.set(workspace);
+        }
+        return workspace;
+    }
+
+    /**
+     * Per-thread search state: tentative distances, epoch-stamped seen/closed markers and a
+     * binary min-heap of {@code f << 32 | cell} keys.
+     */
+    private static final class Workspace {
+        private final int[] g;
+        private final int[] seenStamps;
+        private final int[] closedStamps;
+        private final int[] neighbours = new int[4];
+        private long[] heap;
+        private int heapSize;
+        private int epoch;
+
+        Workspace(int cells) {
+            this.g = new int[cells];
+            this.seenStamps = new int[cells];
+            this.closedStamps = new int[cells];
+            this.heap = new long[Math.max(16, Math.min(cells, 1024))];
+        }
+
+        void reset() {
+            heapSize = 0;
+            epoch++;
+            if (epoch == 0) {
+                Arrays.fill(seenStamps, 0);
+                Arrays.fill(closedStamps, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean isSeen(int cell) {
+            return seenStamps[cell] == epoch;
+        }
+
+        boolean isClosed(int cell) {
+            return closedStamps[cell] == epoch;
+        }
+
+        void close(int cell) {
+            closedStamps[cell] = epoch;
+        }
+
+        void open(int cell, int distance, int estimate) {
+            seenStamps[cell] = epoch;
+            g[cell] = distance;
+            push(((long) estimate << 32) | cell);
+        }
+
+        private void push(long key) {
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, heap.length * 2);
+            }
+
+            int index = heapSize++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heap[parent] <= key) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                index = parent;
+            }
+            heap[index] = key;
+        }
+
+        long pollMin() {
+            long min = heap[0];
+            long last = heap[--heapSize];
+
+            int index = 0;
+            int half = heapSize >>> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
+            if (heapSize > 0) {
+                heap[index] = last;
+            }
+            return min;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter.path;
+
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.PackedGrid;
+
+/**
+ * A* search guided by landmark lower bounds (the ALT technique), combined with the Manhattan distance.
+ * Both bounds are consistent, so is their maximum, and paths are exactly as short as with plain BFS.
+ * <p>
+ * A landmark index describes one exact layout. When the grid no longer matches it (e.g. after a
+ * wall was removed, which could make landmark bounds overestimate), the engine falls back to plain
+ * Manhattan A* until an index for the new layout is provided.
+ */
+public class AltPathEngine extends AStarPathEngine {
+    private final LandmarkIndex index;
+    private final PathEngine fallback = new AStarPathEngine();
+    private volatile Verification lastVerification;
+
+    /**
+     * Creates a new engine using the given landmarks.
+     *
+     * @param index the landmark index of the grids this engine will search
+     * @throws IllegalArgumentException if index is null
+     */
+    public AltPathEngine(LandmarkIndex index) {
+        if (index == null) {
+            throw new IllegalArgumentException("Landmark index cannot be null");
+        }
+
+        this.index = index;
+    }
+
+    @Override
+    public int shortestPath(PackedGrid grid, int start, int end) {
+        if (!matches(grid)) {
+            return fallback.shortestPath(grid, start, end);
+        }
+        return super.shortestPath(grid, start, end);
+    }
+
+    @Override
+    protected int estimate(PackedGrid grid, int cell, int end) {
+        return Math.max(super.estimate(grid, cell, end), index.lowerBound(cell, end));
+    }
+
+    private boolean matches(PackedGrid grid) {
+        // Fingerprinting scans the whole grid, so do it once per change of the walls
+        long version = grid.wallsVersion();
+        Verification verification = lastVerification;
+        if (verification == null || verification.grid() != grid || verification.version() != version) {
+            verification = new Verification(grid, version, index.matches(grid));
+            lastVerification = verification;
+        }
+        return verification.matches();
+    }
+
+    private record Verification(PackedGrid grid, long version, boolean matches) {
+    }
+}
@@ -0,0 +1,13 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter.path;
+
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.PackedGrid;
+
+/**
+ * Plain breadth-first search. It explores every cell closer to the start than the end.
+ */
+public class BfsPathEngine implements PathEngine {
+    @Override
+    public int shortestPath(PackedGrid grid, int start, int end) {
+        return grid.shortestPath(start, end);
+    }
+}
@@ -0,0 +1,82 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter.path;
+
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.GridSearchWorkspace;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.IntRingQueue;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.PackedGrid;
+
+/**
+ * Breadth-first search run simultaneously from the start and from the end. Each step expands
+ * one whole level of the smaller frontier; once a level connects both searches, the shortest
+ * connection found in it is the shortest path.
+ */
+public class BidirectionalBfsPathEngine implements PathEngine {
+    private final ThreadLocal<GridSearchWorkspace[]> workspaces = new ThreadLocal<>();
+
+    @Override
+    public int shortestPath(PackedGrid grid, int start, int end) {
+        if (start == end) {
+            return 0;
+        }
+        if (grid.isWall(end)) {
+            return PackedGrid.UNREACHABLE;
+        }
+
+        GridSearchWorkspace[] pair = workspacesFor(grid.size());
+        GridSearchWorkspace forward = pair[0];
+        GridSearchWorkspace backward = pair[1];
+        forward.reset();
+        backward.reset();
+
+        forward.visit(start, 0);
+        forward.queue().add(start);
+        backward.visit(end, 0);
+        backward.queue().add(end);
+
+        while (!forward.queue().isEmpty() && !backward.queue().isEmpty()) {
+            int best = forward.queue().size() <= backward.queue().size()
+                ? expandLevel(grid, forward, backward)
+                : expandLevel(grid, backward, forward);
+
+            if (best != Integer.MAX_VALUE) {
+                return best;
+            }
+        }
+
+        return PackedGrid.UNREACHABLE;
+    }
+
+    private static int expandLevel(PackedGrid grid, GridSearchWorkspace side, GridSearchWorkspace other) {
+        IntRingQueue queue = side.queue();
+        int[] neighbours = side.neighbourBuffer();
+        int best = Integer.MAX_VALUE;
+
+        for (int remaining = queue.size(); remaining > 0; remaining--) {
+            int current = queue.poll();
+            int distance = side.distance(current) + 1;
+            int count = grid.neighbours(current, neighbours);
+
+            for (int i = 0; i < count; i++) {
+                int next = neighbours[i];
+                if (side.isVisited(next)) {
+                    continue;
+                }
+                if (other.isVisited(next)) {
+                    best = Math.min(best, distance + other.distance(next));
+                }
+                side.visit(next, distance);
+                queue.add(next);
+            }
+        }
+
+        return best;
+    }
+
+    private GridSearchWorkspace[] workspacesFor(int cells) {
+        GridSearchWorkspace[] pair = workspaces.get();
+        if (pair == null || pair[0].size() != cells) {
+            pair = new GridSearchWorkspace[] {new GridSearchWorkspace(cells), new GridSearchWorkspace(cells)};
+            workspaces.set(pair);
+        }
+        return pair;
+    }
+}
@@ -0,0 +1,304 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter.path;
+
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.PackedGrid;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Precomputed BFS distances from a few landmark cells to every cell of a grid, used to bound distances
+ * from below without searching (the ALT technique). By the triangle inequality, for any landmark L
+ * {@code d(a, b) >= |d(L, a) - d(L, b)|}, and landmarks chosen far apart make that bound tight.
+ * <p>
+ * The index is built once per layout and can be saved in a compact binary format. Loading maps the
+ * file into memory instead of reading it, so startup does not depend on the size of the grid and
+ * the operating system pages distances in on demand.
+ * <p>
+ * File format (big-endian): magic, format version, rows, cols, grid fingerprint (long), landmark count,
+ * bytes per distance (2 or 4), the landmark cells, then one block of {@code rows * cols} distances per
+ * landmark. Unreachable cells hold the all-ones value of the distance width.
+ */
+public class LandmarkIndex {
+    private static final int MAGIC = 0x474C564C; // "GLVL"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES + Long.BYTES;
+    private static final int SHORT_UNREACHABLE = 0xFFFF;
+
+    private final int rows;
+    private final int cols;
+    private final long fingerprint;
+    private final int[] landmarks;
+    private final int bytesPerDistance;
+    private final ByteBuffer[] distances;
+
+    private LandmarkIndex(int rows, int cols, long fingerprint, int[] landmarks, int bytesPerDistance,
+                          ByteBuffer[] distances) {
+        this.rows = rows;
+        this.cols = cols;
+        this.fingerprint = fingerprint;
+        this.landmarks = landmarks;
+        this.bytesPerDistance = bytesPerDistance;
+        this.distances = distances;
+    }
+
+    /**
+     * Builds an index for the grid. The first landmark is the first non-wall cell; every next one is the
+     * cell farthest from all landmarks chosen so far, preferring cells none of them can reach, so that
+     * every connected part of the map gets a landmark.
+     *
+     * @param grid          the grid
+     * @param landmarkCount the maximum number of landmarks
+     * @return the index
+     * @throws IllegalArgumentException if grid is null or landmarkCount is not positive
+     */
+    public static LandmarkIndex build(PackedGrid grid, int landmarkCount) {
+        if (grid == null) {
+            throw new IllegalArgumentException("Grid cannot be null");
+        }
+        if (landmarkCount <= 0) {
+            throw new IllegalArgumentException("Landmark count must be positive");
+        }
+
+        int cells = grid.size();
+        int[][] fields = new int[landmarkCount][];
+        int[] chosen = new int[landmarkCount];
+        int[] closest = new int[cells];
+        Arrays.fill(closest, Integer.MAX_VALUE);
+
+        int count = 0;
+        int next = firstNonWall(grid);
+        while (next != -1 && count < landmarkCount) {
+            int[] field = new int[cells];
+            grid.distanceField(next, field);
+            fields[count] = field;
+            chosen[count++] = next;
+
+            for (int cell = 0; cell < cells; cell++) {
+                if (field[cell] != PackedGrid.UNREACHABLE) {
+                    closest[cell] = Math.min(closest[cell], field[cell]);
+                }
+            }
+            next = farthest(grid, closest);
+        }
+
+        int maxDistance = 0;
+        for (int i = 0; i < count; i++) {
+            for (int distance : fields[i]) {
+                maxDistance = Math.max(maxDistance, distance);
+            }
+        }
+        int bytesPerDistance = maxDistance < SHORT_UNREACHABLE ? Short.BYTES : Integer.BYTES;
+
+        ByteBuffer[] distances = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            distances[i] = ByteBuffer.allocate(Math.multiplyExact(cells, bytesPerDistance));
+            for (int distance : fields[i]) {
+                if (bytesPerDistance == Short.BYTES) {
+                    distances[i].putShort((short) (distance == PackedGrid.UNREACHABLE ? SHORT_UNREACHABLE : distance));
+                } else {
+                    distances[i].putInt(distance);
+                }
+            }
+            distances[i].flip();
+        }
+
+        return new LandmarkIndex(grid.rows(), grid.cols(), grid.fingerprint(),
+            Arrays.copyOf(chosen, count), bytesPerDistance, distances);
+    }
+
+    /**
+     * Opens an index saved with {@link #save(Path)} by memory-mapping it.
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IllegalArgumentException if file is null or is not a valid index file
+     * @throws UncheckedIOException     if the file cannot be read
+     */
+    public static LandmarkIndex load(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), HEADER_BYTES));
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Not a landmark index file: " + file);
+            }
+
+            int rows = header.getInt();
+            int cols = header.getInt();
+            long fingerprint = header.getLong();
+            int count = header.getInt();
+            int bytesPerDistance = header.getInt();
+            long cells = (long) rows * cols;
+            long headerSize = HEADER_BYTES + (long) count * Integer.BYTES;
+            long blockSize = cells * bytesPerDistance;
+
+            if (rows <= 0 || cols <= 0 || count < 0 ||
+                (bytesPerDistance != Short.BYTES && bytesPerDistance != Integer.BYTES) ||
+                channel.size() != headerSize + blockSize * count || blockSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Corrupted landmark index file: " + file);
+            }
+
+            ByteBuffer landmarkBuffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                (long) count * Integer.BYTES);
+            int[] landmarks = new int[count];
+            landmarkBuffer.asIntBuffer().get(landmarks);
+
+            ByteBuffer[] distances = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                distances[i] = channel.map(FileChannel.MapMode.READ_ONLY, headerSize + blockSize * i, blockSize);
+            }
+
+            return new LandmarkIndex(rows, cols, fingerprint, landmarks, bytesPerDistance, distances);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load landmark index from " + file, e);
+        }
+    }
+
+    /**
+     * Loads the index from the file if it exists and was built for this exact grid,
+     * otherwise builds it and saves it to the file.
+     *
+     * @param file          the index file
+     * @param grid          the grid
+     * @param landmarkCount the maximum number of landmarks if the index has to be built
+     * @return the index
+     */
+    public static LandmarkIndex loadOrBuild(Path file, PackedGrid grid, int landmarkCount) {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+
+        if (Files.exists(file)) {
+            try {
+                LandmarkIndex index = load(file);
+                if (index.matches(grid)) {
+                    return index;
+                }
+            } catch (IllegalArgumentException | UncheckedIOException e) {
+                // Fall through and rebuild the index
+            }
+        }
+
+        LandmarkIndex index = build(grid, landmarkCount);
+        index.save(file);
+        return index;
+    }
+
+    /**
+     * Writes the index to a file.
+     *
+     * @param file the target file
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public void save(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + landmarks.length * Integer.BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(rows).putInt(cols).putLong(fingerprint)
+            .putInt(landmarks.length).putInt(bytesPerDistance);
+        for (int landmark : landmarks) {
+            header.putInt(landmark);
+        }
+        header.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            for (ByteBuffer block : distances) {
+                writeFully(channel, block.duplicate().rewind());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save landmark index to " + file, e);
+        }
+    }
+
+    /**
+     * Checks whether the index was built for a grid with exactly this layout.
+     *
+     * @param grid the grid
+     * @return true if the dimensions and the fingerprint of the grid match the index
+     */
+    public boolean matches(PackedGrid grid) {
+        return grid.rows() == rows && grid.cols() == cols && grid.fingerprint() == fingerprint;
+    }
+
+    public int landmarkCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * Returns the BFS distance between a landmark and a cell.
+     *
+     * @param landmark the landmark number, from 0 to {@link #landmarkCount()} - 1
+     * @param cell     the cell index
+     * @return the distance, or {@link PackedGrid#UNREACHABLE} if the landmark cannot reach the cell
+     */
+    public int distance(int landmark, int cell) {
+        if (bytesPerDistance == Short.BYTES) {
+            int distance = Short.toUnsignedInt(distances[landmark].getShort(cell * Short.BYTES));
+            return distance == SHORT_UNREACHABLE ? PackedGrid.UNREACHABLE : distance;
+        }
+        return distances[landmark].getInt(cell * Integer.BYTES);
+    }
+
+    /**
+     * Returns a lower bound of the length of the shortest path between two cells. Landmarks that
+     * cannot reach both cells carry no information and are skipped.
+     *
+     * @param from the first cell index
+     * @param to   the second cell index
+     * @return the best lower bound the landmarks give, at least 0
+     */
+    public int lowerBound(int from, int to) {
+        int bound = 0;
+        for (int landmark = 0; landmark < landmarks.length; landmark++) {
+            int fromDistance = distance(landmark, from);
+            int toDistance = distance(landmark, to);
+            if (fromDistance != PackedGrid.UNREACHABLE && toDistance != PackedGrid.UNREACHABLE) {
+                bound = Math.max(bound, Math.abs(fromDistance - toDistance));
+            }
+        }
+        return bound;
+    }
+
+    private static int firstNonWall(PackedGrid grid) {
+        for (int cell = 0; cell < grid.size(); cell++) {
+            if (!grid.isWall(cell)) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    private static int farthest(PackedGrid grid, int[] closest) {
+        int farthest = -1;
+        for (int cell = 0; cell < grid.size(); cell++) {
+            if (grid.isWall(cell)) {
+                continue;
+            }
+            if (closest[cell] == Integer.MAX_VALUE) {
+                return cell; // Not reachable from any landmark yet
+            }
+            if (closest[cell] > 0 && (farthest == -1 || closest[cell] > closest[farthest])) {
+                farthest = cell;
+            }
+        }
+        return farthest;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
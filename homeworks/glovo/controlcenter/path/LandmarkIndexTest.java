@@ -0,0 +1,129 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter.path;
+
+import bg.sofia.uni.fmi.mjt.glovo.benchmark.MapGenerator;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.PackedGrid;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntityType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class LandmarkIndexTest {
+    private static final int SIZE = 30;
+    private static final int LANDMARKS = 4;
+
+    private PackedGrid grid;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        grid = PackedGrid.of(MapGenerator.generate(MapGenerator.Shape.CITY_BLOCK, SIZE, 10, 3));
+        file = Files.createTempFile("landmarks", ".idx");
+        Files.delete(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testSaveAndLoadRoundTrip() {
+        LandmarkIndex built = LandmarkIndex.build(grid, LANDMARKS);
+        built.save(file);
+        LandmarkIndex loaded = LandmarkIndex.load(file);
+
+        assertTrue(loaded.matches(grid));
+        assertEquals(LANDMARKS, loaded.landmarkCount());
+        assertSameDistances(built, loaded);
+    }
+
+    @Test
+    public void testLoadOrBuildReusesMatchingFile() throws IOException {
+        LandmarkIndex built = LandmarkIndex.loadOrBuild(file, grid, LANDMARKS);
+        assertTrue(Files.exists(file));
+        byte[] saved = Files.readAllBytes(file);
+
+        LandmarkIndex loaded = LandmarkIndex.loadOrBuild(file, grid, LANDMARKS);
+        assertArrayEquals("A matching file must not be rewritten", saved, Files.readAllBytes(file));
+        assertSameDistances(built, loaded);
+    }
+
+    @Test
+    public void testLoadOrBuildRebuildsWhenWallsChange() {
+        LandmarkIndex.build(grid, LANDMARKS).save(file);
+
+        int cell = firstRoad(grid);
+        grid.setType(cell, MapEntityType.WALL);
+        assertFalse("The fingerprint must reflect the new wall", LandmarkIndex.load(file).matches(grid));
+
+        LandmarkIndex rebuilt = LandmarkIndex.loadOrBuild(file, grid, LANDMARKS);
+        assertTrue(rebuilt.matches(grid));
+        assertTrue(LandmarkIndex.load(file).matches(grid));
+        assertSameDistances(LandmarkIndex.build(grid, LANDMARKS), rebuilt);
+    }
+
+    @Test
+    public void testFingerprintIgnoresNonWallCells() {
+        LandmarkIndex index = LandmarkIndex.build(grid, LANDMARKS);
+
+        grid.setType(firstRoad(grid), MapEntityType.DELIVERY_GUY_CAR);
+        assertTrue(index.matches(grid));
+    }
+
+    @Test
+    public void testLoadRejectsCorruptFiles() throws IOException {
+        LandmarkIndex.build(grid, LANDMARKS).save(file);
+        byte[] saved = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(saved, saved.length - 1));
+        assertRejected("Truncated file");
+
+        byte[] badMagic = saved.clone();
+        badMagic[0] ^= 1;
+        Files.write(file, badMagic);
+        assertRejected("Bad magic");
+
+        Files.write(file, Arrays.copyOf(saved, 10));
+        assertRejected("Truncated header");
+
+        // A corrupt file is replaced by a freshly built index
+        LandmarkIndex rebuilt = LandmarkIndex.loadOrBuild(file, grid, LANDMARKS);
+        assertTrue(rebuilt.matches(grid));
+        assertArrayEquals(saved, Files.readAllBytes(file));
+    }
+
+    private void assertRejected(String message) {
+        try {
+            LandmarkIndex.load(file);
+            fail(message + " must be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private void assertSameDistances(LandmarkIndex expected, LandmarkIndex actual) {
+        assertEquals(expected.landmarkCount(), actual.landmarkCount());
+        for (int landmark = 0; landmark < expected.landmarkCount(); landmark++) {
+            for (int cell = 0; cell < grid.size(); cell++) {
+                assertEquals("Landmark " + landmark + ", cell " + cell,
+                    expected.distance(landmark, cell), actual.distance(landmark, cell));
+            }
+        }
+    }
+
+    private static int firstRoad(PackedGrid grid) {
+        for (int cell = 0; cell < grid.size(); cell++) {
+            if (grid.typeAt(cell) == MapEntityType.ROAD) {
+                return cell;
+            }
+        }
+        throw new IllegalStateException("The map has no roads");
+    }
+}
@@ -0,0 +1,22 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter.path;
+
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.PackedGrid;
+
+/**
+ * Computes point-to-point shortest path lengths on a {@link PackedGrid}.
+ * <p>
+ * Every implementation must return exactly the same lengths as a plain BFS: moves are
+ * between the four orthogonal neighbours, walls are never entered, the start cell may be
+ * of any type and a start equal to the end has length 0. Implementations must be thread-safe.
+ */
+public interface PathEngine {
+    /**
+     * Returns the length of the shortest path between two cells.
+     *
+     * @param grid  the grid to search
+     * @param start the start cell index
+     * @param end   the end cell index
+     * @return the length of the shortest path, or {@link PackedGrid#UNREACHABLE} if there is none
+     */
+    int shortestPath(PackedGrid grid, int start, int end);
+}
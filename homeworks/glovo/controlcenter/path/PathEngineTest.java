@@ -0,0 +1,83 @@
+package bg.sofia.uni.fmi.mjt.glovo.controlcenter.path;
+
+import bg.sofia.uni.fmi.mjt.glovo.benchmark.MapGenerator;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.PackedGrid;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntityType;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PathEngineTest {
+    private static final int SIZE = 40;
+    private static final int QUERIES = 300;
+    private static final int LANDMARKS = 4;
+
+    private final Random random = new Random(11);
+    private final PathEngine bfs = new BfsPathEngine();
+
+    private static char[][] layout(String... rows) {
+        char[][] layout = new char[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            layout[i] = rows[i].toCharArray();
+        }
+        return layout;
+    }
+
+    private static List<PathEngine> engines(PackedGrid grid) {
+        return List.of(new AStarPathEngine(), new BidirectionalBfsPathEngine(),
+            new AltPathEngine(LandmarkIndex.build(grid, LANDMARKS)));
+    }
+
+    @Test
+    public void testEnginesMatchBfsOnGeneratedMaps() {
+        for (MapGenerator.Shape shape : MapGenerator.Shape.values()) {
+            for (long seed = 1; seed <= 3; seed++) {
+                PackedGrid grid = PackedGrid.of(MapGenerator.generate(shape, SIZE, 10, seed));
+                assertEnginesMatchBfs(shape + " seed " + seed, grid, engines(grid));
+            }
+        }
+    }
+
+    @Test
+    public void testEnginesMatchBfsOnDisconnectedMap() {
+        PackedGrid grid = PackedGrid.of(layout(
+            "R..#....",
+            ".#.#.##.",
+            "...#..#C",
+            "####....",
+            "A..#.#.."));
+
+        assertEquals(PackedGrid.UNREACHABLE, bfs.shortestPath(grid, grid.indexOf(0, 0), grid.indexOf(2, 7)));
+        assertEnginesMatchBfs("Disconnected map", grid, engines(grid));
+    }
+
+    @Test
+    public void testAltEngineMatchesBfsAfterWallsChange() {
+        PackedGrid grid = PackedGrid.of(MapGenerator.generate(MapGenerator.Shape.MAZE, SIZE, 10, 5));
+        List<PathEngine> engines = engines(grid);
+
+        // Opening walls can make the old landmark bounds overestimate, closing them can disconnect cells
+        for (int change = 0; change < 10; change++) {
+            int cell = random.nextInt(grid.size());
+            grid.setType(cell, grid.isWall(cell) ? MapEntityType.ROAD : MapEntityType.WALL);
+            assertEnginesMatchBfs("Change " + change, grid, engines);
+        }
+    }
+
+    private void assertEnginesMatchBfs(String message, PackedGrid grid, List<PathEngine> engines) {
+        for (int query = 0; query < QUERIES; query++) {
+            // Every few queries start and end on the same cell; starts on walls are allowed as well
+            int start = random.nextInt(grid.size());
+            int end = query % 10 == 0 ? start : random.nextInt(grid.size());
+            int expected = bfs.shortestPath(grid, start, end);
+
+            for (PathEngine engine : engines) {
+                assertEquals(message + ", " + engine.getClass().getSimpleName() + " from " + grid.locationOf(start) +
+                    " to " + grid.locationOf(end), expected, engine.shortestPath(grid, start, end));
+            }
+        }
+    }
+}
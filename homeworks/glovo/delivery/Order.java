@@ -0,0 +1,56 @@
+package bg.sofia.uni.fmi.mjt.glovo.delivery;
+
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntity;
+
+public class Order {
+    private final MapEntity client;
+    private final MapEntity restaurant;
+    private final String foodItem;
+    private final ShippingMethod shippingMethod;
+    private final double maxPrice;
+    private final int maxTime;
+
+    /**
+     * Creates a new pending order.
+     *
+     * @param client         the delivery destination
+     * @param restaurant     the restaurant the food item is sourced from
+     * @param foodItem       the name of the food item
+     * @param shippingMethod whether the client prefers the cheapest or the fastest delivery
+     * @param maxPrice       the maximum price of the delivery, -1 for no limit
+     * @param maxTime        the maximum delivery time in minutes, -1 for no limit
+     */
+    public Order(MapEntity client, MapEntity restaurant, String foodItem,
+                 ShippingMethod shippingMethod, double maxPrice, int maxTime) {
+        this.client = client;
+        this.restaurant = restaurant;
+        this.foodItem = foodItem;
+        this.shippingMethod = shippingMethod;
+        this.maxPrice = maxPrice;
+        this.maxTime = maxTime;
+    }
+
+    public MapEntity getClient() {
+        return client;
+    }
+
+    public MapEntity getRestaurant() {
+        return restaurant;
+    }
+
+    public String getFoodItem() {
+        return foodItem;
+    }
+
+    public ShippingMethod getShippingMethod() {
+        return shippingMethod;
+    }
+
+    public double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public int getMaxTime() {
+        return maxTime;
+    }
+}
@@ -0,0 +1,272 @@
+package bg.sofia.uni.fmi.mjt.glovo.dispatch;
+
+import bg.sofia.uni.fmi.mjt.glovo.BatchGlovoApi;
+import bg.sofia.uni.fmi.mjt.glovo.GlovoApi;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.ControlCenterApi;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.Location;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntity;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntityType;
+import bg.sofia.uni.fmi.mjt.glovo.delivery.Delivery;
+import bg.sofia.uni.fmi.mjt.glovo.delivery.DeliveryInfo;
+import bg.sofia.uni.fmi.mjt.glovo.delivery.Order;
+import bg.sofia.uni.fmi.mjt.glovo.delivery.ShippingMethod;
+import bg.sofia.uni.fmi.mjt.glovo.exception.InvalidOrderException;
+import bg.sofia.uni.fmi.mjt.glovo.exception.NoAvailableDeliveryGuyException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe {@link GlovoApi} implementation that can be called from many threads at once.
+ * <p>
+ * Every successful order reserves its delivery guy until {@link #releaseDeliveryGuy(Location)} is called,
+ * so concurrent orders never get the same courier. Reservation is a single atomic insert into a
+ * concurrent set: an order walks its candidates from best to worst and takes the first one it manages
+ * to reserve, without any lock of its own. Reservations are kept by the current location of the delivery
+ * guy and follow the delivery guy when the control center moves it. The control center offers the
+ * candidates while no delivery guy can move, so a reservation never lands on a cell the delivery guy has
+ * just left.
+ * <p>
+ * Batches of orders are matched to couriers globally with a minimum-cost assignment, see
+ * {@link #assignBatch(List)}.
+ */
+public class DispatchService implements BatchGlovoApi {
+    private static final int NO_LIMIT = -1;
+    private static final Comparator<Order> BY_RESTAURANT =
+        Comparator.comparingInt((Order order) -> order.getRestaurant().getLocation().getX())
+            .thenComparingInt(order -> order.getRestaurant().getLocation().getY());
+
+    private final ControlCenterApi controlCenter;
+    private final Set<Location> reservedDeliveryGuys;
+
+    /**
+     * Creates a new dispatch service over the given control center.
+     *
+     * @param controlCenter the control center used to evaluate delivery options
+     * @throws IllegalArgumentException if controlCenter is null
+     */
+    public DispatchService(ControlCenterApi controlCenter) {
+        if (controlCenter == null) {
+            throw new IllegalArgumentException("Control center cannot be null");
+        }
+
+        this.controlCenter = controlCenter;
+        this.reservedDeliveryGuys = ConcurrentHashMap.newKeySet();
+        controlCenter.addMoveListener(this::moveReservation);
+    }
+
+    @Override
+    public Delivery getCheapestDelivery(MapEntity client, MapEntity restaurant, String foodItem)
+        throws NoAvailableDeliveryGuyException, InvalidOrderException {
+        return dispatch(client, restaurant, foodItem, NO_LIMIT, NO_LIMIT, ShippingMethod.CHEAPEST);
+    }
+
+    @Override
+    public Delivery getFastestDelivery(MapEntity client, MapEntity restaurant, String foodItem)
+        throws NoAvailableDeliveryGuyException, InvalidOrderException {
+        return dispatch(client, restaurant, foodItem, NO_LIMIT, NO_LIMIT, ShippingMethod.FASTEST);
+    }
+
+    @Override
+    public Delivery getFastestDeliveryUnderPrice(MapEntity client, MapEntity restaurant, String foodItem,
+                                                 double maxPrice)
+        throws NoAvailableDeliveryGuyException, InvalidOrderException {
+        return dispatch(client, restaurant, foodItem, maxPrice, NO_LIMIT, ShippingMethod.FASTEST);
+    }
+
+    @Override
+    public Delivery getCheapestDeliveryWithinTimeLimit(MapEntity client, MapEntity restaurant, String foodItem,
+                                                       int maxTime)
+        throws NoAvailableDeliveryGuyException, InvalidOrderException {
+        return dispatch(client, restaurant, foodItem, NO_LIMIT, maxTime, ShippingMethod.CHEAPEST);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Orders are evaluated grouped by restaurant, so orders from the same restaurant reuse the
+     * distance field the control center computed (and cached) for the first of them. Couriers reserved
+     * by concurrent single orders while the batch was being matched are replaced by the next best
+     * available option of the affected order.
+     */
+    @Override
+    public List<Delivery> assignBatch(List<Order> orders) throws InvalidOrderException {
+        if (orders == null) {
+            throw new IllegalArgumentException("Orders cannot be null");
+        }
+        for (Order order : orders) {
+            if (order == null) {
+                throw new IllegalArgumentException("Orders cannot contain null elements");
+            }
+            validateOrder(order.getClient(), order.getRestaurant(), order.getFoodItem());
+            if (order.getShippingMethod() == null) {
+                throw new InvalidOrderException("Shipping method cannot be null");
+            }
+        }
+
+        List<Integer> byRestaurant = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            byRestaurant.add(i);
+        }
+        byRestaurant.sort((first, second) -> BY_RESTAURANT.compare(orders.get(first), orders.get(second)));
+
+        List<List<DeliveryInfo>> options = new ArrayList<>(Collections.nCopies(orders.size(), null));
+        Map<Location, Integer> courierColumns = new HashMap<>();
+        for (int i : byRestaurant) {
+            Order order = orders.get(i);
+            List<DeliveryInfo> available = new ArrayList<>();
+            for (DeliveryInfo option : controlCenter.findDeliveryOptions(order.getRestaurant().getLocation(),
+                order.getClient().getLocation(), order.getMaxPrice(), order.getMaxTime(), order.getShippingMethod())) {
+                if (!reservedDeliveryGuys.contains(option.getDeliveryGuyLocation())) {
+                    available.add(option);
+                    courierColumns.putIfAbsent(option.getDeliveryGuyLocation(), courierColumns.size());
+                }
+            }
+            options.set(i, available);
+        }
+
+        int[] assignment = MinCostAssignment.solve(buildCosts(orders, options, courierColumns));
+
+        List<Delivery> deliveries = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            deliveries.add(reserveAssigned(orders.get(i), options.get(i), courierColumns, assignment[i]));
+        }
+        return deliveries;
+    }
+
+    /**
+     * Makes a reserved delivery guy available for new orders again.
+     *
+     * @param deliveryGuy the current location of the delivery guy
+     * @return true if the delivery guy was reserved
+     * @throws IllegalArgumentException if deliveryGuy is null
+     */
+    public boolean releaseDeliveryGuy(Location deliveryGuy) {
+        if (deliveryGuy == null) {
+            throw new IllegalArgumentException("Delivery guy location cannot be null");
+        }
+
+        return reservedDeliveryGuys.remove(deliveryGuy);
+    }
+
+    /**
+     * Returns the locations of all currently reserved delivery guys.
+     *
+     * @return an unmodifiable snapshot of the reserved delivery guys
+     */
+    public Set<Location> getReservedDeliveryGuys() {
+        return Set.copyOf(reservedDeliveryGuys);
+    }
+
+    /**
+     * Carries the reservation of a moved delivery guy to its new location. The control center calls this
+     * while it offers no delivery options to reserve, and the new location was a road, so no order can be
+     * reserving either location concurrently.
+     */
+    private void moveReservation(Location from, Location to) {
+        if (reservedDeliveryGuys.remove(from)) {
+            reservedDeliveryGuys.add(to);
+        }
+    }
+
+    private static double[][] buildCosts(List<Order> orders, List<List<DeliveryInfo>> options,
+                                         Map<Location, Integer> courierColumns) {
+        double[][] costs = new double[orders.size()][courierColumns.size()];
+
+        for (int i = 0; i < orders.size(); i++) {
+            Arrays.fill(costs[i], MinCostAssignment.FORBIDDEN);
+            List<DeliveryInfo> available = options.get(i);
+            if (available.isEmpty()) {
+                continue;
+            }
+
+            // Options are sorted best first; costs are relative to the best one so that orders
+            // measured in price and orders measured in time can be matched together
+            ShippingMethod method = orders.get(i).getShippingMethod();
+            double best = Math.max(metric(available.get(0), method), Double.MIN_VALUE);
+            for (DeliveryInfo option : available) {
+                costs[i][courierColumns.get(option.getDeliveryGuyLocation())] = metric(option, method) / best;
+            }
+        }
+
+        return costs;
+    }
+
+    private static double metric(DeliveryInfo option, ShippingMethod method) {
+        return method == ShippingMethod.FASTEST ? option.getEstimatedTime() : option.getPrice();
+    }
+
+    private Delivery reserveAssigned(Order order, List<DeliveryInfo> available, Map<Location, Integer> courierColumns,
+                                     int column) {
+        DeliveryInfo reserved = null;
+        if (column != -1) {
+            for (DeliveryInfo option : available) {
+                if (courierColumns.get(option.getDeliveryGuyLocation()) == column) {
+                    reserved = controlCenter.reserveDeliveryGuy(List.of(option), this::reserve);
+                    break;
+                }
+            }
+        }
+
+        // The matched courier was taken or moved concurrently (or there was none), fall back to the best free one
+        if (reserved == null) {
+            reserved = controlCenter.reserveDeliveryGuy(available, this::reserve);
+        }
+        return reserved == null ? null
+            : toDelivery(order.getClient(), order.getRestaurant(), order.getFoodItem(), reserved);
+    }
+
+    private boolean reserve(DeliveryInfo option) {
+        return reservedDeliveryGuys.add(option.getDeliveryGuyLocation());
+    }
+
+    private static Delivery toDelivery(MapEntity client, MapEntity restaurant, String foodItem, DeliveryInfo option) {
+        return new Delivery(client.getLocation(), restaurant.getLocation(), option.getDeliveryGuyLocation(),
+            foodItem, option.getPrice(), option.getEstimatedTime());
+    }
+
+    private Delivery dispatch(MapEntity client, MapEntity restaurant, String foodItem,
+                              double maxPrice, int maxTime, ShippingMethod shippingMethod)
+        throws NoAvailableDeliveryGuyException, InvalidOrderException {
+        validateOrder(client, restaurant, foodItem);
+
+        DeliveryInfo option = controlCenter.findAndReserveDeliveryGuy(restaurant.getLocation(),
+            client.getLocation(), maxPrice, maxTime, shippingMethod, this::reserve);
+        if (option != null) {
+            return toDelivery(client, restaurant, foodItem, option);
+        }
+
+        throw new NoAvailableDeliveryGuyException("No available delivery guy for order of " + foodItem);
+    }
+
+    private void validateOrder(MapEntity client, MapEntity restaurant, String foodItem) throws InvalidOrderException {
+        if (foodItem == null || foodItem.isBlank()) {
+            throw new InvalidOrderException("Food item cannot be null or blank");
+        }
+
+        validateEntity(client, MapEntityType.CLIENT);
+        validateEntity(restaurant, MapEntityType.RESTAURANT);
+    }
+
+    private void validateEntity(MapEntity entity, MapEntityType expectedType) throws InvalidOrderException {
+        if (entity == null || entity.getLocation() == null) {
+            throw new InvalidOrderException("Missing " + expectedType + " in order");
+        }
+
+        Location location = entity.getLocation();
+        MapEntityType type = controlCenter.typeAt(location.getX(), location.getY());
+        if (type == null) {
+            throw new InvalidOrderException(expectedType + " location is outside the map");
+        }
+        if (type != expectedType) {
+            throw new InvalidOrderException("There is no " + expectedType + " at the specified location");
+        }
+    }
+}
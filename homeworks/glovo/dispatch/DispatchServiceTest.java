@@ -0,0 +1,202 @@
+package bg.sofia.uni.fmi.mjt.glovo.dispatch;
+
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.ControlCenter;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.Location;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntity;
+import bg.sofia.uni.fmi.mjt.glovo.controlcenter.map.MapEntityType;
+import bg.sofia.uni.fmi.mjt.glovo.delivery.Delivery;
+import bg.sofia.uni.fmi.mjt.glovo.exception.InvalidOrderException;
+import bg.sofia.uni.fmi.mjt.glovo.exception.NoAvailableDeliveryGuyException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DispatchServiceTest {
+    private static final String FOOD = "Pizza";
+    private static final MapEntity RESTAURANT = new MapEntity(new Location(0, 0), MapEntityType.RESTAURANT);
+    private static final MapEntity CLIENT = new MapEntity(new Location(2, 0), MapEntityType.CLIENT);
+
+    private static char[][] layout(String... rows) {
+        char[][] layout = new char[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            layout[i] = rows[i].toCharArray();
+        }
+        return layout;
+    }
+
+    @Test
+    public void testReservationFollowsMovedDeliveryGuy() throws Exception {
+        ControlCenter controlCenter = new ControlCenter(layout(
+            "R.A..",
+            ".#...",
+            "C...."));
+        DispatchService service = new DispatchService(controlCenter);
+
+        Delivery delivery = service.getCheapestDelivery(CLIENT, RESTAURANT, FOOD);
+        assertEquals(new Location(0, 2), delivery.getDeliveryGuy());
+
+        controlCenter.moveDeliveryGuy(new Location(0, 2), new Location(0, 3));
+        assertEquals(Set.of(new Location(0, 3)), service.getReservedDeliveryGuys());
+
+        try {
+            service.getCheapestDelivery(CLIENT, RESTAURANT, FOOD);
+            fail("The only delivery guy is reserved even after moving");
+        } catch (NoAvailableDeliveryGuyException expected) {
+            // expected
+        }
+
+        assertFalse(service.releaseDeliveryGuy(new Location(0, 2)));
+        assertTrue(service.releaseDeliveryGuy(new Location(0, 3)));
+        assertEquals(new Location(0, 3), service.getCheapestDelivery(CLIENT, RESTAURANT, FOOD).getDeliveryGuy());
+    }
+
+    @Test
+    public void testDeliveryGuyMovingOntoReservedLocationIsNotReserved() throws Exception {
+        ControlCenter controlCenter = new ControlCenter(layout(
+            "R.A..",
+            ".#...",
+            "C...B"));
+        DispatchService service = new DispatchService(controlCenter);
+
+        Location reserved = service.getCheapestDelivery(CLIENT, RESTAURANT, FOOD).getDeliveryGuy();
+        Location free = reserved.equals(new Location(0, 2)) ? new Location(2, 4) : new Location(0, 2);
+
+        controlCenter.moveDeliveryGuy(reserved, new Location(1, 4));
+        controlCenter.moveDeliveryGuy(free, reserved);
+
+        assertEquals(Set.of(new Location(1, 4)), service.getReservedDeliveryGuys());
+        assertEquals(reserved, service.getCheapestDelivery(CLIENT, RESTAURANT, FOOD).getDeliveryGuy());
+        assertEquals(Set.of(new Location(1, 4), reserved), service.getReservedDeliveryGuys());
+    }
+
+    @Test
+    public void testConcurrentMovesNeverLeaveReservationsBehind() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            ControlCenter controlCenter = new ControlCenter(layout(
+                "R.......",
+                "........",
+                "AAAABBBB",
+                "........",
+                ".......C"));
+            DispatchService service = new DispatchService(controlCenter);
+            MapEntity client = new MapEntity(new Location(4, 7), MapEntityType.CLIENT);
+
+            AtomicBoolean dispatching = new AtomicBoolean(true);
+            Thread mover = new Thread(() -> moveRandomly(controlCenter, new Random(), dispatching));
+            mover.start();
+
+            AtomicInteger delivered = new AtomicInteger();
+            List<Thread> dispatchers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread dispatcher = new Thread(() -> {
+                    try {
+                        while (true) {
+                            service.getFastestDelivery(client, RESTAURANT, FOOD);
+                            delivered.incrementAndGet();
+                        }
+                    } catch (NoAvailableDeliveryGuyException | InvalidOrderException e) {
+                        // every delivery guy is reserved
+                    }
+                });
+                dispatchers.add(dispatcher);
+                dispatcher.start();
+            }
+            for (Thread dispatcher : dispatchers) {
+                dispatcher.join();
+            }
+            dispatching.set(false);
+            mover.join();
+
+            assertEquals("Deliveries in round " + round, 8, delivered.get());
+            Set<Location> reserved = service.getReservedDeliveryGuys();
+            assertEquals("Reservations in round " + round, 8, reserved.size());
+            for (Location location : reserved) {
+                MapEntityType type = controlCenter.typeAt(location.getX(), location.getY());
+                assertTrue("Reserved road at " + location, type == MapEntityType.DELIVERY_GUY_CAR ||
+                    type == MapEntityType.DELIVERY_GUY_BIKE);
+            }
+        }
+    }
+
+    @Test
+    public void testValidationMatchesRebuiltControlCenter() {
+        char[][] cells = layout(
+            "R.A.C",
+            ".#..R",
+            "C..B.");
+        ControlCenter controlCenter = new ControlCenter(cells);
+        DispatchService service = new DispatchService(controlCenter);
+
+        controlCenter.updateCell(new Location(0, 4), MapEntityType.ROAD);
+        cells[0][4] = '.';
+        controlCenter.updateCell(new Location(1, 2), MapEntityType.CLIENT);
+        cells[1][2] = 'C';
+        controlCenter.updateCell(new Location(1, 4), MapEntityType.WALL);
+        cells[1][4] = '#';
+        controlCenter.updateCell(new Location(2, 4), MapEntityType.RESTAURANT);
+        cells[2][4] = 'R';
+        controlCenter.moveDeliveryGuy(new Location(0, 2), new Location(0, 3));
+        cells[0][2] = '.';
+        cells[0][3] = 'A';
+
+        DispatchService rebuilt = new DispatchService(new ControlCenter(cells));
+        for (int x = -1; x <= cells.length; x++) {
+            for (int y = -1; y <= cells[0].length; y++) {
+                Location location = new Location(x, y);
+                MapEntity client = new MapEntity(location, MapEntityType.CLIENT);
+                MapEntity restaurant = new MapEntity(location, MapEntityType.RESTAURANT);
+
+                assertEquals("Client at " + x + ", " + y,
+                    isValid(rebuilt, client, RESTAURANT), isValid(service, client, RESTAURANT));
+                assertEquals("Restaurant at " + x + ", " + y,
+                    isValid(rebuilt, CLIENT, restaurant), isValid(service, CLIENT, restaurant));
+            }
+        }
+        assertTrue(isValid(service, new MapEntity(new Location(1, 2), MapEntityType.CLIENT), RESTAURANT));
+        assertFalse(isValid(service, CLIENT, new MapEntity(new Location(0, 4), MapEntityType.RESTAURANT)));
+    }
+
+    private static void moveRandomly(ControlCenter controlCenter, Random random, AtomicBoolean running) {
+        int[][] steps = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        MapEntity[][] layout = controlCenter.getLayout();
+        List<Location> couriers = new ArrayList<>();
+        for (MapEntity[] row : layout) {
+            for (MapEntity entity : row) {
+                if (entity.getType() == MapEntityType.DELIVERY_GUY_CAR ||
+                    entity.getType() == MapEntityType.DELIVERY_GUY_BIKE) {
+                    couriers.add(entity.getLocation());
+                }
+            }
+        }
+
+        while (running.get()) {
+            int courier = random.nextInt(couriers.size());
+            int[] step = steps[random.nextInt(steps.length)];
+            Location from = couriers.get(courier);
+            Location to = new Location(from.getX() + step[0], from.getY() + step[1]);
+            if (controlCenter.typeAt(to.getX(), to.getY()) == MapEntityType.ROAD) {
+                controlCenter.moveDeliveryGuy(from, to);
+                couriers.set(courier, to);
+            }
+        }
+    }
+
+    private static boolean isValid(DispatchService service, MapEntity client, MapEntity restaurant) {
+        try {
+            Delivery delivery = service.getFastestDelivery(client, restaurant, FOOD);
+            service.releaseDeliveryGuy(delivery.getDeliveryGuy());
+            return true;
+        } catch (NoAvailableDeliveryGuyException e) {
+            return true;
+        } catch (InvalidOrderException e) {
+            return false;
+        }
+    }
+}
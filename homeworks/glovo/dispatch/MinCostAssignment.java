@@ -0,0 +1,132 @@
+package bg.sofia.uni.fmi.mjt.glovo.dispatch;
+
+import java.util.Arrays;
+
+/**
+ * Minimum-cost bipartite assignment (the Hungarian algorithm with potentials) over a dense
+ * rectangular cost matrix. Runs in O(rows^2 * cols) time when rows do not exceed columns.
+ */
+final class MinCostAssignment {
+    /**
+     * Cost of a pair that must not be matched.
+     */
+    static final double FORBIDDEN = Double.POSITIVE_INFINITY;
+
+    private static final int UNASSIGNED = -1;
+
+    private MinCostAssignment() {
+    }
+
+    /**
+     * Matches every row to a distinct column so that the total cost is minimal.
+     * Rows that can only be matched through forbidden pairs stay unassigned.
+     *
+     * @param costs the cost matrix, costs[row][column]
+     * @return for every row the index of its column, or -1 if the row is unassigned
+     */
+    static int[] solve(double[][] costs) {
+        int rows = costs.length;
+        if (rows == 0) {
+            return new int[0];
+        }
+        int cols = costs[0].length;
+
+        if (rows > cols) {
+            return transpose(solve(transposed(costs, rows, cols)), rows);
+        }
+
+        // Forbidden pairs get a finite cost larger than any complete assignment of allowed pairs,
+        // so they are used only when unavoidable and can be told apart afterwards
+        double penalty = 1.0;
+        for (double[] row : costs) {
+            for (double cost : row) {
+                if (cost != FORBIDDEN) {
+                    penalty += Math.abs(cost);
+                }
+            }
+        }
+
+        double[] rowPotential = new double[rows + 1];
+        double[] colPotential = new double[cols + 1];
+        int[] rowOfCol = new int[cols + 1];
+        int[] way = new int[cols + 1];
+        double[] minSlack = new double[cols + 1];
+        boolean[] used = new boolean[cols + 1];
+
+        for (int row = 1; row <= rows; row++) {
+            rowOfCol[0] = row;
+            int col0 = 0;
+            Arrays.fill(minSlack, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+
+            do {
+                used[col0] = true;
+                int row0 = rowOfCol[col0];
+                double delta = Double.POSITIVE_INFINITY;
+                int col1 = 0;
+
+                for (int col = 1; col <= cols; col++) {
+                    if (!used[col]) {
+                        double cost = costs[row0 - 1][col - 1];
+                        double slack = (cost == FORBIDDEN ? penalty : cost) - rowPotential[row0] - colPotential[col];
+                        if (slack < minSlack[col]) {
+                            minSlack[col] = slack;
+                            way[col] = col0;
+                        }
+                        if (minSlack[col] < delta) {
+                            delta = minSlack[col];
+                            col1 = col;
+                        }
+                    }
+                }
+
+                for (int col = 0; col <= cols; col++) {
+                    if (used[col]) {
+                        rowPotential[rowOfCol[col]] += delta;
+                        colPotential[col] -= delta;
+                    } else {
+                        minSlack[col] -= delta;
+                    }
+                }
+                col0 = col1;
+            } while (rowOfCol[col0] != 0);
+
+            do {
+                int col1 = way[col0];
+                rowOfCol[col0] = rowOfCol[col1];
+                col0 = col1;
+            } while (col0 != 0);
+        }
+
+        int[] assignment = new int[rows];
+        Arrays.fill(assignment, UNASSIGNED);
+        for (int col = 1; col <= cols; col++) {
+            int row = rowOfCol[col];
+            if (row != 0 && costs[row - 1][col - 1] != FORBIDDEN) {
+                assignment[row - 1] = col - 1;
+            }
+        }
+        return assignment;
+    }
+
+    private static double[][] transposed(double[][] costs, int rows, int cols) {
+        double[][] result = new double[cols][rows];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                result[col][row] = costs[row][col];
+            }
+        }
+        return result;
+    }
+
+    private static int[] transpose(int[] colAssignment, int rows) {
+        int[] assignment = new int[rows];
+        Arrays.fill(assignment, UNASSIGNED);
+        for (int col = 0; col < colAssignment.length; col++) {
+            if (colAssignment[col] != UNASSIGNED) {
+                assignment[colAssignment[col]] = col;
+            }
+        }
+        return assignment;
+    }
+}
@@ -0,0 +1,143 @@
+package bg.sofia.uni.fmi.mjt.glovo.dispatch;
+
+import bg.sofia.uni.fmi.mjt.glovo.BatchGlovoApi;
+import bg.sofia.uni.fmi.mjt.glovo.delivery.Delivery;
+import bg.sofia.uni.fmi.mjt.glovo.delivery.Order;
+import bg.sofia.uni.fmi.mjt.glovo.exception.InvalidOrderException;
+import bg.sofia.uni.fmi.mjt.glovo.exception.NoAvailableDeliveryGuyException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects orders submitted from any thread and hands them to {@link BatchGlovoApi#assignBatch(List)}
+ * once per time window, so that all orders of a window are matched to couriers together.
+ */
+public class OrderBatcher implements AutoCloseable {
+    private final BatchGlovoApi glovo;
+    private final ConcurrentLinkedQueue<PendingOrder> pending;
+    private final ScheduledExecutorService scheduler;
+    // Guards closed, so that no order is queued after the final flush has drained the queue
+    private final Object intakeLock = new Object();
+    private boolean closed;
+
+    /**
+     * Creates a new batcher and starts its flushing thread.
+     *
+     * @param glovo  the API that assigns the batches
+     * @param window how long orders are collected before they are assigned, e.g. 5 seconds
+     * @throws IllegalArgumentException if glovo is null or window is null or not positive
+     */
+    public OrderBatcher(BatchGlovoApi glovo, Duration window) {
+        if (glovo == null) {
+            throw new IllegalArgumentException("Glovo API cannot be null");
+        }
+        if (window == null || window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+
+        this.glovo = glovo;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long windowNanos = window.toNanos();
+        scheduler.scheduleAtFixedRate(this::flush, windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Queues an order for the next batch.
+     *
+     * @param order the order
+     * @return a future completed with the assigned delivery once the batch is processed. It fails with
+     * {@link NoAvailableDeliveryGuyException} if no courier could be assigned and with
+     * {@link InvalidOrderException} if the order is invalid.
+     * @throws IllegalArgumentException if order is null
+     * @throws IllegalStateException    if the batcher is closed
+     */
+    public CompletableFuture<Delivery> submit(Order order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order cannot be null");
+        }
+
+        CompletableFuture<Delivery> result = new CompletableFuture<>();
+        synchronized (intakeLock) {
+            if (closed) {
+                throw new IllegalStateException("Order batcher is closed");
+            }
+            pending.add(new PendingOrder(order, result));
+        }
+        return result;
+    }
+
+    /**
+     * Assigns all orders queued so far, without waiting for the end of the current window.
+     */
+    public synchronized void flush() {
+        List<PendingOrder> batch = new ArrayList<>();
+        PendingOrder next;
+        while ((next = pending.poll()) != null) {
+            batch.add(next);
+        }
+
+        if (!batch.isEmpty()) {
+            assign(batch);
+        }
+    }
+
+    /**
+     * Stops accepting orders and the periodic flushing, and assigns the orders that are still queued.
+     * Every order accepted by {@link #submit(Order)} is assigned before this method returns.
+     */
+    @Override
+    public void close() {
+        synchronized (intakeLock) {
+            closed = true;
+        }
+        scheduler.shutdown();
+        flush();
+    }
+
+    private void assign(List<PendingOrder> batch) {
+        List<Order> orders = batch.stream().map(PendingOrder::order).toList();
+
+        try {
+            complete(batch, glovo.assignBatch(orders));
+        } catch (InvalidOrderException e) {
+            // One bad order must not fail the whole window, so isolate it by assigning orders one by one
+            for (PendingOrder pendingOrder : batch) {
+                try {
+                    complete(List.of(pendingOrder), glovo.assignBatch(List.of(pendingOrder.order())));
+                } catch (InvalidOrderException | RuntimeException invalid) {
+                    pendingOrder.result().completeExceptionally(invalid);
+                }
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(pendingOrder -> pendingOrder.result().completeExceptionally(e));
+        }
+    }
+
+    private static void complete(List<PendingOrder> batch, List<Delivery> deliveries) {
+        for (int i = 0; i < batch.size(); i++) {
+            Delivery delivery = deliveries.get(i);
+            if (delivery == null) {
+                batch.get(i).result().completeExceptionally(new NoAvailableDeliveryGuyException(
+                    "No available delivery guy for order of " + batch.get(i).order().getFoodItem()));
+            } else {
+                batch.get(i).result().complete(delivery);
+            }
+        }
+    }
+
+    private record PendingOrder(Order order, CompletableFuture<Delivery> result) {
+    }
+}
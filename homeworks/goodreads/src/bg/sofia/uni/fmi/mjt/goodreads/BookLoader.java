@@ -1,19 +1,43 @@
 package bg.sofia.uni.fmi.mjt.goodreads;
 
 import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.catalog.BookCatalog;
 import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvException;
+import com.opencsv.exceptions.CsvValidationException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Utility class for loading books from a CSV file
  */
 public class BookLoader {
-    
+    private static final int DEFAULT_CHUNK_BYTES = 8 * 1024 * 1024;
+    private static final byte QUOTE = '"';
+    private static final byte ESCAPE = '\\';
+    private static final byte NEW_LINE = '\n';
+
     /**
      * Loads books from a CSV reader
      *
@@ -22,18 +46,316 @@ public class BookLoader {
      * @throws IllegalArgumentException if the reader is null or if an error occurs during reading
      */
     public static Set<Book> load(Reader reader) {
+        try (Stream<Book> books = stream(reader, BookLoader::rejectRow)) {
+            return books.collect(Collectors.toSet());
+        }
+    }
+
+    /**
+     * Lazily parses books from a CSV reader. Rows are read one at a time as the stream is consumed,
+     * so only the books the caller keeps stay in memory. Closing the stream closes the reader.
+     *
+     * @param reader      the reader to read the CSV data from
+     * @param onMalformed called for every row that is not a valid book; the row is then skipped.
+     *                    The handler may throw to abort loading
+     * @return a sequential stream of the books in file order
+     * @throws IllegalArgumentException if reader or onMalformed is null, or if the stream fails to read the data
+     */
+    public static Stream<Book> stream(Reader reader, Consumer<MalformedRow> onMalformed) {
         if (reader == null) {
             throw new IllegalArgumentException("Reader cannot be null");
         }
+        if (onMalformed == null) {
+            throw new IllegalArgumentException("Malformed row handler cannot be null");
+        }
+
+        CSVReader csvReader = new CSVReader(reader);
+        BookSpliterator spliterator = new BookSpliterator(csvReader, 0, true, onMalformed);
+        return StreamSupport.stream(spliterator, false)
+            .onClose(() -> closeQuietly(csvReader));
+    }
+
+    /**
+     * Loads books from a CSV file by splitting it into chunks of whole rows and parsing the chunks
+     * in parallel. Chunks are memory-mapped and decoded independently, so no thread ever holds more
+     * than one chunk of raw rows.
+     * <p>
+     * Row boundaries are found with a single byte scan that tracks quoted fields, so descriptions
+     * spanning several lines are never split between chunks.
+     *
+     * @param file        the CSV file, with a header row
+     * @param pool        the pool to parse the chunks on
+     * @param onMalformed called for every row that is not a valid book; may be called concurrently
+     *                    from several threads, so it must be thread-safe
+     * @return a Set of Book objects
+     * @throws IllegalArgumentException if any argument is null or if the file cannot be read
+     */
+    public static Set<Book> loadParallel(Path file, ForkJoinPool pool, Consumer<MalformedRow> onMalformed) {
+        return loadParallel(file, pool, onMalformed, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Loads books from a CSV file in parallel, like {@link #loadParallel(Path, ForkJoinPool, Consumer)},
+     * with a custom target chunk size.
+     *
+     * @param file        the CSV file, with a header row
+     * @param pool        the pool to parse the chunks on
+     * @param onMalformed called for every row that is not a valid book; must be thread-safe
+     * @param chunkBytes  the approximate size of a chunk in bytes; a chunk always ends on a row boundary
+     * @return a Set of Book objects
+     * @throws IllegalArgumentException if any argument is null, chunkBytes is not positive or if the file
+     *                                  cannot be read
+     */
+    public static Set<Book> loadParallel(Path file, ForkJoinPool pool, Consumer<MalformedRow> onMalformed,
+                                         int chunkBytes) {
+        if (file == null || pool == null || onMalformed == null) {
+            throw new IllegalArgumentException("File, pool and malformed row handler cannot be null");
+        }
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
 
-        try (CSVReader csvReader = new CSVReader(reader)) {
-            return csvReader.readAll().stream()
-                    .skip(1) // Skip header row
-                    .map(Book::of)
-                    .collect(Collectors.toSet());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Chunk> chunks = split(channel, chunkBytes);
+            List<Set<Book>> parsed = pool.invoke(new ChunksTask(channel, chunks, 0, chunks.size(), onMalformed));
 
-        } catch (IOException | CsvException ex) {
+            Set<Book> books = new HashSet<>();
+            parsed.forEach(books::addAll);
+            return books;
+        } catch (IOException ex) {
             throw new IllegalArgumentException("Could not load dataset", ex);
         }
     }
+
+    /**
+     * Writes books to a binary catalog file that {@link #openCatalog(Path)} can open without parsing.
+     * Converting the CSV dataset once makes later starts independent of the CSV parsing cost.
+     *
+     * @param books the books to write
+     * @param file  the catalog file
+     * @throws IllegalArgumentException if books or file is null
+     * @throws java.io.UncheckedIOException if the file cannot be written
+     */
+    public static void writeCatalog(Collection<Book> books, Path file) {
+        BookCatalog.write(books, file);
+    }
+
+    /**
+     * Opens a binary catalog file written by {@link #writeCatalog(Collection, Path)} by memory-mapping it.
+     * Books are decoded lazily, when they are requested from the catalog.
+     *
+     * @param file the catalog file
+     * @return the catalog
+     * @throws IllegalArgumentException if file is null or is not a valid catalog file
+     * @throws java.io.UncheckedIOException if the file cannot be read
+     */
+    public static BookCatalog openCatalog(Path file) {
+        return BookCatalog.open(file);
+    }
+
+    private static void rejectRow(MalformedRow row) {
+        throw new IllegalArgumentException("Invalid book data on line " + row.line(), row.cause());
+    }
+
+    /**
+     * Splits the file into ranges of whole CSV rows of roughly chunkBytes each. A row ends on a new line
+     * that is not inside a quoted field; quotes escaped with a backslash, as opencsv treats them by default,
+     * do not toggle the quoted state.
+     */
+    private static List<Chunk> split(FileChannel channel, int chunkBytes) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long size = channel.size();
+        long chunkStart = 0;
+        long chunkStartLine = 0;
+        long line = 0;
+        boolean quoted = false;
+        boolean escaped = false;
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        long position = 0;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+
+            for (int i = 0; i < read; i++) {
+                byte current = buffer.get(i);
+                if (escaped) {
+                    escaped = false;
+                } else if (quoted && current == ESCAPE) {
+                    escaped = true;
+                } else if (current == QUOTE) {
+                    quoted = !quoted;
+                } else if (current == NEW_LINE) {
+                    line++;
+                    long end = position + i + 1;
+                    if (!quoted && end - chunkStart >= chunkBytes) {
+                        chunks.add(new Chunk(chunkStart, end, chunkStartLine));
+                        chunkStart = end;
+                        chunkStartLine = line;
+                    }
+                }
+            }
+            position += read;
+        }
+
+        if (chunkStart < size || chunks.isEmpty()) {
+            chunks.add(new Chunk(chunkStart, size, chunkStartLine));
+        }
+        return chunks;
+    }
+
+    private static Set<Book> parseChunk(FileChannel channel, Chunk chunk, Consumer<MalformedRow> onMalformed) {
+        try {
+            MappedByteBuffer bytes =
+                channel.map(FileChannel.MapMode.READ_ONLY, chunk.start(), chunk.end() - chunk.start());
+            CSVReader csvReader =
+                new CSVReader(new InputStreamReader(new BufferInputStream(bytes), StandardCharsets.UTF_8));
+            boolean hasHeader = chunk.start() == 0;
+
+            try (Stream<Book> books = StreamSupport.stream(
+                new BookSpliterator(csvReader, chunk.firstLine(), hasHeader, onMalformed), false)
+                .onClose(() -> closeQuietly(csvReader))) {
+                return books.collect(Collectors.toSet());
+            }
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Could not load dataset", ex);
+        }
+    }
+
+    private static void closeQuietly(CSVReader csvReader) {
+        try {
+            csvReader.close();
+        } catch (IOException ex) {
+            // Nothing left to read, the books are already parsed
+        }
+    }
+
+    private record Chunk(long start, long end, long firstLine) {
+    }
+
+    private static final class ChunksTask extends RecursiveTask<List<Set<Book>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final List<Chunk> chunks;
+        private final int from;
+        private final int to;
+        private final Consumer<MalformedRow> onMalformed;
+
+        ChunksTask(FileChannel channel, List<Chunk> chunks, int from, int to, Consumer<MalformedRow> onMalformed) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.onMalformed = onMalformed;
+        }
+
+        @Override
+        protected List<Set<Book>> compute() {
+            if (to - from <= 1) {
+                return from == to ? List.of() : List.of(parseChunk(channel, chunks.get(from), onMalformed));
+            }
+
+            int middle = (from + to) >>> 1;
+            ChunksTask left = new ChunksTask(channel, chunks, from, middle, onMalformed);
+            left.fork();
+            List<Set<Book>> right = new ChunksTask(channel, chunks, middle, to, onMalformed).compute();
+
+            List<Set<Book>> result = new ArrayList<>(left.join());
+            result.addAll(right);
+            return result;
+        }
+    }
+
+    /**
+     * Reads CSV rows on demand and maps them to books, reporting the rows that fail.
+     */
+    private static final class BookSpliterator extends Spliterators.AbstractSpliterator<Book> {
+        private final CSVReader csvReader;
+        private final long firstLine;
+        private final Consumer<MalformedRow> onMalformed;
+        private boolean skipHeader;
+
+        BookSpliterator(CSVReader csvReader, long firstLine, boolean skipHeader, Consumer<MalformedRow> onMalformed) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.csvReader = csvReader;
+            this.firstLine = firstLine;
+            this.skipHeader = skipHeader;
+            this.onMalformed = onMalformed;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Book> action) {
+            while (true) {
+                String[] tokens;
+                try {
+                    tokens = csvReader.readNext();
+                } catch (CsvValidationException ex) {
+                    onMalformed.accept(new MalformedRow(firstLine + csvReader.getLinesRead(), null, ex));
+                    continue;
+                } catch (IOException ex) {
+                    throw new IllegalArgumentException("Could not load dataset", ex);
+                }
+
+                if (tokens == null) {
+                    return false;
+                }
+                if (skipHeader) {
+                    skipHeader = false;
+                    continue;
+                }
+
+                Book book;
+                try {
+                    book = Book.of(tokens);
+                } catch (IllegalArgumentException ex) {
+                    onMalformed.accept(new MalformedRow(firstLine + csvReader.getLinesRead(), tokens, ex));
+                    continue;
+                }
+
+                // Outside the try, so that an exception thrown by the consumer is not reported as a malformed row
+                action.accept(book);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * An input stream over the bytes of a mapped chunk.
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
 }
@@ -0,0 +1,11 @@
+package bg.sofia.uni.fmi.mjt.goodreads;
+
+/**
+ * A CSV row that could not be turned into a book.
+ *
+ * @param line   the line of the file the row ends on, counting from 1
+ * @param tokens the parsed cells of the row, or null if the row could not be parsed at all
+ * @param cause  the reason the row was rejected
+ */
+public record MalformedRow(long line, String[] tokens, Exception cause) {
+}
@@ -0,0 +1,166 @@
+package bg.sofia.uni.fmi.mjt.goodreads.benchmark;
+
+import bg.sofia.uni.fmi.mjt.goodreads.tokenizer.TermDictionary;
+import bg.sofia.uni.fmi.mjt.goodreads.tokenizer.TextTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Throughput of tokenizing one book description with the single-pass {@link TextTokenizer}, both into
+ * strings and into dictionary ids, against the regex pipeline it replaced.
+ * <p>
+ * Descriptions are generated from a fixed vocabulary with punctuation and mixed case, and optionally
+ * with accented words, which send the tokenizer down its full-lowercasing path. Run {@link #main(String[])}
+ * (or the JMH runner with {@code -prof gc}) to also get {@code gc.alloc.rate.norm}, the bytes allocated
+ * per description.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenizerBenchmark {
+    private static final int DESCRIPTIONS = 256;
+    private static final long SEED = 42;
+    private static final String[] WORDS = {
+        "The", "dark", "tower", "of", "a", "young", "WIZARD", "and", "his", "friends", "in", "1984",
+        "journey", "through", "the", "kingdom", "love", "war", "peace", "mystery", "murder", "detective",
+        "family", "secrets", "history", "world", "is", "was", "story", "novel"
+    };
+    private static final String[] ACCENTED_WORDS = {"café", "naïve", "Zoë", "Ångström", "façade"};
+    private static final String[] PUNCTUATION = {" ", " ", " ", ", ", ". ", "! ", " - ", "'s ", "\n"};
+
+    @Param({"40", "400"})
+    private int words;
+
+    @Param({"false", "true"})
+    private boolean accented;
+
+    private TextTokenizer tokenizer;
+    private RegexTokenizer regexTokenizer;
+    private TermDictionary dictionary;
+    private String[] descriptions;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tokenizer = new TextTokenizer();
+        regexTokenizer = new RegexTokenizer();
+
+        Random random = new Random(SEED);
+        descriptions = new String[DESCRIPTIONS];
+        for (int i = 0; i < DESCRIPTIONS; i++) {
+            StringBuilder description = new StringBuilder();
+            for (int word = 0; word < words; word++) {
+                String[] source = accented && random.nextInt(10) == 0 ? ACCENTED_WORDS : WORDS;
+                description.append(source[random.nextInt(source.length)])
+                    .append(PUNCTUATION[random.nextInt(PUNCTUATION.length)]);
+            }
+            descriptions[i] = description.toString();
+        }
+
+        List<String> terms = new ArrayList<>();
+        for (String description : descriptions) {
+            terms.addAll(tokenizer.tokenize(description));
+        }
+        dictionary = TermDictionary.of(terms);
+    }
+
+    @Benchmark
+    public List<String> regex() {
+        return regexTokenizer.tokenize(nextDescription());
+    }
+
+    @Benchmark
+    public List<String> singlePass() {
+        return tokenizer.tokenize(nextDescription());
+    }
+
+    @Benchmark
+    public void singlePassIds(Blackhole blackhole) {
+        tokenizer.tokenizeToIds(nextDescription(), dictionary, blackhole::consume);
+    }
+
+    private String nextDescription() {
+        next = (next + 1) % DESCRIPTIONS;
+        return descriptions[next];
+    }
+
+    /**
+     * The regex-based tokenization TextTokenizer used before, kept as the baseline.
+     */
+    private static final class RegexTokenizer {
+        private static final String STOPWORDS_FILE = "/stopwords.txt";
+        private static final String PUNCTUATION_REGEX = "[^a-zA-Z0-9\\s]";
+        private static final String WHITESPACE_REGEX = "\\s+";
+
+        private final Set<String> stopwords;
+
+        RegexTokenizer() {
+            try (InputStream is = getClass().getResourceAsStream(STOPWORDS_FILE);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     Objects.requireNonNull(is), StandardCharsets.UTF_8))) {
+                stopwords = reader.lines()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .collect(Collectors.toSet());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not load stopwords", e);
+            }
+        }
+
+        List<String> tokenize(String input) {
+            String cleaned = input.toLowerCase()
+                .replaceAll(PUNCTUATION_REGEX, " ")
+                .replaceAll(WHITESPACE_REGEX, " ")
+                .trim();
+            if (cleaned.isEmpty()) {
+                return List.of();
+            }
+
+            return Arrays.stream(cleaned.split(WHITESPACE_REGEX))
+                .filter(word -> !word.isBlank() && !stopwords.contains(word))
+                .collect(Collectors.toList());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(TokenizerBenchmark.class.getSimpleName())
+            .addProfiler("gc")
+            .build();
+
+        new Runner(options).run();
+    }
+}
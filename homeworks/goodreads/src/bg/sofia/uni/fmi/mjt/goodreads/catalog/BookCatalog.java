@@ -0,0 +1,366 @@
+package bg.sofia.uni.fmi.mjt.goodreads.catalog;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A read-only book catalog stored in a compact binary file and opened by memory-mapping it.
+ * Opening the catalog only reads the header and the genre table; books are decoded from the
+ * mapped file when they are requested, and ratings can be read column by column without
+ * decoding any text.
+ * <p>
+ * File layout (big-endian):
+ * <ul>
+ *     <li>header: magic, format version, book count, genre count, then the offsets of the
+ *     genre table, the columns and the string pool as longs</li>
+ *     <li>genre table: every distinct genre once, as a length-prefixed UTF-8 string</li>
+ *     <li>columns: average ratings (double), rating counts (int), the offsets of the title, author,
+ *     description and url strings in the pool (long), genre list starts (int, with one extra entry
+ *     marking the end) and the genre ids of all books (int)</li>
+ *     <li>string pool: length-prefixed UTF-8 strings; no string crosses a 1 GiB boundary of the
+ *     pool, so a pool of any size can be mapped in segments</li>
+ * </ul>
+ * Book ids are the positions of the books in the catalog, from 0 to {@link #size()} - 1.
+ */
+public class BookCatalog {
+    private static final int MAGIC = 0x47524243; // "GRBC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + 3 * Long.BYTES;
+    private static final int SEGMENT_BYTES = 1 << 30;
+    private static final int STRING_FIELDS = 4;
+    private static final int TITLE = 0;
+    private static final int AUTHOR = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int URL = 3;
+
+    private final int size;
+    private final String[] genres;
+    private final ByteBuffer avgRatings;
+    private final ByteBuffer numRatings;
+    private final ByteBuffer[] stringOffsets;
+    private final ByteBuffer genreStarts;
+    private final ByteBuffer genreIds;
+    private final ByteBuffer[] pool;
+
+    private BookCatalog(int size, String[] genres, ByteBuffer avgRatings, ByteBuffer numRatings,
+                        ByteBuffer[] stringOffsets, ByteBuffer genreStarts, ByteBuffer genreIds, ByteBuffer[] pool) {
+        this.size = size;
+        this.genres = genres;
+        this.avgRatings = avgRatings;
+        this.numRatings = numRatings;
+        this.stringOffsets = stringOffsets;
+        this.genreStarts = genreStarts;
+        this.genreIds = genreIds;
+        this.pool = pool;
+    }
+
+    /**
+     * Writes the books to a catalog file, replacing it if it exists.
+     *
+     * @param books the books to write; their iteration order becomes the order of the ids
+     * @param file  the catalog file
+     * @throws IllegalArgumentException if books or file is null, or the books do not fit the format
+     * @throws UncheckedIOException     if the file cannot be written
+     */
+    public static void write(Collection<Book> books, Path file) {
+        if (books == null || file == null) {
+            throw new IllegalArgumentException("Books and file cannot be null");
+        }
+
+        Book[] ordered = books.toArray(Book[]::new);
+        Map<String, Integer> genreIds = new LinkedHashMap<>();
+        long memberships = 0;
+        for (Book book : ordered) {
+            for (String genre : book.genres()) {
+                genreIds.putIfAbsent(genre, genreIds.size());
+            }
+            memberships += book.genres().size();
+        }
+        if ((long) ordered.length * Long.BYTES > Integer.MAX_VALUE || memberships * Integer.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many books for a single catalog file");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] genreTable = genreTable(genreIds.keySet());
+            long genreTableOffset = HEADER_BYTES;
+            long columnsOffset = genreTableOffset + genreTable.length;
+            long poolOffset = columnsOffset + columnsBytes(ordered.length, memberships);
+
+            // The pool goes last but is written first, as the columns point into it
+            long[][] offsets = writePool(ordered, channel.position(poolOffset));
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(channel.position(0))));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(ordered.length);
+            out.writeInt(genreIds.size());
+            out.writeLong(genreTableOffset);
+            out.writeLong(columnsOffset);
+            out.writeLong(poolOffset);
+            out.write(genreTable);
+            writeColumns(ordered, genreIds, offsets, out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write catalog to " + file, e);
+        }
+    }
+
+    /**
+     * Opens a catalog file by memory-mapping it.
+     *
+     * @param file the catalog file
+     * @return the catalog
+     * @throws IllegalArgumentException if file is null or is not a valid catalog file
+     * @throws UncheckedIOException     if the file cannot be read
+     */
+    public static BookCatalog open(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IllegalArgumentException("Not a book catalog file: " + file);
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Not a book catalog file: " + file);
+            }
+
+            int size = header.getInt();
+            int genreCount = header.getInt();
+            long genreTableOffset = header.getLong();
+            long columnsOffset = header.getLong();
+            long poolOffset = header.getLong();
+            if (size < 0 || genreCount < 0 || genreTableOffset != HEADER_BYTES || columnsOffset < genreTableOffset ||
+                poolOffset < columnsOffset || poolOffset > fileSize ||
+                columnsOffset - genreTableOffset > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Corrupted book catalog file: " + file);
+            }
+
+            ByteBuffer genreTable = channel.map(FileChannel.MapMode.READ_ONLY, genreTableOffset,
+                columnsOffset - genreTableOffset);
+            String[] genres = new String[genreCount];
+            for (int i = 0; i < genreCount; i++) {
+                genres[i] = readString(genreTable, genreTable.position()).intern();
+                genreTable.position(genreTable.position() + Integer.BYTES + genreTable.getInt(genreTable.position()));
+            }
+
+            long position = columnsOffset;
+            ByteBuffer avgRatings = map(channel, position, (long) size * Double.BYTES);
+            position += (long) size * Double.BYTES;
+            ByteBuffer numRatings = map(channel, position, (long) size * Integer.BYTES);
+            position += (long) size * Integer.BYTES;
+            ByteBuffer[] stringOffsets = new ByteBuffer[STRING_FIELDS];
+            for (int field = 0; field < STRING_FIELDS; field++) {
+                stringOffsets[field] = map(channel, position, (long) size * Long.BYTES);
+                position += (long) size * Long.BYTES;
+            }
+            ByteBuffer genreStarts = map(channel, position, ((long) size + 1) * Integer.BYTES);
+            position += ((long) size + 1) * Integer.BYTES;
+            long genreIdCount = genreStarts.getInt(size * Integer.BYTES);
+            ByteBuffer genreIds = map(channel, position, genreIdCount * Integer.BYTES);
+            position += genreIds.capacity();
+            if (position != poolOffset) {
+                throw new IllegalArgumentException("Corrupted book catalog file: " + file);
+            }
+
+            long poolSize = fileSize - poolOffset;
+            ByteBuffer[] pool = new ByteBuffer[(int) ((poolSize + SEGMENT_BYTES - 1) / SEGMENT_BYTES)];
+            for (int segment = 0; segment < pool.length; segment++) {
+                long start = (long) segment * SEGMENT_BYTES;
+                pool[segment] = map(channel, poolOffset + start, Math.min(SEGMENT_BYTES, poolSize - start));
+            }
+
+            return new BookCatalog(size, genres, avgRatings, numRatings, stringOffsets, genreStarts, genreIds, pool);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open catalog " + file, e);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decodes a book from the catalog.
+     *
+     * @param id the book id
+     * @return a new Book equal to the one written under this id
+     * @throws IndexOutOfBoundsException if there is no book with this id
+     */
+    public Book get(int id) {
+        checkId(id);
+        return new Book(string(TITLE, id), string(AUTHOR, id), string(DESCRIPTION, id), genres(id),
+            avgRating(id), numRatings(id), string(URL, id));
+    }
+
+    /**
+     * Decodes the books one by one as the stream is consumed.
+     *
+     * @return a stream of all books in id order
+     */
+    public Stream<Book> stream() {
+        return IntStream.range(0, size).mapToObj(this::get);
+    }
+
+    public String title(int id) {
+        checkId(id);
+        return string(TITLE, id);
+    }
+
+    public String author(int id) {
+        checkId(id);
+        return string(AUTHOR, id);
+    }
+
+    public double avgRating(int id) {
+        checkId(id);
+        return avgRatings.getDouble(id * Double.BYTES);
+    }
+
+    public int numRatings(int id) {
+        checkId(id);
+        return numRatings.getInt(id * Integer.BYTES);
+    }
+
+    /**
+     * Returns the genres of a book. The genre strings are shared by all books of the catalog.
+     *
+     * @param id the book id
+     * @return an unmodifiable set of genres
+     */
+    public Set<String> genres(int id) {
+        checkId(id);
+        int start = genreStarts.getInt(id * Integer.BYTES);
+        int end = genreStarts.getInt((id + 1) * Integer.BYTES);
+
+        String[] bookGenres = new String[end - start];
+        for (int i = start; i < end; i++) {
+            bookGenres[i - start] = genres[genreIds.getInt(i * Integer.BYTES)];
+        }
+        return Set.of(bookGenres);
+    }
+
+    private String string(int field, int id) {
+        long offset = stringOffsets[field].getLong(id * Long.BYTES);
+        return readString(pool[(int) (offset / SEGMENT_BYTES)], (int) (offset % SEGMENT_BYTES));
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No book with id " + id);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE || position + size > channel.size()) {
+            throw new IllegalArgumentException("Corrupted book catalog file");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    private static long columnsBytes(int books, long memberships) {
+        return (long) books * (Double.BYTES + Integer.BYTES + STRING_FIELDS * Long.BYTES) +
+            ((long) books + 1) * Integer.BYTES + memberships * Integer.BYTES;
+    }
+
+    private static byte[] genreTable(Set<String> genres) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (String genre : genres) {
+            byte[] encoded = genre.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long[][] writePool(Book[] books, FileChannel channel) throws IOException {
+        long[][] offsets = new long[STRING_FIELDS][books.length];
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        long position = 0;
+
+        for (int id = 0; id < books.length; id++) {
+            Book book = books[id];
+            String[] fields = {book.title(), book.author(), book.description(), book.url()};
+
+            for (int field = 0; field < STRING_FIELDS; field++) {
+                byte[] encoded = fields[field].getBytes(StandardCharsets.UTF_8);
+                long length = Integer.BYTES + (long) encoded.length;
+                if (length > SEGMENT_BYTES) {
+                    throw new IllegalArgumentException("A string of book " + book.title() + " is too long");
+                }
+
+                long segmentEnd = (position / SEGMENT_BYTES + 1) * SEGMENT_BYTES;
+                if (position + length > segmentEnd) {
+                    out.write(new byte[(int) (segmentEnd - position)]);
+                    position = segmentEnd;
+                }
+
+                offsets[field][id] = position;
+                out.writeInt(encoded.length);
+                out.write(encoded);
+                position += length;
+            }
+        }
+
+        out.flush();
+        return offsets;
+    }
+
+    private static void writeColumns(Book[] books, Map<String, Integer> genreIds, long[][] offsets,
+                                     DataOutputStream out) throws IOException {
+        for (Book book : books) {
+            out.writeDouble(book.avgRating());
+        }
+        for (Book book : books) {
+            out.writeInt(book.numRatings());
+        }
+        for (long[] fieldOffsets : offsets) {
+            for (long offset : fieldOffsets) {
+                out.writeLong(offset);
+            }
+        }
+
+        int start = 0;
+        for (Book book : books) {
+            out.writeInt(start);
+            start += book.genres().size();
+        }
+        out.writeInt(start);
+
+        for (Book book : books) {
+            for (String genre : book.genres()) {
+                out.writeInt(genreIds.get(genre));
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package bg.sofia.uni.fmi.mjt.goodreads.catalog;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.finder.BookFinder;
+import bg.sofia.uni.fmi.mjt.goodreads.finder.BookFinderAPI;
+import bg.sofia.uni.fmi.mjt.goodreads.finder.BookPage;
+import bg.sofia.uni.fmi.mjt.goodreads.finder.BookQuery;
+import bg.sofia.uni.fmi.mjt.goodreads.finder.MatchOption;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.BookRecommender;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.BookRecommenderAPI;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.SimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.composite.CompositeSimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.descriptions.TFIDFSimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.genres.GenresOverlapSimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.tokenizer.TokenizedCatalog;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A set of books that can change while it is searched and recommended from.
+ * <p>
+ * The tokenized books, their finder, their TF-IDF calculator and their recommender form an immutable
+ * {@link Snapshot}. An update tokenizes and indexes only the changed books into a new snapshot that shares
+ * everything else with the current one, and then publishes it. Queries that started on the old snapshot
+ * finish on it, and every query sees either all of an update or none of it. Updates are serialized.
+ * <p>
+ * The tokens, the finder and the TF-IDF term counts of a snapshot are kept in chunked structures, so their
+ * part of an update costs time in proportion to the changed books. The recommender is copied whole by every
+ * update, so a batch of changes is much cheaper passed to one {@link #update} than book by book.
+ */
+public class LiveCatalog {
+    private final double descriptionsWeight;
+    private final double genresWeight;
+    // The current books, mapped to the instances held by the snapshot; used by updates only
+    private final Map<Book, Book> books;
+    private volatile Snapshot snapshot;
+
+    /**
+     * The state of the catalog between two updates.
+     *
+     * @param tokens       the tokenized titles and descriptions of the books
+     * @param finder       the finder over the books
+     * @param descriptions the TF-IDF similarity calculator over the descriptions of the books
+     * @param recommender  the recommender over the books
+     */
+    public record Snapshot(TokenizedCatalog tokens, BookFinder finder, TFIDFSimilarityCalculator descriptions,
+                           BookRecommender recommender) {
+    }
+
+    /**
+     * Creates a catalog of the books, recommending by a weighted combination of description and genre similarity.
+     *
+     * @param books              the initial books
+     * @param descriptionsWeight the weight of the TF-IDF description similarity, at least 0
+     * @param genresWeight       the weight of the genre overlap similarity, at least 0
+     * @throws IllegalArgumentException if books is null or empty, a weight is negative or both are 0
+     */
+    public LiveCatalog(Set<Book> books, double descriptionsWeight, double genresWeight) {
+        if (books == null || books.isEmpty()) {
+            throw new IllegalArgumentException("Books set cannot be null or empty");
+        }
+        if (descriptionsWeight < 0 || genresWeight < 0 || descriptionsWeight + genresWeight <= 0) {
+            throw new IllegalArgumentException("Weights cannot be negative and at least one must be positive");
+        }
+
+        this.descriptionsWeight = descriptionsWeight;
+        this.genresWeight = genresWeight;
+        this.books = new HashMap<>(books.size() * 4 / 3 + 1);
+        books.forEach(book -> this.books.put(book, book));
+
+        TokenizedCatalog tokens = TokenizedCatalog.of(books);
+        TFIDFSimilarityCalculator descriptions = new TFIDFSimilarityCalculator(books, tokens);
+        this.snapshot = new Snapshot(tokens, new BookFinder(books, tokens), descriptions,
+            new BookRecommender(books, similarity(descriptions)));
+    }
+
+    /**
+     * Returns the current state of the catalog. Several queries on the same snapshot see the same books.
+     *
+     * @return the current snapshot
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns a finder whose every query runs on the snapshot current when the query starts.
+     *
+     * @return the live finder
+     */
+    public BookFinderAPI finder() {
+        return new LiveFinder();
+    }
+
+    /**
+     * Returns a recommender whose every request runs on the snapshot current when the request starts.
+     *
+     * @return the live recommender
+     */
+    public BookRecommenderAPI recommender() {
+        return (originBook, maxN) -> snapshot.recommender().recommendBooks(originBook, maxN);
+    }
+
+    public void add(Collection<Book> added) {
+        update(added, List.of());
+    }
+
+    public void remove(Collection<Book> removed) {
+        update(List.of(), removed);
+    }
+
+    /**
+     * Removes and adds books in one step. Books to add that are already in the catalog, and books to remove
+     * that are not, are ignored; a book both removed and added is replaced.
+     *
+     * @param added   the books to add
+     * @param removed the books to remove
+     * @throws IllegalArgumentException if added or removed is null or contains null, or no books would remain
+     */
+    public synchronized void update(Collection<Book> added, Collection<Book> removed) {
+        if (added == null || removed == null
+            || added.stream().anyMatch(Objects::isNull) || removed.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Added and removed books cannot be null");
+        }
+
+        Map<Book, Book> gone = new LinkedHashMap<>();
+        for (Book book : removed) {
+            Book stored = books.get(book);
+            if (stored != null) {
+                gone.put(book, stored);
+            }
+        }
+        Map<Book, Book> fresh = new LinkedHashMap<>();
+        for (Book book : added) {
+            if (!books.containsKey(book) || gone.containsKey(book)) {
+                fresh.putIfAbsent(book, book);
+            }
+        }
+        if (gone.isEmpty() && fresh.isEmpty()) {
+            return;
+        }
+        if (books.size() - gone.size() + fresh.size() == 0) {
+            throw new IllegalArgumentException("Books set cannot become empty");
+        }
+
+        Snapshot current = snapshot;
+        Collection<Book> addedBooks = fresh.values();
+        Collection<Book> removedBooks = gone.values();
+        TokenizedCatalog tokens = current.tokens().update(addedBooks, removedBooks);
+        TFIDFSimilarityCalculator descriptions = current.descriptions().update(tokens, addedBooks, removedBooks);
+        Snapshot next = new Snapshot(tokens,
+            current.finder().update(tokens, addedBooks, removedBooks),
+            descriptions,
+            current.recommender().update(similarity(descriptions), addedBooks, removedBooks));
+
+        gone.keySet().forEach(books::remove);
+        addedBooks.forEach(book -> books.put(book, book));
+        snapshot = next;
+    }
+
+    private SimilarityCalculator similarity(TFIDFSimilarityCalculator descriptions) {
+        CompositeSimilarityCalculator composite = new CompositeSimilarityCalculator();
+        if (descriptionsWeight > 0) {
+            composite.addCalculator(descriptions, descriptionsWeight);
+        }
+        if (genresWeight > 0) {
+            composite.addCalculator(new GenresOverlapSimilarityCalculator(), genresWeight);
+        }
+        return composite;
+    }
+
+    private class LiveFinder implements BookFinderAPI {
+        @Override
+        public Set<Book> allBooks() {
+            return snapshot.finder().allBooks();
+        }
+
+        @Override
+        public Set<String> allGenres() {
+            return snapshot.finder().allGenres();
+        }
+
+        @Override
+        public List<Book> searchByAuthor(String authorName) {
+            return snapshot.finder().searchByAuthor(authorName);
+        }
+
+        @Override
+        public List<Book> searchByGenres(Set<String> genres, MatchOption option) {
+            return snapshot.finder().searchByGenres(genres, option);
+        }
+
+        @Override
+        public List<Book> searchByKeywords(Set<String> keywords, MatchOption option) {
+            return snapshot.finder().searchByKeywords(keywords, option);
+        }
+
+        @Override
+        public BookPage search(BookQuery query, String cursor) {
+            return snapshot.finder().search(query, cursor);
+        }
+    }
+}
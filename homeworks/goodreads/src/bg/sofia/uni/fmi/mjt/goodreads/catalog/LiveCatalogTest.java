@@ -0,0 +1,167 @@
+package bg.sofia.uni.fmi.mjt.goodreads.catalog;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.finder.BookFinderAPI;
+import bg.sofia.uni.fmi.mjt.goodreads.finder.BookPage;
+import bg.sofia.uni.fmi.mjt.goodreads.finder.BookQuery;
+import bg.sofia.uni.fmi.mjt.goodreads.finder.MatchOption;
+import bg.sofia.uni.fmi.mjt.goodreads.finder.Ranking;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.descriptions.TFIDFSimilarityCalculator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LiveCatalogTest {
+    private static final int BOOKS = 300;
+    private static final int UPDATES = 30;
+    private static final int WORDS = 60;
+    private static final int GENRES = 8;
+    private static final int AUTHORS = 20;
+    private static final double EPSILON = 1e-9;
+
+    private final Random random = new Random(7);
+    private int nextBook;
+
+    /**
+     * Every update is compared with a catalog built from scratch over the same books: the finder, paged
+     * search, TF-IDF scores and recommendations must agree. Books are compared as sets where ids break ties.
+     */
+    @Test
+    public void testUpdatesMatchRebuiltCatalog() {
+        Set<Book> books = new LinkedHashSet<>();
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(randomBook());
+        }
+        LiveCatalog live = new LiveCatalog(books, 1.0, 1.0);
+
+        for (int update = 0; update < UPDATES; update++) {
+            List<Book> current = new ArrayList<>(books);
+            List<Book> removed = new ArrayList<>();
+            List<Book> added = new ArrayList<>();
+            for (int i = random.nextInt(10); i > 0; i--) {
+                removed.add(current.get(random.nextInt(current.size())));
+            }
+            for (int i = random.nextInt(10); i > 0; i--) {
+                added.add(randomBook());
+            }
+            // Replace a book by one with the same title and author but a new description
+            Book replaced = current.get(random.nextInt(current.size()));
+            removed.add(replaced);
+            added.add(new Book(replaced.title(), replaced.author(), randomText(5), replaced.genres(),
+                replaced.avgRating(), replaced.numRatings(), replaced.url()));
+
+            live.update(added, removed);
+            books.removeAll(removed);
+            books.addAll(added);
+
+            assertMatchesRebuilt("Update " + update, live, new LiveCatalog(books, 1.0, 1.0), books);
+        }
+    }
+
+    private void assertMatchesRebuilt(String message, LiveCatalog live, LiveCatalog rebuilt, Set<Book> books) {
+        BookFinderAPI liveFinder = live.finder();
+        BookFinderAPI rebuiltFinder = rebuilt.finder();
+        assertEquals(message, books, liveFinder.allBooks());
+        assertEquals(message, rebuiltFinder.allGenres(), liveFinder.allGenres());
+
+        for (int i = 0; i < 5; i++) {
+            String author = "author" + random.nextInt(AUTHORS);
+            assertEquals(message + ", author " + author, new HashSet<>(rebuiltFinder.searchByAuthor(author)),
+                new HashSet<>(liveFinder.searchByAuthor(author)));
+
+            Set<String> genres = randomTerms("genre", GENRES);
+            Set<String> keywords = randomTerms("word", WORDS);
+            for (MatchOption option : MatchOption.values()) {
+                assertEquals(message + ", genres " + genres,
+                    new HashSet<>(rebuiltFinder.searchByGenres(genres, option)),
+                    new HashSet<>(liveFinder.searchByGenres(genres, option)));
+                assertEquals(message + ", keywords " + keywords,
+                    new HashSet<>(rebuiltFinder.searchByKeywords(keywords, option)),
+                    new HashSet<>(liveFinder.searchByKeywords(keywords, option)));
+            }
+
+            BookQuery byRating = new BookQuery(null, genres, MatchOption.MATCH_ANY, null, null, Ranking.RATING, 7);
+            assertPagesMatch(message + ", " + byRating, rebuiltFinder, liveFinder, byRating);
+            BookQuery byRelevance = new BookQuery(null, null, null, keywords, MatchOption.MATCH_ANY, Ranking.BM25, 7);
+            assertPagesMatch(message + ", " + byRelevance, rebuiltFinder, liveFinder, byRelevance);
+        }
+
+        List<Book> list = new ArrayList<>(books);
+        TFIDFSimilarityCalculator liveDescriptions = live.snapshot().descriptions();
+        TFIDFSimilarityCalculator rebuiltDescriptions = rebuilt.snapshot().descriptions();
+        for (int i = 0; i < 20; i++) {
+            Book first = list.get(random.nextInt(list.size()));
+            Book second = list.get(random.nextInt(list.size()));
+            assertEquals(message + ", similarity of " + first.title() + " and " + second.title(),
+                rebuiltDescriptions.calculateSimilarity(first, second),
+                liveDescriptions.calculateSimilarity(first, second), EPSILON);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            Book origin = list.get(random.nextInt(list.size()));
+            List<Double> expected = new ArrayList<>(rebuilt.recommender().recommendBooks(origin, 10).values());
+            List<Double> actual = new ArrayList<>(live.recommender().recommendBooks(origin, 10).values());
+            assertEquals(message + ", recommendations for " + origin.title(), expected.size(), actual.size());
+            for (int rank = 0; rank < expected.size(); rank++) {
+                assertEquals(message + ", recommendation " + rank + " for " + origin.title(),
+                    expected.get(rank), actual.get(rank), EPSILON);
+            }
+        }
+    }
+
+    private static void assertPagesMatch(String message, BookFinderAPI expected, BookFinderAPI actual,
+                                         BookQuery query) {
+        List<Book> expectedBooks = allPages(expected, query);
+        List<Book> actualBooks = allPages(actual, query);
+        assertEquals(message, expectedBooks.size(), actualBooks.size());
+        assertEquals(message, new HashSet<>(expectedBooks), new HashSet<>(actualBooks));
+        if (query.ranking() == Ranking.RATING) {
+            for (int i = 0; i < expectedBooks.size(); i++) {
+                assertEquals(message + ", rank " + i, expectedBooks.get(i).avgRating(),
+                    actualBooks.get(i).avgRating(), 0.0);
+            }
+        }
+    }
+
+    private static List<Book> allPages(BookFinderAPI finder, BookQuery query) {
+        List<Book> books = new ArrayList<>();
+        String cursor = null;
+        do {
+            BookPage page = finder.search(query, cursor);
+            books.addAll(page.books());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return books;
+    }
+
+    private Book randomBook() {
+        int id = nextBook++;
+        Set<String> genres = new HashSet<>();
+        for (int i = 1 + random.nextInt(3); i > 0; i--) {
+            genres.add("Genre" + random.nextInt(GENRES));
+        }
+        return new Book("Title " + id + " " + randomText(2), "Author" + random.nextInt(AUTHORS), randomText(8),
+            genres, random.nextInt(50) / 10.0, random.nextInt(1000), "https://example.com/" + id);
+    }
+
+    private Set<String> randomTerms(String prefix, int bound) {
+        return new HashSet<>(List.of(prefix + random.nextInt(bound), prefix + random.nextInt(bound)));
+    }
+
+    private String randomText(int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = words + random.nextInt(words); i > 0; i--) {
+            // Skewed towards the first words, so that common terms have long posting lists
+            int word = (int) (WORDS * Math.pow(random.nextDouble(), 2));
+            text.append("word").append(word).append(' ');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,223 @@
+package bg.sofia.uni.fmi.mjt.goodreads.finder;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedArray;
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedHashMap;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Case-insensitive substring index over the distinct author names of a list of books.
+ * <p>
+ * Every lowercase name is split into overlapping three-character grams, and every gram points to
+ * the names containing it. A name containing the search term must contain each of its grams, so
+ * only the names under the rarest gram of the term are checked with {@link String#contains}.
+ * Terms shorter than a gram are checked against the distinct names, which are far fewer than
+ * the books.
+ * <p>
+ * All tables are chunked, so an updated index shares every chunk it did not change with this one.
+ */
+public class AuthorIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final int[] NO_AUTHORS = new int[0];
+
+    private final ChunkedArray<String> authors;
+    private final ChunkedHashMap<String, Integer> authorIds;
+    private final ChunkedArray<int[]> booksByAuthor;
+    private final ChunkedHashMap<Long, int[]> authorsByGram;
+
+    /**
+     * Builds the index.
+     *
+     * @param books the books to index; a book's id is its position in the list
+     * @throws IllegalArgumentException if books is null
+     */
+    public AuthorIndex(List<Book> books) {
+        if (books == null) {
+            throw new IllegalArgumentException("Books cannot be null");
+        }
+
+        Map<String, IdsBuilder> builders = new LinkedHashMap<>();
+        for (int id = 0; id < books.size(); id++) {
+            builders.computeIfAbsent(books.get(id).author().toLowerCase(), a -> new IdsBuilder()).add(id);
+        }
+
+        ChunkedArray.Builder<String> newAuthors = ChunkedArray.<String>empty().toBuilder();
+        ChunkedHashMap.Builder<String, Integer> newAuthorIds = ChunkedHashMap.<String, Integer>of().toBuilder();
+        ChunkedArray.Builder<int[]> newBooksByAuthor = ChunkedArray.<int[]>empty().toBuilder();
+        Map<Long, IdsBuilder> gramBuilders = new HashMap<>();
+        builders.forEach((name, builder) -> {
+            int author = newAuthors.size();
+            newAuthors.add(name);
+            newAuthorIds.put(name, author);
+            newBooksByAuthor.add(builder.build());
+            addGrams(author, name, gramBuilders);
+        });
+
+        ChunkedHashMap.Builder<Long, int[]> newAuthorsByGram = ChunkedHashMap.<Long, int[]>of().toBuilder();
+        gramBuilders.forEach((gram, builder) -> newAuthorsByGram.put(gram, builder.build()));
+
+        this.authors = newAuthors.build();
+        this.authorIds = newAuthorIds.build();
+        this.booksByAuthor = newBooksByAuthor.build();
+        this.authorsByGram = newAuthorsByGram.build();
+    }
+
+    private AuthorIndex(ChunkedArray<String> authors, ChunkedHashMap<String, Integer> authorIds,
+                        ChunkedArray<int[]> booksByAuthor, ChunkedHashMap<Long, int[]> authorsByGram) {
+        this.authors = authors;
+        this.authorIds = authorIds;
+        this.booksByAuthor = booksByAuthor;
+        this.authorsByGram = authorsByGram;
+    }
+
+    /**
+     * Creates the index of the books after a change. Only the book lists of the authors of removed and
+     * added books, and the grams of new authors, are rebuilt; everything else is shared with this index,
+     * which is not modified. Authors left without books stay in the index and match no books.
+     *
+     * @param update the change
+     * @return the updated index
+     */
+    AuthorIndex update(IndexUpdate update) {
+        Map<String, IdsBuilder> changed = new LinkedHashMap<>();
+        BitSet removedIds = new BitSet();
+        for (int id : update.removed()) {
+            removedIds.set(id);
+            changed.putIfAbsent(update.previous().get(id).author().toLowerCase(), new IdsBuilder());
+        }
+        for (String name : changed.keySet()) {
+            for (int id : booksByAuthor.get(authorIds.get(name))) {
+                if (!removedIds.get(id)) {
+                    changed.get(name).add(id);
+                }
+            }
+        }
+        for (int id : update.added()) {
+            String name = update.next().get(id).author().toLowerCase();
+            IdsBuilder builder = changed.get(name);
+            if (builder == null) {
+                builder = new IdsBuilder();
+                Integer author = authorIds.get(name);
+                for (int existing : author == null ? NO_AUTHORS : booksByAuthor.get(author)) {
+                    builder.add(existing);
+                }
+                changed.put(name, builder);
+            }
+            builder.add(id);
+        }
+
+        ChunkedHashMap.Builder<String, Integer> newAuthorIds = authorIds.toBuilder();
+        ChunkedArray.Builder<String> newAuthors = authors.toBuilder();
+        ChunkedArray.Builder<int[]> newBooksByAuthor = booksByAuthor.toBuilder();
+        Map<Long, IdsBuilder> newGrams = new HashMap<>();
+        changed.forEach((name, builder) -> {
+            Integer author = newAuthorIds.get(name);
+            if (author == null) {
+                author = newAuthors.size();
+                newAuthorIds.put(name, author);
+                newAuthors.add(name);
+                addGrams(author, name, newGrams);
+            }
+            newBooksByAuthor.set(author, builder.build());
+        });
+
+        // New authors have the greatest ids, so they are appended to the gram lists in order
+        ChunkedHashMap.Builder<Long, int[]> newAuthorsByGram = authorsByGram.toBuilder();
+        newGrams.forEach((gram, builder) -> {
+            int[] existing = newAuthorsByGram.get(gram);
+            IdsBuilder merged = new IdsBuilder();
+            for (int author : existing == null ? NO_AUTHORS : existing) {
+                merged.add(author);
+            }
+            for (int author : builder.build()) {
+                merged.add(author);
+            }
+            newAuthorsByGram.put(gram, merged.build());
+        });
+
+        return new AuthorIndex(newAuthors.build(), newAuthorIds.build(), newBooksByAuthor.build(),
+            newAuthorsByGram.build());
+    }
+
+    /**
+     * Finds the books whose lowercase author name contains the term.
+     *
+     * @param term a lowercase, non-empty search term
+     * @return a new bitmap of the matching book ids
+     */
+    public BitSet search(String term) {
+        BitSet result = new BitSet();
+        if (term.length() < GRAM_LENGTH) {
+            for (int author = 0; author < authors.size(); author++) {
+                addIfMatching(author, term, result);
+            }
+            return result;
+        }
+
+        for (int author : rarestGramAuthors(term)) {
+            addIfMatching(author, term, result);
+        }
+        return result;
+    }
+
+    private int[] rarestGramAuthors(String term) {
+        int[] rarest = null;
+        for (int start = 0; start + GRAM_LENGTH <= term.length(); start++) {
+            int[] candidates = authorsByGram.getOrDefault(gram(term, start), NO_AUTHORS);
+            if (rarest == null || candidates.length < rarest.length) {
+                rarest = candidates;
+                if (rarest.length == 0) {
+                    break;
+                }
+            }
+        }
+        return rarest;
+    }
+
+    private void addIfMatching(int author, String term, BitSet result) {
+        if (authors.get(author).contains(term)) {
+            for (int id : booksByAuthor.get(author)) {
+                result.set(id);
+            }
+        }
+    }
+
+    private static void addGrams(int author, String name, Map<Long, IdsBuilder> gramBuilders) {
+        for (int start = 0; start + GRAM_LENGTH <= name.length(); start++) {
+            IdsBuilder builder = gramBuilders.computeIfAbsent(gram(name, start), g -> new IdsBuilder());
+            if (builder.last() != author) {
+                builder.add(author);
+            }
+        }
+    }
+
+    private static long gram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private static final class IdsBuilder {
+        private int[] ids = new int[2];
+        private int count;
+
+        void add(int id) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+        }
+
+        int last() {
+            return count == 0 ? -1 : ids[count - 1];
+        }
+
+        int[] build() {
+            return Arrays.copyOf(ids, count);
+        }
+    }
+}
@@ -1,24 +1,43 @@
 package bg.sofia.uni.fmi.mjt.goodreads.finder;
 
 import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
-import bg.sofia.uni.fmi.mjt.goodreads.tokenizer.TextTokenizer;
+import bg.sofia.uni.fmi.mjt.goodreads.tokenizer.TokenizedCatalog;
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedArray;
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedHashMap;
+import bg.sofia.uni.fmi.mjt.goodreads.util.TopScores;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * Implementation of BookFinderAPI that provides methods to search and filter books.
+ * <p>
+ * A finder is immutable. {@link #update} creates the finder of a changed set of books by indexing only
+ * the changed ones, while this finder keeps answering queries over the books it was created with.
+ * The books by id and the ids by book are chunked, so consecutive finders share all chunks that an
+ * update did not write to.
  */
 public class BookFinder implements BookFinderAPI {
-    private final Set<Book> books;
-    private final TextTokenizer tokenizer;
-    private final Set<String> allGenres;
+    private final ChunkedHashMap<Book, Integer> ids;
+    private final ChunkedArray<Book> booksById;
+    private final Map<String, Integer> genreCounts;
+    private final TokenizedCatalog catalog;
+    private final KeywordIndex keywordIndex;
+    private final GenreIndex genreIndex;
+    private final AuthorIndex authorIndex;
+    // Numbers the id assignments: ids are kept by updates and reassigned when a finder is built from scratch
+    private final int generation;
 
     /**
      * Creates a new BookFinder with the given set of books.
@@ -27,26 +46,139 @@ public class BookFinder implements BookFinderAPI {
      * @throws IllegalArgumentException if books is null or empty
      */
     public BookFinder(Set<Book> books) {
+        this(books, books == null ? null : TokenizedCatalog.of(books));
+    }
+
+    /**
+     * Creates a new BookFinder with the given set of books, reusing their tokens from a catalog
+     * shared with other components.
+     *
+     * @param books   the set of books to search within
+     * @param catalog the tokenized books; books missing from it are tokenized against its dictionary
+     * @throws IllegalArgumentException if books is null or empty, or catalog is null
+     */
+    public BookFinder(Set<Book> books, TokenizedCatalog catalog) {
+        this(books, catalog, 0);
+    }
+
+    private BookFinder(Set<Book> books, TokenizedCatalog catalog, int generation) {
         if (books == null || books.isEmpty()) {
             throw new IllegalArgumentException("Books set cannot be null or empty");
         }
+        if (catalog == null) {
+            throw new IllegalArgumentException("Catalog cannot be null");
+        }
         
-        this.books = Set.copyOf(books);
-        this.tokenizer = new TextTokenizer();
-        this.allGenres = books.stream()
-                .map(Book::genres)
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
+        ChunkedHashMap.Builder<Book, Integer> newIds = ChunkedHashMap.<Book, Integer>of().toBuilder();
+        ChunkedArray.Builder<Book> newBooksById = ChunkedArray.<Book>empty().toBuilder();
+        this.genreCounts = new HashMap<>();
+        for (Book book : Set.copyOf(books)) {
+            newIds.put(book, newBooksById.size());
+            newBooksById.add(book);
+            book.genres().forEach(genre -> genreCounts.merge(genre, 1, Integer::sum));
+        }
+        this.ids = newIds.build();
+        this.booksById = newBooksById.build();
+        this.catalog = catalog;
+        this.keywordIndex = new KeywordIndex(booksById.asList(), catalog);
+        this.genreIndex = new GenreIndex(booksById.asList());
+        this.authorIndex = new AuthorIndex(booksById.asList());
+        this.generation = generation;
+    }
+
+    private BookFinder(ChunkedHashMap<Book, Integer> ids, ChunkedArray<Book> booksById,
+                       Map<String, Integer> genreCounts, TokenizedCatalog catalog, IndexUpdate update,
+                       BookFinder previous) {
+        this.ids = ids;
+        this.booksById = booksById;
+        this.genreCounts = genreCounts;
+        this.catalog = catalog;
+        this.keywordIndex = previous.keywordIndex.update(update, previous.catalog, catalog);
+        this.genreIndex = previous.genreIndex.update(update);
+        this.authorIndex = previous.authorIndex.update(update);
+        this.generation = previous.generation;
+    }
+
+    /**
+     * Creates a finder of these books without the removed ones and with the added ones. Only the changed
+     * books are indexed; the new finder shares all other index data with this one, which is not modified.
+     * <p>
+     * Books keep their ids, so cursors of this finder stay valid in the new one. Removed books leave their
+     * ids empty until more than half of the ids are empty; then the new finder is built from scratch with
+     * new ids, and cursors of this finder are rejected by it instead of resuming at the wrong books.
+     * <p>
+     * Apart from such rebuilds, which are amortized over the removals that caused them, the cost of an
+     * update depends on the changed books and on the posting lists of their terms, not on the number of
+     * books in the finder.
+     *
+     * @param next    the catalog of this finder with the same change applied, holding the tokens of the
+     *                added books
+     * @param added   the books to add, none of them already in this finder
+     * @param removed the books to remove, all of them in this finder
+     * @return the updated finder
+     * @throws IllegalArgumentException if any argument is null, a book to add is already in the finder,
+     *                                  a book to remove is not, or no books would remain
+     */
+    public BookFinder update(TokenizedCatalog next, Collection<Book> added, Collection<Book> removed) {
+        if (next == null || added == null || removed == null
+                || added.stream().anyMatch(Objects::isNull) || removed.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Catalog, added and removed books cannot be null");
+        }
+
+        ChunkedHashMap.Builder<Book, Integer> newIds = ids.toBuilder();
+        Map<String, Integer> newGenreCounts = new HashMap<>(genreCounts);
+        ChunkedArray.Builder<Book> newBooksById = booksById.toBuilder();
+
+        int[] removedIds = new int[removed.size()];
+        int count = 0;
+        for (Book book : removed) {
+            Integer id = newIds.remove(book);
+            if (id == null) {
+                throw new IllegalArgumentException("Book to remove is not in the finder: " + book.title());
+            }
+            removedIds[count++] = id;
+            newBooksById.set(id, null);
+            book.genres().forEach(genre -> newGenreCounts.computeIfPresent(genre, (g, n) -> n == 1 ? null : n - 1));
+        }
+        Arrays.sort(removedIds);
+
+        int[] addedIds = new int[added.size()];
+        count = 0;
+        for (Book book : added) {
+            int id = booksById.size() + count;
+            if (newIds.get(book) != null) {
+                throw new IllegalArgumentException("Book to add is already in the finder: " + book.title());
+            }
+            newIds.put(book, id);
+            addedIds[count++] = id;
+            newBooksById.set(id, book);
+            book.genres().forEach(genre -> newGenreCounts.merge(genre, 1, Integer::sum));
+        }
+
+        if (newIds.size() == 0) {
+            throw new IllegalArgumentException("Books set cannot become empty");
+        }
+        if (newBooksById.size() > 2 * newIds.size()) {
+            Set<Book> remaining = new HashSet<>();
+            newIds.build().forEach((book, id) -> remaining.add(book));
+            return new BookFinder(remaining, next, generation + 1);
+        }
+
+        ChunkedArray<Book> nextBooksById = newBooksById.build();
+        IndexUpdate update = new IndexUpdate(booksById.asList(), nextBooksById.asList(), removedIds, addedIds);
+        return new BookFinder(newIds.build(), nextBooksById, newGenreCounts, next, update, this);
     }
 
     @Override
     public Set<Book> allBooks() {
+        List<Book> books = new ArrayList<>(ids.size());
+        ids.forEach((book, id) -> books.add(book));
         return Set.copyOf(books);
     }
 
     @Override
     public Set<String> allGenres() {
-        return Set.copyOf(allGenres);
+        return Set.copyOf(genreCounts.keySet());
     }
 
     @Override
@@ -56,9 +188,7 @@ public class BookFinder implements BookFinderAPI {
         }
         
         String searchTerm = authorName.toLowerCase().trim();
-        return books.stream()
-                .filter(book -> book.author().toLowerCase().contains(searchTerm))
-                .collect(Collectors.toList());
+        return toBooks(authorIndex.search(searchTerm));
     }
 
     @Override
@@ -70,31 +200,16 @@ public class BookFinder implements BookFinderAPI {
             throw new IllegalArgumentException("Match option cannot be null");
         }
         
-        // Normalize genre names (trim and lowercase)
-        Set<String> normalizedGenres = genres.stream()
-                .filter(Objects::nonNull)
-                .map(String::toLowerCase)
-                .map(String::trim)
-                .filter(genre -> !genre.isEmpty())
-                .collect(Collectors.toSet());
+        Set<String> normalizedGenres = normalize(genres);
                 
         if (normalizedGenres.isEmpty()) {
             return List.of();
         }
         
-        return books.stream()
-                .filter(book -> {
-                    Set<String> bookGenres = book.genres().stream()
-                            .map(String::toLowerCase)
-                            .collect(Collectors.toSet());
-                            
-                    if (option == MatchOption.MATCH_ALL) {
-                        return bookGenres.containsAll(normalizedGenres);
-                    } else { // MATCH_ANY
-                        return normalizedGenres.stream().anyMatch(bookGenres::contains);
-                    }
-                })
-                .collect(Collectors.toList());
+        BitSet ids = option == MatchOption.MATCH_ALL
+                ? genreIndex.matchAll(normalizedGenres)
+                : genreIndex.matchAny(normalizedGenres);
+        return toBooks(ids);
     }
 
     @Override
@@ -106,35 +221,163 @@ public class BookFinder implements BookFinderAPI {
             throw new IllegalArgumentException("Match option cannot be null");
         }
         
-        // Normalize keywords (trim, lowercase, and remove empty)
-        Set<String> normalizedKeywords = keywords.stream()
-                .filter(Objects::nonNull)
-                .map(String::toLowerCase)
-                .map(String::trim)
-                .filter(keyword -> !keyword.isEmpty())
-                .collect(Collectors.toSet());
+        Set<String> normalizedKeywords = normalize(keywords);
                 
         if (normalizedKeywords.isEmpty()) {
             return List.of();
         }
         
-        return books.stream()
-                .filter(book -> {
-                    // Tokenize and normalize both title and description
-                    List<String> titleTokens = tokenizer.tokenize(book.title());
-                    List<String> descTokens = tokenizer.tokenize(book.description());
-                    
-                    // Combine all tokens from title and description
-                    Set<String> allTokens = new HashSet<>();
-                    allTokens.addAll(titleTokens);
-                    allTokens.addAll(descTokens);
-                    
-                    if (option == MatchOption.MATCH_ALL) {
-                        return allTokens.containsAll(normalizedKeywords);
-                    } else { // MATCH_ANY
-                        return normalizedKeywords.stream().anyMatch(allTokens::contains);
-                    }
-                })
-                .collect(Collectors.toList());
+        int[] ids = option == MatchOption.MATCH_ALL
+                ? keywordIndex.matchAll(normalizedKeywords)
+                : keywordIndex.matchAny(normalizedKeywords);
+        return toBooks(ids);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A cursor stays valid in the finders created from this one by {@link #update}, unless an update
+     * rebuilds the finder with new ids.
+     *
+     * @throws IllegalArgumentException if query is null, or cursor is malformed or was issued before
+     *                                  the ids of the books were reassigned
+     */
+    @Override
+    public BookPage search(BookQuery query, String cursor) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query cannot be null");
+        }
+
+        Cursor after = cursor == null ? null : Cursor.decode(cursor);
+        if (after != null && after.generation() != generation) {
+            throw new IllegalArgumentException("Cursor is from an older version of the books: " + cursor);
+        }
+        BitSet candidates = candidates(query);
+        KeywordIndex.Bm25Scorer scorer = query.ranking() == Ranking.BM25
+                ? keywordIndex.scorer(normalize(query.keywords()))
+                : null;
+
+        // One extra book tells whether there is a next page
+        TopScores top = new TopScores(query.pageSize() + 1);
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            double score = scorer == null ? booksById.get(id).avgRating() : scorer.score(id);
+            if (after == null || TopScores.isBetter(after.score(), after.id(), score, id)) {
+                top.offer(score, id);
+            }
+        }
+
+        int found = top.size();
+        int[] ids = new int[found];
+        double[] scores = new double[found];
+        top.drain(ids, scores);
+
+        int pageSize = Math.min(found, query.pageSize());
+        String nextCursor = found > query.pageSize()
+                ? new Cursor(generation, scores[pageSize - 1], ids[pageSize - 1]).encode()
+                : null;
+        return new BookPage(toBooks(Arrays.copyOf(ids, pageSize)), nextCursor);
+    }
+
+    /**
+     * Returns the ids of the books matching every predicate of the query.
+     */
+    private BitSet candidates(BookQuery query) {
+        BitSet result = null;
+        if (query.author() != null) {
+            result = authorIndex.search(query.author().toLowerCase().trim());
+        }
+        if (query.genres() != null) {
+            Set<String> genres = normalize(query.genres());
+            result = intersect(result, query.genresOption() == MatchOption.MATCH_ALL
+                    ? genreIndex.matchAll(genres)
+                    : genreIndex.matchAny(genres));
+        }
+        if (query.keywords() != null) {
+            Set<String> keywords = normalize(query.keywords());
+            int[] ids = query.keywordsOption() == MatchOption.MATCH_ALL
+                    ? keywordIndex.matchAll(keywords)
+                    : keywordIndex.matchAny(keywords);
+
+            BitSet matches = new BitSet(booksById.size());
+            for (int id : ids) {
+                matches.set(id);
+            }
+            result = intersect(result, matches);
+        }
+
+        if (result == null) {
+            result = new BitSet(booksById.size());
+            for (int id = 0; id < booksById.size(); id++) {
+                if (booksById.get(id) != null) {
+                    result.set(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static BitSet intersect(BitSet current, BitSet matches) {
+        if (current == null) {
+            return matches;
+        }
+        current.and(matches);
+        return current;
+    }
+
+    private static Set<String> normalize(Set<String> terms) {
+        // Trim, lowercase and remove empty terms
+        return terms.stream()
+                .filter(Objects::nonNull)
+                .map(String::toLowerCase)
+                .map(String::trim)
+                .filter(term -> !term.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    private List<Book> toBooks(int[] ids) {
+        List<Book> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(booksById.get(id));
+        }
+        return result;
+    }
+
+    private List<Book> toBooks(BitSet ids) {
+        List<Book> result = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result.add(booksById.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Position of the last book of a page in the ranking. Encoded as URL-safe Base64 of the
+     * generation of the book ids, the score bits and the book id.
+     */
+    private record Cursor(int generation, double score, int id) {
+        private static final int BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+        static Cursor decode(String cursor) {
+            byte[] bytes;
+            try {
+                bytes = Base64.getUrlDecoder().decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+            if (bytes.length != BYTES) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new Cursor(buffer.getInt(), Double.longBitsToDouble(buffer.getLong()), buffer.getInt());
+        }
+
+        String encode() {
+            ByteBuffer buffer = ByteBuffer.allocate(BYTES)
+                    .putInt(generation)
+                    .putLong(Double.doubleToLongBits(score))
+                    .putInt(id);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+        }
     }
 }
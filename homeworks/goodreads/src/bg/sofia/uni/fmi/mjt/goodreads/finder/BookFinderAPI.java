@@ -54,4 +54,18 @@ public interface BookFinderAPI {
      * @throws IllegalArgumentException if keywords is null or empty
      */
     List<Book> searchByKeywords(Set<String> keywords, MatchOption option);
+
+    /**
+     * Finds the books matching every predicate of the query, ranked as the query specifies, one page at a time.
+     * Only the books of the requested page are kept while ranking, so the memory a page takes does not depend
+     * on how many books match, but its time does: every page finds and scores all matching books again (all
+     * books if the query has no predicates), so paging through m matches costs O(pages * m).
+     *
+     * @param query  the query
+     * @param cursor null for the first page, otherwise the {@link BookPage#nextCursor()} of the previous page
+     *               of the same query
+     * @return the page of books following the cursor
+     * @throws IllegalArgumentException if query is null or the cursor is not valid
+     */
+    BookPage search(BookQuery query, String cursor);
 }
@@ -0,0 +1,23 @@
+package bg.sofia.uni.fmi.mjt.goodreads.finder;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+
+import java.util.List;
+
+/**
+ * One page of ranked query results.
+ *
+ * @param books      the books of the page, best first
+ * @param nextCursor the cursor to pass to {@link BookFinderAPI#search(BookQuery, String)} for the next
+ *                   page, or null if this is the last page
+ */
+public record BookPage(List<Book> books, String nextCursor) {
+
+    public BookPage {
+        books = List.copyOf(books);
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,56 @@
+package bg.sofia.uni.fmi.mjt.goodreads.finder;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A search combining optional author, genre and keyword predicates; a book has to satisfy every
+ * predicate that is present. Each predicate matches exactly like the corresponding single search
+ * method of {@link BookFinderAPI}; null elements of genres and keywords are ignored.
+ *
+ * @param author         a case-insensitive substring of the author name, or null for any author
+ * @param genres         genres to match, or null for any genres
+ * @param genresOption   how to match the genres; required if genres is present
+ * @param keywords       keywords to match in the title and description, or null for any text
+ * @param keywordsOption how to match the keywords; required if keywords is present
+ * @param ranking        the order of the results
+ * @param pageSize       the maximum number of books in a page of results
+ */
+public record BookQuery(String author, Set<String> genres, MatchOption genresOption,
+                        Set<String> keywords, MatchOption keywordsOption, Ranking ranking, int pageSize) {
+
+    /**
+     * @throws IllegalArgumentException if author is blank, genres or keywords are empty or miss their match
+     *                                  option, ranking is null or BM25 without keywords, or pageSize is not positive
+     */
+    public BookQuery {
+        if (author != null && author.isBlank()) {
+            throw new IllegalArgumentException("Author name cannot be blank");
+        }
+        if (genres != null && (genres.isEmpty() || genresOption == null)) {
+            throw new IllegalArgumentException("Genres cannot be empty and need a match option");
+        }
+        if (keywords != null && (keywords.isEmpty() || keywordsOption == null)) {
+            throw new IllegalArgumentException("Keywords cannot be empty and need a match option");
+        }
+        if (ranking == null) {
+            throw new IllegalArgumentException("Ranking cannot be null");
+        }
+        if (ranking == Ranking.BM25 && keywords == null) {
+            throw new IllegalArgumentException("BM25 ranking needs keywords");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+
+        genres = genres == null ? null : copyWithoutNulls(genres);
+        keywords = keywords == null ? null : copyWithoutNulls(keywords);
+    }
+
+    private static Set<String> copyWithoutNulls(Set<String> terms) {
+        return terms.stream()
+            .filter(Objects::nonNull)
+            .collect(Collectors.toUnmodifiableSet());
+    }
+}
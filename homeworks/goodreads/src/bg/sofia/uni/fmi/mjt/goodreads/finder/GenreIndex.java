@@ -0,0 +1,134 @@
+package bg.sofia.uni.fmi.mjt.goodreads.finder;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps every genre, compared case-insensitively, to a bitmap of the books in it. Books are
+ * identified by their position in the list the index was built from, so a genre query is a
+ * few bitmap operations no matter how many books there are.
+ */
+public class GenreIndex {
+    private final int size;
+    private final Map<String, BitSet> booksByGenre;
+
+    /**
+     * Builds the index.
+     *
+     * @param books the books to index; a book's id is its position in the list
+     * @throws IllegalArgumentException if books is null
+     */
+    public GenreIndex(List<Book> books) {
+        if (books == null) {
+            throw new IllegalArgumentException("Books cannot be null");
+        }
+
+        this.size = books.size();
+        this.booksByGenre = new HashMap<>();
+        for (int id = 0; id < books.size(); id++) {
+            for (String genre : books.get(id).genres()) {
+                booksByGenre.computeIfAbsent(genre.toLowerCase(), g -> new BitSet(size)).set(id);
+            }
+        }
+    }
+
+    private GenreIndex(int size, Map<String, BitSet> booksByGenre) {
+        this.size = size;
+        this.booksByGenre = booksByGenre;
+    }
+
+    /**
+     * Creates the index of the books after a change. Only the bitmaps of the genres of removed and
+     * added books are copied and changed; all others are shared with this index, which is not modified.
+     *
+     * @param update the change
+     * @return the updated index
+     */
+    GenreIndex update(IndexUpdate update) {
+        Map<String, BitSet> newBooksByGenre = new HashMap<>(booksByGenre);
+        Set<String> copied = new HashSet<>();
+        for (int id : update.removed()) {
+            for (String genre : update.previous().get(id).genres()) {
+                String key = genre.toLowerCase();
+                BitSet books = copied.add(key) ? (BitSet) newBooksByGenre.get(key).clone() : newBooksByGenre.get(key);
+                books.clear(id);
+                newBooksByGenre.put(key, books);
+            }
+        }
+        for (int id : update.added()) {
+            for (String genre : update.next().get(id).genres()) {
+                String key = genre.toLowerCase();
+                BitSet books = newBooksByGenre.get(key);
+                if (books == null) {
+                    books = new BitSet(update.next().size());
+                    copied.add(key);
+                } else if (copied.add(key)) {
+                    books = (BitSet) books.clone();
+                }
+                books.set(id);
+                newBooksByGenre.put(key, books);
+            }
+        }
+        newBooksByGenre.values().removeIf(BitSet::isEmpty);
+
+        return new GenreIndex(update.next().size(), newBooksByGenre);
+    }
+
+    /**
+     * Finds the books in every one of the genres by intersecting their bitmaps.
+     *
+     * @param genres lowercase genres
+     * @return a new bitmap of the matching book ids; empty if genres is empty
+     */
+    public BitSet matchAll(Collection<String> genres) {
+        BitSet result = null;
+        for (String genre : genres) {
+            BitSet books = booksByGenre.get(genre);
+            if (books == null) {
+                return new BitSet();
+            }
+
+            if (result == null) {
+                result = (BitSet) books.clone();
+            } else {
+                result.and(books);
+            }
+        }
+        return result == null ? new BitSet() : result;
+    }
+
+    /**
+     * Finds the books in at least one of the genres by uniting their bitmaps.
+     *
+     * @param genres lowercase genres
+     * @return a new bitmap of the matching book ids
+     */
+    public BitSet matchAny(Collection<String> genres) {
+        BitSet result = new BitSet(size);
+        for (String genre : genres) {
+            BitSet books = booksByGenre.get(genre);
+            if (books != null) {
+                result.or(books);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of books in a genre.
+     *
+     * @param genre a lowercase genre
+     * @return the number of books in the genre
+     */
+    public int count(String genre) {
+        BitSet books = booksByGenre.get(genre);
+        return books == null ? 0 : books.cardinality();
+    }
+}
@@ -0,0 +1,19 @@
+package bg.sofia.uni.fmi.mjt.goodreads.finder;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+
+import java.util.List;
+
+/**
+ * A change of the books of a {@link BookFinder}, as seen by its indexes. Book ids are stable:
+ * a removed book leaves its id empty (null in the next list), and added books get new ids at
+ * the end of the list.
+ *
+ * @param previous the books by id before the change
+ * @param next     the books by id after the change
+ * @param removed  the ids of the removed books, in ascending order; they are books of previous
+ * @param added    the ids of the added books, in ascending order; they are books of next, all at
+ *                 or after the end of previous
+ */
+record IndexUpdate(List<Book> previous, List<Book> next, int[] removed, int[] added) {
+}
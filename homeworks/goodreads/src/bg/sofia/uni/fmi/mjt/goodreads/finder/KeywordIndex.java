@@ -0,0 +1,375 @@
+package bg.sofia.uni.fmi.mjt.goodreads.finder;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.tokenizer.TermDictionary;
+import bg.sofia.uni.fmi.mjt.goodreads.tokenizer.TokenizedCatalog;
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedArray;
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedIntArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index from the tokens of book titles and descriptions to the books containing them.
+ * Books are identified by their position in the list the index was built from, and tokens by their
+ * id in the dictionary of a {@link TokenizedCatalog}. Every posting list holds the ids of the books
+ * containing its token in ascending order, together with the number of occurrences of the token in
+ * each of them for relevance scoring. The posting lists by term and the lengths by book are chunked
+ * arrays, which an updated index shares with this one except for the chunks it changes.
+ */
+public class KeywordIndex {
+    private static final int[] NO_BOOKS = new int[0];
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    private final int size;
+    private final TermDictionary dictionary;
+    private final ChunkedArray<Postings> postings;
+    private final ChunkedIntArray lengths;
+    private final long totalLength;
+    private final double averageLength;
+
+    /**
+     * Builds the index from the token ids the catalog holds for every title and description.
+     *
+     * @param books   the books to index; a book's id is its position in the list
+     * @param catalog the tokenized titles and descriptions of the books
+     * @throws IllegalArgumentException if books or catalog is null
+     */
+    public KeywordIndex(List<Book> books, TokenizedCatalog catalog) {
+        if (books == null || catalog == null) {
+            throw new IllegalArgumentException("Books and catalog cannot be null");
+        }
+
+        this.dictionary = catalog.dictionary();
+        PostingsBuilder[] builders = new PostingsBuilder[dictionary.size()];
+        ChunkedIntArray.Builder newLengths = ChunkedIntArray.ofSize(books.size()).toBuilder();
+        long total = 0;
+        for (int id = 0; id < books.size(); id++) {
+            int bookId = id;
+            int length = forEachTerm(tokensOf(catalog, books.get(id)), (term, frequency) -> {
+                if (builders[term] == null) {
+                    builders[term] = new PostingsBuilder();
+                }
+                builders[term].add(bookId, frequency);
+            });
+            newLengths.set(id, length);
+            total += length;
+        }
+
+        this.size = books.size();
+        this.totalLength = total;
+        this.averageLength = size == 0 ? 0.0 : (double) total / size;
+        this.lengths = newLengths.build();
+        ChunkedArray.Builder<Postings> newPostings = ChunkedArray.<Postings>ofSize(builders.length).toBuilder();
+        for (int term = 0; term < builders.length; term++) {
+            if (builders[term] != null) {
+                newPostings.set(term, builders[term].build());
+            }
+        }
+        this.postings = newPostings.build();
+    }
+
+    private KeywordIndex(TermDictionary dictionary, ChunkedArray<Postings> postings, ChunkedIntArray lengths,
+                         int size, long totalLength) {
+        this.dictionary = dictionary;
+        this.postings = postings;
+        this.lengths = lengths;
+        this.size = size;
+        this.totalLength = totalLength;
+        this.averageLength = size == 0 ? 0.0 : (double) totalLength / size;
+    }
+
+    /**
+     * Creates the index of the books after a change. Only the posting lists of the terms of removed
+     * and added books are rebuilt; all others are shared with this index, which is not modified. The
+     * cost of an update is that of rebuilding these lists, so a term found in most books makes every
+     * change of such a book cost time proportional to the number of books.
+     *
+     * @param update          the change
+     * @param previousCatalog the catalog holding the tokens of the removed books
+     * @param nextCatalog     the catalog holding the tokens of the added books
+     * @return the updated index
+     */
+    KeywordIndex update(IndexUpdate update, TokenizedCatalog previousCatalog, TokenizedCatalog nextCatalog) {
+        ChunkedIntArray.Builder newLengths = lengths.toBuilder();
+        long newTotalLength = totalLength;
+
+        BitSet removedIds = new BitSet();
+        BitSet shrinkingTerms = new BitSet();
+        for (int id : update.removed()) {
+            removedIds.set(id);
+            forEachTerm(tokensOf(previousCatalog, update.previous().get(id)),
+                (term, frequency) -> shrinkingTerms.set(term));
+            newTotalLength -= newLengths.get(id);
+            newLengths.set(id, 0);
+        }
+
+        Map<Integer, PostingsBuilder> additions = new HashMap<>();
+        for (int id : update.added()) {
+            int bookId = id;
+            int length = forEachTerm(tokensOf(nextCatalog, update.next().get(id)), (term, frequency) ->
+                additions.computeIfAbsent(term, t -> new PostingsBuilder()).add(bookId, frequency));
+            newLengths.set(id, length);
+            newTotalLength += length;
+        }
+
+        ChunkedArray.Builder<Postings> newPostings = postings.toBuilder();
+        for (int term = shrinkingTerms.nextSetBit(0); term >= 0; term = shrinkingTerms.nextSetBit(term + 1)) {
+            newPostings.set(term, merge(newPostings.get(term), removedIds, additions.remove(term)));
+        }
+        // The remaining terms are not in any removed book, and may be new to the index
+        additions.forEach((term, builder) ->
+            newPostings.set(term, merge(term < newPostings.size() ? newPostings.get(term) : null, null, builder)));
+
+        int newSize = size - update.removed().length + update.added().length;
+        return new KeywordIndex(nextCatalog.dictionary(), newPostings.build(), newLengths.build(), newSize,
+            newTotalLength);
+    }
+
+    /**
+     * Returns the number of books containing the token.
+     *
+     * @param token a normalized token
+     * @return the document frequency of the token
+     */
+    public int documentFrequency(String token) {
+        Postings list = postingsOf(token);
+        return list == null ? 0 : list.ids().length;
+    }
+
+    /**
+     * Finds the books containing every one of the tokens by intersecting their posting lists,
+     * shortest first, so the work is bounded by the rarest token.
+     *
+     * @param tokens normalized tokens
+     * @return the ids of the matching books in ascending order; empty if tokens is empty
+     */
+    public int[] matchAll(Collection<String> tokens) {
+        if (tokens.isEmpty()) {
+            return NO_BOOKS;
+        }
+
+        int[][] lists = new int[tokens.size()][];
+        int count = 0;
+        for (String token : tokens) {
+            Postings list = postingsOf(token);
+            if (list == null) {
+                return NO_BOOKS;
+            }
+            lists[count++] = list.ids();
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+
+        int[] result = lists[0].clone();
+        int resultSize = result.length;
+        for (int i = 1; i < lists.length && resultSize > 0; i++) {
+            resultSize = intersect(result, resultSize, lists[i]);
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    /**
+     * Finds the books containing at least one of the tokens by uniting their posting lists.
+     *
+     * @param tokens normalized tokens
+     * @return the ids of the matching books in ascending order
+     */
+    public int[] matchAny(Collection<String> tokens) {
+        BitSet matches = new BitSet(size);
+        for (String token : tokens) {
+            Postings list = postingsOf(token);
+            if (list != null) {
+                for (int id : list.ids()) {
+                    matches.set(id);
+                }
+            }
+        }
+        return matches.stream().toArray();
+    }
+
+    /**
+     * Prepares BM25 scoring of books against the given query tokens.
+     *
+     * @param tokens normalized query tokens
+     * @return a scorer for the tokens
+     */
+    public Bm25Scorer scorer(Collection<String> tokens) {
+        List<Postings> lists = new ArrayList<>(tokens.size());
+        List<Double> weights = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            Postings list = postingsOf(token);
+            if (list != null) {
+                int documentFrequency = list.ids().length;
+                lists.add(list);
+                weights.add(Math.log(1 + (size - documentFrequency + 0.5) / (documentFrequency + 0.5)));
+            }
+        }
+        return new Bm25Scorer(lists.toArray(Postings[]::new),
+            weights.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    /**
+     * Scores books with Okapi BM25 against a fixed set of query tokens. Term frequencies are found
+     * by binary search in the posting lists, so scoring allocates nothing.
+     */
+    public final class Bm25Scorer {
+        private final Postings[] lists;
+        private final double[] weights;
+
+        private Bm25Scorer(Postings[] lists, double[] weights) {
+            this.lists = lists;
+            this.weights = weights;
+        }
+
+        /**
+         * Scores a book.
+         *
+         * @param id the book id
+         * @return the BM25 score, 0.0 if the book contains none of the tokens
+         */
+        public double score(int id) {
+            double relativeLength = averageLength == 0 ? 0 : lengths.get(id) / averageLength;
+            double lengthNorm = BM25_K1 * (1 - BM25_B + BM25_B * relativeLength);
+            double score = 0.0;
+            for (int i = 0; i < lists.length; i++) {
+                int found = Arrays.binarySearch(lists[i].ids(), id);
+                if (found >= 0) {
+                    int frequency = lists[i].frequencies()[found];
+                    score += weights[i] * frequency * (BM25_K1 + 1) / (frequency + lengthNorm);
+                }
+            }
+            return score;
+        }
+    }
+
+    /**
+     * Returns the posting list without the removed books and followed by the added ones, or null if it is empty.
+     * Added books have greater ids than all books already in the list; removed may be null if there are none.
+     */
+    private static Postings merge(Postings list, BitSet removed, PostingsBuilder additions) {
+        PostingsBuilder builder = new PostingsBuilder();
+        if (list != null) {
+            for (int i = 0; i < list.ids().length; i++) {
+                if (removed == null || !removed.get(list.ids()[i])) {
+                    builder.add(list.ids()[i], list.frequencies()[i]);
+                }
+            }
+        }
+        if (additions != null) {
+            builder.addAll(additions);
+        }
+        return builder.isEmpty() ? null : builder.build();
+    }
+
+    /**
+     * Returns the title and description tokens of a book, sorted so that equal ids are adjacent.
+     */
+    private static int[] tokensOf(TokenizedCatalog catalog, Book book) {
+        int[] title = catalog.titleTokens(book);
+        int[] description = catalog.descriptionTokens(book);
+        int[] tokens = Arrays.copyOf(title, title.length + description.length);
+        System.arraycopy(description, 0, tokens, title.length, description.length);
+        Arrays.sort(tokens);
+        return tokens;
+    }
+
+    /**
+     * Reports every known term of the sorted tokens with its number of occurrences.
+     *
+     * @return the number of known tokens
+     */
+    private static int forEachTerm(int[] sortedTokens, TermSink sink) {
+        int length = 0;
+        for (int from = 0, to; from < sortedTokens.length; from = to) {
+            to = from + 1;
+            while (to < sortedTokens.length && sortedTokens[to] == sortedTokens[from]) {
+                to++;
+            }
+            if (sortedTokens[from] != TermDictionary.UNKNOWN) {
+                sink.accept(sortedTokens[from], to - from);
+                length += to - from;
+            }
+        }
+        return length;
+    }
+
+    private Postings postingsOf(String token) {
+        int term = dictionary.id(token);
+        return term == TermDictionary.UNKNOWN || term >= postings.size() ? null : postings.get(term);
+    }
+
+    /**
+     * Keeps in the first size elements of result only the ids also present in list.
+     * Both are sorted; list is searched with exponential steps since it is usually much longer.
+     *
+     * @return the new number of ids in result
+     */
+    private static int intersect(int[] result, int size, int[] list) {
+        int kept = 0;
+        int from = 0;
+        for (int i = 0; i < size && from < list.length; i++) {
+            int id = result[i];
+
+            int step = 1;
+            int high = from;
+            while (high < list.length && list[high] < id) {
+                from = high + 1;
+                high += step;
+                step <<= 1;
+            }
+
+            int found = Arrays.binarySearch(list, from, Math.min(high + 1, list.length), id);
+            if (found >= 0) {
+                result[kept++] = id;
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+        }
+        return kept;
+    }
+
+    private record Postings(int[] ids, int[] frequencies) {
+    }
+
+    @FunctionalInterface
+    private interface TermSink {
+        void accept(int term, int frequency);
+    }
+
+    private static final class PostingsBuilder {
+        private int[] ids = new int[4];
+        private int[] frequencies = new int[4];
+        private int count;
+
+        void add(int id, int frequency) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                frequencies = Arrays.copyOf(frequencies, count * 2);
+            }
+            ids[count] = id;
+            frequencies[count++] = frequency;
+        }
+
+        void addAll(PostingsBuilder other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.ids[i], other.frequencies[i]);
+            }
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        Postings build() {
+            return new Postings(Arrays.copyOf(ids, count), Arrays.copyOf(frequencies, count));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package bg.sofia.uni.fmi.mjt.goodreads.finder;
+
+/**
+ * Defines the order of query results.
+ * BM25 - By the Okapi BM25 relevance of the title and description to the query keywords
+ * RATING - By average rating
+ * Books with equal scores keep the order in which the finder iterates its books.
+ */
+public enum Ranking {
+    BM25,
+    RATING
+}
@@ -0,0 +1,199 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.SimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.util.TopScores;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the most similar books of every book of a catalog at once, in parallel.
+ * <p>
+ * The similarity matrix is scored in square tiles of {@value #BLOCK_SIZE} by {@value #BLOCK_SIZE} books,
+ * so the books of a tile, and whatever the calculator caches for them, stay hot while every pair of the
+ * tile is scored. The calculator is symmetric, so only the tiles on and above the diagonal are scored and
+ * every score is offered to both of its books. Every row keeps only its best k neighbours in a bounded
+ * heap; a tile touches the heaps of two blocks of rows, each guarded by a lock of its own, and tiles are
+ * scored independently on the pool.
+ */
+public class BatchRecommender {
+    private static final int BLOCK_SIZE = 256;
+
+    private final List<Book> books;
+    private final SimilarityCalculator calculator;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new batch recommender.
+     *
+     * @param books      the books; a book's id is its position in the list, e.g. its catalog id
+     * @param calculator the similarity calculator; it must not depend on the order of the books, and it is
+     *                   called from several threads at once
+     * @param pool       the pool to score on
+     * @throws IllegalArgumentException if any argument is null or books is empty
+     */
+    public BatchRecommender(List<Book> books, SimilarityCalculator calculator, ForkJoinPool pool) {
+        if (books == null || books.isEmpty()) {
+            throw new IllegalArgumentException("Books cannot be null or empty");
+        }
+        if (calculator == null || pool == null) {
+            throw new IllegalArgumentException("Similarity calculator and pool cannot be null");
+        }
+
+        this.books = List.copyOf(books);
+        this.calculator = calculator;
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the k most similar other books of every book. Books equal to the origin are skipped, and
+     * books with equal similarity are ordered by id.
+     *
+     * @param k the number of neighbours per book
+     * @return the neighbours of all books
+     * @throws IllegalArgumentException if k is not positive or the result would not fit in memory arrays
+     */
+    public SimilarBooks recommendAll(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of neighbours must be positive");
+        }
+
+        int size = books.size();
+        if ((long) size * k > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many neighbours for " + size + " books");
+        }
+
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        TopScores[] tops = new TopScores[size];
+        for (int row = 0; row < size; row++) {
+            tops[row] = new TopScores(k);
+        }
+        Object[] locks = new Object[blocks];
+        for (int block = 0; block < blocks; block++) {
+            locks[block] = new Object();
+        }
+        pool.invoke(new TilesTask(0, Math.toIntExact((long) blocks * (blocks + 1) / 2), blocks, tops, locks));
+
+        int[] counts = new int[size];
+        int[] neighbours = new int[size * k];
+        float[] scores = new float[size * k];
+        int[] ids = new int[k];
+        double[] rowScores = new double[k];
+        for (int row = 0; row < size; row++) {
+            counts[row] = tops[row].size();
+            tops[row].drain(ids, rowScores);
+            for (int i = 0; i < counts[row]; i++) {
+                neighbours[row * k + i] = ids[i];
+                scores[row * k + i] = (float) rowScores[i];
+            }
+        }
+
+        return new SimilarBooks(size, k, counts, neighbours, scores);
+    }
+
+    /**
+     * Scores the tile of a block of rows and a block of columns at or after it, then offers every score
+     * to the heap of its row and, mirrored, to the heap of its column.
+     */
+    private void scoreTile(int rowBlock, int columnBlock, TopScores[] tops, Object[] locks) {
+        int size = books.size();
+        int rowStart = rowBlock * BLOCK_SIZE;
+        int rowEnd = Math.min(size, rowStart + BLOCK_SIZE);
+        int columnStart = columnBlock * BLOCK_SIZE;
+        int columnEnd = Math.min(size, columnStart + BLOCK_SIZE);
+        int width = columnEnd - columnStart;
+
+        double[] tile = new double[(rowEnd - rowStart) * width];
+        boolean[] scored = new boolean[tile.length];
+        for (int row = rowStart; row < rowEnd; row++) {
+            Book origin = books.get(row);
+            // On the diagonal, only the pairs above it
+            for (int column = Math.max(columnStart, row + 1); column < columnEnd; column++) {
+                Book other = books.get(column);
+                if (!other.equals(origin)) {
+                    int cell = (row - rowStart) * width + column - columnStart;
+                    tile[cell] = calculator.calculateSimilarity(origin, other);
+                    scored[cell] = true;
+                }
+            }
+        }
+
+        synchronized (locks[rowBlock]) {
+            for (int row = rowStart; row < rowEnd; row++) {
+                for (int column = columnStart; column < columnEnd; column++) {
+                    int cell = (row - rowStart) * width + column - columnStart;
+                    if (scored[cell]) {
+                        tops[row].offer(tile[cell], column);
+                    }
+                }
+            }
+        }
+        synchronized (locks[columnBlock]) {
+            for (int row = rowStart; row < rowEnd; row++) {
+                for (int column = columnStart; column < columnEnd; column++) {
+                    int cell = (row - rowStart) * width + column - columnStart;
+                    if (scored[cell]) {
+                        tops[column].offer(tile[cell], row);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scores the tiles with the given numbers, counting the tiles on and above the diagonal row by row.
+     */
+    private final class TilesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int blocks;
+        private final TopScores[] tops;
+        private final Object[] locks;
+
+        TilesTask(int from, int to, int blocks, TopScores[] tops, Object[] locks) {
+            this.from = from;
+            this.to = to;
+            this.blocks = blocks;
+            this.tops = tops;
+            this.locks = locks;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    int rowBlock = rowBlockOf(from);
+                    scoreTile(rowBlock, rowBlock + (int) (from - firstTile(rowBlock)), tops, locks);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new TilesTask(from, middle, blocks, tops, locks), new TilesTask(middle, to, blocks, tops, locks));
+        }
+
+        /**
+         * Returns the block of rows of a tile: the last block whose first tile is not after it, found by
+         * solving the quadratic firstTile(r) = tile and correcting the floating point estimate.
+         */
+        private int rowBlockOf(int tile) {
+            double b = 2.0 * blocks + 1;
+            int rowBlock = (int) ((b - Math.sqrt(b * b - 8.0 * tile)) / 2);
+            while (rowBlock > 0 && firstTile(rowBlock) > tile) {
+                rowBlock--;
+            }
+            while (rowBlock + 1 < blocks && firstTile(rowBlock + 1) <= tile) {
+                rowBlock++;
+            }
+            return rowBlock;
+        }
+
+        private long firstTile(int rowBlock) {
+            return (long) rowBlock * blocks - (long) rowBlock * (rowBlock - 1) / 2;
+        }
+    }
+}
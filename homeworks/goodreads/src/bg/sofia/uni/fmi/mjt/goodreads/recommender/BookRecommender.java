@@ -1,21 +1,32 @@
 package bg.sofia.uni.fmi.mjt.goodreads.recommender;
 
 import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.ann.CandidateIndex;
 import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.SimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.util.TopScores;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.Map;
-import java.util.Objects;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.SortedMap;
+import java.util.function.BiFunction;
 
 /**
  * Implementation of BookRecommenderAPI that provides book recommendations
  * based on a similarity calculator.
+ * <p>
+ * A recommender is immutable; {@link #update} creates the recommender of a changed set of books.
  */
 public class BookRecommender implements BookRecommenderAPI {
-    private final Set<Book> books;
+    private static final Comparator<Book> BY_TITLE = Comparator.comparing(Book::title);
+
+    private final Book[] books;
     private final SimilarityCalculator similarityCalculator;
+    private final BiFunction<List<Book>, SimilarityCalculator, CandidateIndex> indexFactory;
+    private final CandidateIndex candidateIndex;
 
     /**
      * Creates a new BookRecommender with the given set of books and similarity calculator.
@@ -25,6 +36,22 @@ public class BookRecommender implements BookRecommenderAPI {
      * @throws IllegalArgumentException if books is null or empty, or calculator is null
      */
     public BookRecommender(Set<Book> books, SimilarityCalculator calculator) {
+        this(books, calculator, null);
+    }
+
+    /**
+     * Creates a new BookRecommender that scores only the candidates of an approximate nearest-neighbour
+     * index instead of every book. Recommendations are then approximate; the parameters of the index
+     * trade recall for speed.
+     *
+     * @param books        the set of books to recommend from
+     * @param calculator   the similarity calculator to use
+     * @param indexFactory builds the candidate index over the books in the order given to it, for the
+     *                     recommender's calculator, or null to score every book
+     * @throws IllegalArgumentException if books is null or empty, or calculator is null
+     */
+    public BookRecommender(Set<Book> books, SimilarityCalculator calculator,
+                           BiFunction<List<Book>, SimilarityCalculator, CandidateIndex> indexFactory) {
         if (books == null || books.isEmpty()) {
             throw new IllegalArgumentException("Books set cannot be null or empty");
         }
@@ -32,8 +59,68 @@ public class BookRecommender implements BookRecommenderAPI {
             throw new IllegalArgumentException("Similarity calculator cannot be null");
         }
         
-        this.books = Set.copyOf(books);
+        // Sorted by title, so that books with equal similarity are recommended in title order
+        this.books = books.stream()
+            .sorted(BY_TITLE)
+            .toArray(Book[]::new);
         this.similarityCalculator = calculator;
+        this.indexFactory = indexFactory;
+        this.candidateIndex = indexFactory == null ? null : indexFactory.apply(List.of(this.books), calculator);
+    }
+
+    private BookRecommender(Book[] books, SimilarityCalculator calculator,
+                            BiFunction<List<Book>, SimilarityCalculator, CandidateIndex> indexFactory) {
+        this.books = books;
+        this.similarityCalculator = calculator;
+        this.indexFactory = indexFactory;
+        this.candidateIndex = indexFactory == null ? null : indexFactory.apply(List.of(books), calculator);
+    }
+
+    /**
+     * Creates a recommender of these books without the removed ones and with the added ones, merging the
+     * added books into the title order instead of sorting all books again. The candidate index, if any, is
+     * rebuilt with the same factory for the new calculator, since its ids are positions in that order and
+     * an index such as {@link bg.sofia.uni.fmi.mjt.goodreads.recommender.ann.RandomProjectionIndex} hashes
+     * with the calculator's data.
+     * <p>
+     * Inserting into the title order moves the books after every insertion point, so an update copies all
+     * book references, and rebuilds the candidate index from scratch, however few books change. Callers
+     * with a stream of changes should collect them and apply them in one update.
+     *
+     * @param calculator the similarity calculator of the new recommender, usually one updated with the same change
+     * @param added      the books to add
+     * @param removed    the books to remove
+     * @return the updated recommender
+     * @throws IllegalArgumentException if any argument is null, or no books would remain
+     */
+    public BookRecommender update(SimilarityCalculator calculator, Collection<Book> added, Collection<Book> removed) {
+        if (calculator == null || added == null || removed == null) {
+            throw new IllegalArgumentException("Calculator, added and removed books cannot be null");
+        }
+
+        Set<Book> gone = new HashSet<>(removed);
+        Book[] fresh = added.stream().sorted(BY_TITLE).toArray(Book[]::new);
+        Book[] merged = new Book[books.length + fresh.length];
+        int count = 0;
+        int next = 0;
+        for (Book book : books) {
+            if (gone.contains(book)) {
+                continue;
+            }
+            // Added books go after kept books of the same title
+            while (next < fresh.length && BY_TITLE.compare(fresh[next], book) < 0) {
+                merged[count++] = fresh[next++];
+            }
+            merged[count++] = book;
+        }
+        while (next < fresh.length) {
+            merged[count++] = fresh[next++];
+        }
+
+        if (count == 0) {
+            throw new IllegalArgumentException("Books set cannot become empty");
+        }
+        return new BookRecommender(Arrays.copyOf(merged, count), calculator, indexFactory);
     }
 
     @Override
@@ -45,25 +132,33 @@ public class BookRecommender implements BookRecommenderAPI {
             throw new IllegalArgumentException("Max number of recommendations must be positive");
         }
 
-        // Use a TreeMap with reverse order comparator to sort by similarity score in descending order
-        SortedMap<Book, Double> recommendations = new TreeMap<>(
-            Map.Entry.<Book, Double>comparingByValue().reversed()
-                .thenComparing(entry -> entry.getKey().title())
-        );
+        // Keep only the best maxN books instead of sorting all of them
+        TopScores top = new TopScores(maxN);
+        if (candidateIndex == null) {
+            for (int id = 0; id < books.length; id++) {
+                offer(originBook, id, top);
+            }
+        } else {
+            for (int id : candidateIndex.candidates(originBook)) {
+                offer(originBook, id, top);
+            }
+        }
+
+        int count = top.size();
+        int[] ids = new int[count];
+        double[] scores = new double[count];
+        top.drain(ids, scores);
 
-        // Calculate similarity for each book (excluding the origin book)
-        books.stream()
-            .filter(book -> !book.equals(originBook))
-            .forEach(book -> {
-                double similarity = similarityCalculator.calculateSimilarity(originBook, book);
-                recommendations.put(book, similarity);
-            });
+        Book[] ranked = new Book[count];
+        for (int rank = 0; rank < count; rank++) {
+            ranked[rank] = books[ids[rank]];
+        }
+        return Recommendations.of(ranked, scores, count);
+    }
 
-        // Return top N recommendations
-        return recommendations.entrySet().stream()
-            .limit(maxN)
-            .collect(TreeMap::new, 
-                    (map, entry) -> map.put(entry.getKey(), entry.getValue()),
-                    Map::putAll);
+    private void offer(Book originBook, int id, TopScores top) {
+        if (!books[id].equals(originBook)) {
+            top.offer(similarityCalculator.calculateSimilarity(originBook, books[id]), id);
+        }
     }
 }
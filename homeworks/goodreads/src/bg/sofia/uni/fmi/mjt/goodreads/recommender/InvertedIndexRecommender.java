@@ -0,0 +1,467 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.SimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.composite.CompositeSimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.descriptions.SparseVector;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.descriptions.TFIDFSimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.genres.GenresOverlapSimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.util.TopScores;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Recommends books by a weighted combination of description TF-IDF similarity and genre overlap, the same
+ * score a {@link CompositeSimilarityCalculator} of a {@link TFIDFSimilarityCalculator} and a
+ * {@link GenresOverlapSimilarityCalculator} gives, without scoring the whole catalog.
+ * <p>
+ * Both similarities are sums of per-feature contributions: a shared term adds the product of its weights
+ * in the two unit-length TF-IDF vectors, and a shared genre adds {@code 1 / min(|A|, |B|)}. The catalog is
+ * indexed by term and by genre, so only books sharing at least one feature with the origin are scored,
+ * one posting list at a time. Books sharing nothing with the origin have a similarity of zero and are
+ * not recommended.
+ * <p>
+ * Lists are processed from the one with the largest possible contribution down. Once the contributions left
+ * cannot lift a book that has not been seen yet above the current top results, the remaining lists only
+ * update books already seen (the MaxScore strategy): the seen books are looked up in each sorted list by
+ * galloping search, unless the list is the shorter of the two, so a long list of a common term costs time in
+ * proportion to the number of seen books times the logarithm of its length. After every list, the books that
+ * the remaining lists can no longer lift to the top results are dropped from the lookups. Finding the current
+ * top results costs a pass over all candidates, so it is repeated after exponentially growing numbers of
+ * lists; in between, the last result is kept as a threshold, which stays a lower bound because partial scores
+ * only grow.
+ */
+public class InvertedIndexRecommender implements BookRecommenderAPI {
+    private final Book[] books;
+    private final TFIDFSimilarityCalculator descriptions;
+    private final double descriptionsWeight;
+    private final double genresWeight;
+
+    private final int[][] termBooks;
+    private final float[][] termWeights;
+    private final float[] maxTermWeights;
+    private final Map<String, int[]> genreBooks;
+    private final Map<String, Integer> minGenreCounts;
+    private final int[] genreCounts;
+    private final ThreadLocal<Accumulator> accumulators;
+
+    /**
+     * Creates a new recommender over the given books.
+     *
+     * @param books              the books to recommend from
+     * @param descriptionsWeight the weight of the description TF-IDF similarity, at least 0
+     * @param genresWeight       the weight of the genre overlap similarity, at least 0
+     * @throws IllegalArgumentException if books is null or empty, a weight is negative or both are 0
+     */
+    public InvertedIndexRecommender(Set<Book> books, double descriptionsWeight, double genresWeight) {
+        if (books == null || books.isEmpty()) {
+            throw new IllegalArgumentException("Books set cannot be null or empty");
+        }
+        if (descriptionsWeight < 0 || genresWeight < 0 || descriptionsWeight + genresWeight <= 0) {
+            throw new IllegalArgumentException("Weights cannot be negative and at least one must be positive");
+        }
+
+        double totalWeight = descriptionsWeight + genresWeight;
+        // Sorted by title, so that books with equal similarity are recommended in title order
+        this.books = books.stream()
+            .sorted(Comparator.comparing(Book::title))
+            .toArray(Book[]::new);
+        this.descriptions = new TFIDFSimilarityCalculator(List.of(this.books));
+        this.descriptionsWeight = descriptionsWeight / totalWeight;
+        this.genresWeight = genresWeight / totalWeight;
+
+        int terms = descriptions.termCount();
+        int[] termSizes = new int[terms];
+        SparseVector[] vectors = new SparseVector[this.books.length];
+        for (int id = 0; id < this.books.length; id++) {
+            vectors[id] = descriptions.vectorOf(this.books[id]);
+            for (int i = 0; i < vectors[id].size(); i++) {
+                termSizes[vectors[id].term(i)]++;
+            }
+        }
+
+        this.termBooks = new int[terms][];
+        this.termWeights = new float[terms][];
+        this.maxTermWeights = new float[terms];
+        for (int term = 0; term < terms; term++) {
+            termBooks[term] = new int[termSizes[term]];
+            termWeights[term] = new float[termSizes[term]];
+        }
+        int[] filled = new int[terms];
+        for (int id = 0; id < this.books.length; id++) {
+            for (int i = 0; i < vectors[id].size(); i++) {
+                int term = vectors[id].term(i);
+                float weight = vectors[id].weight(i);
+                termBooks[term][filled[term]] = id;
+                termWeights[term][filled[term]++] = weight;
+                maxTermWeights[term] = Math.max(maxTermWeights[term], weight);
+            }
+        }
+
+        this.genreCounts = new int[this.books.length];
+        Map<String, List<Integer>> genres = new HashMap<>();
+        for (int id = 0; id < this.books.length; id++) {
+            genreCounts[id] = this.books[id].genres().size();
+            for (String genre : this.books[id].genres()) {
+                genres.computeIfAbsent(genre, g -> new ArrayList<>()).add(id);
+            }
+        }
+        this.genreBooks = new HashMap<>();
+        this.minGenreCounts = new HashMap<>();
+        genres.forEach((genre, ids) -> {
+            int[] sorted = ids.stream().mapToInt(Integer::intValue).toArray();
+            genreBooks.put(genre, sorted);
+            minGenreCounts.put(genre, Arrays.stream(sorted).map(id -> genreCounts[id]).min().orElse(1));
+        });
+
+        this.accumulators = ThreadLocal.withInitial(() -> new Accumulator(this.books.length));
+    }
+
+    /**
+     * Returns a calculator giving exactly the scores this recommender ranks by, for scoring individual pairs.
+     *
+     * @return a composite of the description and genre similarities with this recommender's weights
+     */
+    public SimilarityCalculator similarityCalculator() {
+        CompositeSimilarityCalculator calculator = new CompositeSimilarityCalculator();
+        if (descriptionsWeight > 0) {
+            calculator.addCalculator(descriptions, descriptionsWeight);
+        }
+        if (genresWeight > 0) {
+            calculator.addCalculator(new GenresOverlapSimilarityCalculator(), genresWeight);
+        }
+        return calculator;
+    }
+
+    @Override
+    public SortedMap<Book, Double> recommendBooks(Book originBook, int maxN) {
+        if (originBook == null) {
+            throw new IllegalArgumentException("Origin book cannot be null");
+        }
+        if (maxN <= 0) {
+            throw new IllegalArgumentException("Max number of recommendations must be positive");
+        }
+
+        List<Feature> features = features(originBook);
+        // Largest possible contribution first, so the bound of the remaining lists shrinks fastest
+        features.sort(Comparator.comparingDouble(Feature::bound).reversed());
+        double remaining = features.stream().mapToDouble(Feature::bound).sum();
+
+        Accumulator accumulator = accumulators.get();
+        accumulator.reset();
+        double threshold = Double.NEGATIVE_INFINITY;
+        int nextCheck = 0;
+        int checkInterval = 1;
+        int next = 0;
+        while (next < features.size()) {
+            Feature feature = features.get(next++);
+            remaining -= feature.bound();
+            feature.accumulate(accumulator);
+
+            if (remaining < accumulator.maxScore()) {
+                if (remaining >= threshold && next > nextCheck) {
+                    threshold = kthScore(accumulator, originBook, maxN);
+                    nextCheck = next - 1 + checkInterval;
+                    checkInterval *= 2;
+                }
+                if (remaining < threshold) {
+                    break;
+                }
+            }
+        }
+
+        // No book that has not been seen yet can reach the top results any more
+        int candidates = accumulator.selectCandidates(remaining, threshold);
+        while (next < features.size() && candidates > 0) {
+            Feature feature = features.get(next++);
+            remaining -= feature.bound();
+            feature.accumulateCandidates(accumulator, candidates);
+            candidates = accumulator.retainCandidates(candidates, remaining, threshold);
+        }
+
+        TopScores top = new TopScores(maxN);
+        offerAll(accumulator, originBook, top);
+
+        int count = top.size();
+        int[] ids = new int[count];
+        double[] scores = new double[count];
+        top.drain(ids, scores);
+
+        Book[] ranked = new Book[count];
+        for (int rank = 0; rank < count; rank++) {
+            ranked[rank] = books[ids[rank]];
+        }
+        return Recommendations.of(ranked, scores, count);
+    }
+
+    private List<Feature> features(Book origin) {
+        List<Feature> features = new ArrayList<>();
+
+        if (descriptionsWeight > 0) {
+            SparseVector vector = descriptions.vectorOf(origin);
+            for (int i = 0; i < vector.size(); i++) {
+                int term = vector.term(i);
+                double factor = descriptionsWeight * vector.weight(i);
+                features.add(new TermFeature(term, factor, factor * maxTermWeights[term]));
+            }
+        }
+
+        Set<String> originGenres = origin.genres();
+        if (genresWeight > 0 && !originGenres.isEmpty()) {
+            for (String genre : originGenres) {
+                int[] ids = genreBooks.get(genre);
+                if (ids != null) {
+                    double bound = genresWeight / Math.min(originGenres.size(), minGenreCounts.get(genre));
+                    features.add(new GenreFeature(ids, originGenres.size(), bound));
+                }
+            }
+        }
+        return features;
+    }
+
+    /**
+     * Returns the maxN-th best partial score among the candidates, or negative infinity if there are fewer.
+     * Partial scores only grow, so the final maxN-th best score is at least this value.
+     */
+    private double kthScore(Accumulator accumulator, Book origin, int maxN) {
+        TopScores top = new TopScores(maxN);
+        offerAll(accumulator, origin, top);
+        return top.threshold();
+    }
+
+    private void offerAll(Accumulator accumulator, Book origin, TopScores top) {
+        for (int i = 0; i < accumulator.touchedCount(); i++) {
+            int id = accumulator.touched(i);
+            if (!books[id].equals(origin)) {
+                top.offer(accumulator.score(id), id);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface MatchConsumer {
+        void accept(int index, int id);
+    }
+
+    private interface Feature {
+        double bound();
+
+        /**
+         * Adds the contribution of the feature to every book of its list.
+         */
+        void accumulate(Accumulator accumulator);
+
+        /**
+         * Adds the contribution of the feature to the first count candidates of the accumulator, and
+         * possibly to other books already seen, but to no new book.
+         */
+        void accumulateCandidates(Accumulator accumulator, int count);
+    }
+
+    private final class TermFeature implements Feature {
+        private final int term;
+        private final double factor;
+        private final double bound;
+
+        TermFeature(int term, double factor, double bound) {
+            this.term = term;
+            this.factor = factor;
+            this.bound = bound;
+        }
+
+        @Override
+        public double bound() {
+            return bound;
+        }
+
+        @Override
+        public void accumulate(Accumulator accumulator) {
+            int[] ids = termBooks[term];
+            float[] weights = termWeights[term];
+            for (int i = 0; i < ids.length; i++) {
+                accumulator.add(ids[i], factor * weights[i]);
+            }
+        }
+
+        @Override
+        public void accumulateCandidates(Accumulator accumulator, int count) {
+            float[] weights = termWeights[term];
+            accumulator.forEachSeen(termBooks[term], count,
+                (index, id) -> accumulator.addToSeen(id, factor * weights[index]));
+        }
+    }
+
+    private final class GenreFeature implements Feature {
+        private final int[] ids;
+        private final int originGenres;
+        private final double bound;
+
+        GenreFeature(int[] ids, int originGenres, double bound) {
+            this.ids = ids;
+            this.originGenres = originGenres;
+            this.bound = bound;
+        }
+
+        @Override
+        public double bound() {
+            return bound;
+        }
+
+        @Override
+        public void accumulate(Accumulator accumulator) {
+            for (int id : ids) {
+                accumulator.add(id, contribution(id));
+            }
+        }
+
+        @Override
+        public void accumulateCandidates(Accumulator accumulator, int count) {
+            accumulator.forEachSeen(ids, count,
+                (index, id) -> accumulator.addToSeen(id, contribution(id)));
+        }
+
+        private double contribution(int id) {
+            return genresWeight / Math.min(originGenres, genreCounts[id]);
+        }
+    }
+
+    /**
+     * Per-thread partial scores of the candidates of one request. Entries are valid only when stamped
+     * with the current epoch, so resetting is constant time.
+     */
+    private static final class Accumulator {
+        private final double[] scores;
+        private final int[] stamps;
+        private final int[] touched;
+        private final int[] candidates;
+        private int touchedCount;
+        private int epoch;
+        private double maxScore;
+
+        Accumulator(int size) {
+            this.scores = new double[size];
+            this.stamps = new int[size];
+            this.touched = new int[size];
+            this.candidates = new int[size];
+        }
+
+        void reset() {
+            touchedCount = 0;
+            maxScore = 0.0;
+            epoch++;
+            if (epoch == 0) {
+                Arrays.fill(stamps, 0);
+                epoch = 1;
+            }
+        }
+
+        void add(int id, double contribution) {
+            if (stamps[id] == epoch) {
+                scores[id] += contribution;
+            } else {
+                stamps[id] = epoch;
+                scores[id] = contribution;
+                touched[touchedCount++] = id;
+            }
+            maxScore = Math.max(maxScore, scores[id]);
+        }
+
+        void addToSeen(int id, double contribution) {
+            scores[id] += contribution;
+        }
+
+        /**
+         * Collects, in ascending order, the seen books that the remaining contributions can still lift
+         * to the threshold.
+         *
+         * @return the number of candidates
+         */
+        int selectCandidates(double remaining, double threshold) {
+            int count = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                if (scores[touched[i]] + remaining >= threshold) {
+                    candidates[count++] = touched[i];
+                }
+            }
+            Arrays.sort(candidates, 0, count);
+            return count;
+        }
+
+        /**
+         * Drops the candidates that the remaining contributions can no longer lift to the threshold,
+         * keeping the order of the others.
+         *
+         * @return the number of candidates left
+         */
+        int retainCandidates(int count, double remaining, double threshold) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (scores[candidates[i]] + remaining >= threshold) {
+                    candidates[kept++] = candidates[i];
+                }
+            }
+            return kept;
+        }
+
+        /**
+         * Calls the consumer for books of the sorted ids that are already seen, including the first count
+         * candidates. A list shorter than the candidates is walked, checking every book; in a longer one,
+         * every candidate is searched for by doubling the step from the previous match and then by binary
+         * search, so the cost is O(min(ids.length, count * log(ids.length))).
+         */
+        void forEachSeen(int[] ids, int count, MatchConsumer consumer) {
+            if (ids.length <= count) {
+                for (int i = 0; i < ids.length; i++) {
+                    if (stamps[ids[i]] == epoch) {
+                        consumer.accept(i, ids[i]);
+                    }
+                }
+                return;
+            }
+
+            int from = 0;
+            for (int c = 0; c < count && from < ids.length; c++) {
+                int candidate = candidates[c];
+                int low = from;
+                int high = from;
+                int step = 1;
+                while (high < ids.length && ids[high] < candidate) {
+                    low = high + 1;
+                    high += step;
+                    step <<= 1;
+                }
+
+                int index = Arrays.binarySearch(ids, low, Math.min(high + 1, ids.length), candidate);
+                if (index >= 0) {
+                    consumer.accept(index, candidate);
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+        }
+
+        double score(int id) {
+            return scores[id];
+        }
+
+        int touchedCount() {
+            return touchedCount;
+        }
+
+        int touched(int index) {
+            return touched[index];
+        }
+
+        double maxScore() {
+            return maxScore;
+        }
+    }
+}
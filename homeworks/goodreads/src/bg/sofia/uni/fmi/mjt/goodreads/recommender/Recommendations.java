@@ -0,0 +1,42 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Builds the sorted maps returned by recommenders.
+ */
+final class Recommendations {
+
+    private Recommendations() {
+    }
+
+    /**
+     * Creates a map ordered like the given books, which are already ranked best first. The order is
+     * taken from the ranking rather than recomputed from the scores, so books with equal scores keep
+     * the tie-breaking of the recommender and are never merged as equal keys.
+     *
+     * @param books  distinct books, best first
+     * @param scores the score of each book
+     * @param count  the number of books to take
+     * @return the recommendations
+     */
+    static SortedMap<Book, Double> of(Book[] books, double[] scores, int count) {
+        Map<Book, Integer> ranks = new HashMap<>();
+        for (int rank = 0; rank < count; rank++) {
+            ranks.put(books[rank], rank);
+        }
+
+        SortedMap<Book, Double> recommendations =
+            new TreeMap<>(Comparator.comparingInt(book -> ranks.getOrDefault(book, Integer.MAX_VALUE)));
+        for (int rank = 0; rank < count; rank++) {
+            recommendations.put(books[rank], scores[rank]);
+        }
+        return recommendations;
+    }
+}
@@ -0,0 +1,146 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The most similar books of every book of a catalog, as computed by {@link BatchRecommender}.
+ * Books are identified by their position in the list the batch was computed for.
+ * <p>
+ * The neighbours of all books are kept in two flat arrays of {@code size * k} ids and float scores,
+ * and are written to a file in the same layout (big-endian): magic, format version, book count, k,
+ * the neighbour count of every book, then for every book its neighbour ids and scores, best first.
+ */
+public class SimilarBooks {
+    private static final int MAGIC = 0x47525342; // "GRSB"
+    private static final int FORMAT_VERSION = 1;
+
+    private final int size;
+    private final int k;
+    private final int[] counts;
+    private final int[] neighbours;
+    private final float[] scores;
+
+    SimilarBooks(int size, int k, int[] counts, int[] neighbours, float[] scores) {
+        this.size = size;
+        this.k = k;
+        this.counts = counts;
+        this.neighbours = neighbours;
+        this.scores = scores;
+    }
+
+    /**
+     * Reads neighbours written with {@link #write(Path)}.
+     *
+     * @param file the file
+     * @return the neighbours
+     * @throws IllegalArgumentException if file is null or is not a valid neighbours file
+     * @throws UncheckedIOException     if the file cannot be read
+     */
+    public static SimilarBooks read(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Not a similar books file: " + file);
+            }
+
+            int size = in.readInt();
+            int k = in.readInt();
+            if (size < 0 || k <= 0 || (long) size * k > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Corrupted similar books file: " + file);
+            }
+
+            int[] counts = new int[size];
+            for (int id = 0; id < size; id++) {
+                counts[id] = in.readInt();
+                if (counts[id] < 0 || counts[id] > k) {
+                    throw new IllegalArgumentException("Corrupted similar books file: " + file);
+                }
+            }
+
+            int[] neighbours = new int[size * k];
+            float[] scores = new float[size * k];
+            for (int id = 0; id < size; id++) {
+                for (int i = 0; i < counts[id]; i++) {
+                    neighbours[id * k + i] = in.readInt();
+                }
+                for (int i = 0; i < counts[id]; i++) {
+                    scores[id * k + i] = in.readFloat();
+                }
+            }
+            return new SimilarBooks(size, k, counts, neighbours, scores);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read similar books from " + file, e);
+        }
+    }
+
+    /**
+     * Writes the neighbours to a file, replacing it if it exists.
+     *
+     * @param file the file
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public void write(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(size);
+            out.writeInt(k);
+            for (int count : counts) {
+                out.writeInt(count);
+            }
+            for (int id = 0; id < size; id++) {
+                for (int i = 0; i < counts[id]; i++) {
+                    out.writeInt(neighbours[id * k + i]);
+                }
+                for (int i = 0; i < counts[id]; i++) {
+                    out.writeFloat(scores[id * k + i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write similar books to " + file, e);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int k() {
+        return k;
+    }
+
+    /**
+     * Returns the most similar books of a book.
+     *
+     * @param id the book id
+     * @return the ids of its neighbours, most similar first
+     */
+    public int[] neighbours(int id) {
+        return Arrays.copyOfRange(neighbours, id * k, id * k + counts[id]);
+    }
+
+    /**
+     * Returns the similarities of a book to its neighbours.
+     *
+     * @param id the book id
+     * @return the scores in the order of {@link #neighbours(int)}
+     */
+    public float[] scores(int id) {
+        return Arrays.copyOfRange(scores, id * k, id * k + counts[id]);
+    }
+}
@@ -0,0 +1,51 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender.ann;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One LSH hash table: the ids of the books sharing each bucket key, in ascending order.
+ * Ids are added while the index is built, then the table is sealed and only read.
+ */
+final class Buckets {
+    private static final int[] EMPTY = new int[0];
+
+    private Map<Long, IdsBuilder> builders = new HashMap<>();
+    private final Map<Long, int[]> ids = new HashMap<>();
+
+    /**
+     * Adds an id; ids must be added in ascending order.
+     */
+    void add(long key, int id) {
+        builders.computeIfAbsent(key, k -> new IdsBuilder()).add(id);
+    }
+
+    /**
+     * Trims the buckets to their sizes once all ids are added.
+     */
+    void seal() {
+        builders.forEach((key, builder) -> ids.put(key, builder.build()));
+        builders = null;
+    }
+
+    int[] get(long key) {
+        return ids.getOrDefault(key, EMPTY);
+    }
+
+    private static final class IdsBuilder {
+        private int[] ids = new int[2];
+        private int count;
+
+        void add(int id) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+        }
+
+        int[] build() {
+            return Arrays.copyOf(ids, count);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender.ann;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+
+import java.util.BitSet;
+
+/**
+ * Approximate nearest-neighbour index over a list of books, identified by their position in the list.
+ * Instead of the exact most similar books, it quickly returns a small set of candidates that likely
+ * contains most of them; a recommender then scores only the candidates exactly.
+ */
+public interface CandidateIndex {
+
+    /**
+     * Finds the books likely to be similar to the given one.
+     *
+     * @param origin the book to find candidates for; it does not have to be indexed
+     * @return the candidate ids in ascending order, without duplicates
+     */
+    int[] candidates(Book origin);
+
+    /**
+     * Combines indexes built over the same list of books, e.g. one per similarity of a composite calculator.
+     *
+     * @param indexes the indexes
+     * @return an index returning the candidates of every one of the indexes
+     */
+    static CandidateIndex union(CandidateIndex... indexes) {
+        CandidateIndex[] copy = indexes.clone();
+        return origin -> {
+            BitSet ids = new BitSet();
+            for (CandidateIndex index : copy) {
+                for (int id : index.candidates(origin)) {
+                    ids.set(id);
+                }
+            }
+            return ids.stream().toArray();
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender.ann;
+
+/**
+ * Deterministic 64-bit hashing shared by the LSH indexes, so that an index built twice with the same
+ * seed puts every book in the same buckets.
+ */
+final class Hashing {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    /**
+     * Hashes the characters of a string with FNV-1a.
+     */
+    static long hash(String text) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Scrambles a value with the SplitMix64 finalizer; every input bit affects every output bit.
+     */
+    static long mix(long value) {
+        long mixed = value;
+        mixed = (mixed ^ (mixed >>> 30)) * 0xbf58476d1ce4e5b9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94d049bb133111ebL;
+        return mixed ^ (mixed >>> 31);
+    }
+
+    static long mix(long first, long second) {
+        return mix(first * 0x9e3779b97f4a7c15L + second);
+    }
+}
@@ -0,0 +1,91 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender.ann;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * MinHash locality-sensitive hashing over genre sets.
+ * <p>
+ * Every book gets {@code bands * rowsPerBand} MinHash values of its genres; two books agree on one of
+ * them with probability equal to the Jaccard similarity of their genres. Each band of rows is a bucket
+ * key, so books become candidates of each other if they agree on all rows of at least one band, which
+ * happens with probability {@code 1 - (1 - J^rowsPerBand)^bands}. More bands raise recall, more rows per
+ * band make the buckets more selective and the candidate lists shorter.
+ */
+public class MinHashIndex implements CandidateIndex {
+    private final int bands;
+    private final int rowsPerBand;
+    private final long seed;
+    private final Buckets[] tables;
+
+    /**
+     * Builds the index.
+     *
+     * @param books       the books; a book's id is its position in the list
+     * @param bands       the number of hash tables, at least 1
+     * @param rowsPerBand the number of MinHash values combined into a bucket key, at least 1
+     * @param seed        the seed of the hash functions
+     * @throws IllegalArgumentException if books is null or bands or rowsPerBand is not positive
+     */
+    public MinHashIndex(List<Book> books, int bands, int rowsPerBand, long seed) {
+        if (books == null) {
+            throw new IllegalArgumentException("Books cannot be null");
+        }
+        if (bands <= 0 || rowsPerBand <= 0) {
+            throw new IllegalArgumentException("Bands and rows per band must be positive");
+        }
+
+        this.bands = bands;
+        this.rowsPerBand = rowsPerBand;
+        this.seed = seed;
+        this.tables = new Buckets[bands];
+        for (int band = 0; band < bands; band++) {
+            tables[band] = new Buckets();
+        }
+
+        for (int id = 0; id < books.size(); id++) {
+            Set<String> genres = books.get(id).genres();
+            if (!genres.isEmpty()) {
+                for (int band = 0; band < bands; band++) {
+                    tables[band].add(bandKey(genres, band), id);
+                }
+            }
+        }
+        for (Buckets table : tables) {
+            table.seal();
+        }
+    }
+
+    @Override
+    public int[] candidates(Book origin) {
+        Set<String> genres = origin.genres();
+        if (genres.isEmpty()) {
+            return new int[0];
+        }
+
+        BitSet ids = new BitSet();
+        for (int band = 0; band < bands; band++) {
+            for (int id : tables[band].get(bandKey(genres, band))) {
+                ids.set(id);
+            }
+        }
+        return ids.stream().toArray();
+    }
+
+    private long bandKey(Set<String> genres, int band) {
+        long key = band;
+        for (int row = 0; row < rowsPerBand; row++) {
+            long function = Hashing.mix(seed, (long) band * rowsPerBand + row);
+
+            long min = Long.MAX_VALUE;
+            for (String genre : genres) {
+                min = Math.min(min, Hashing.mix(function, Hashing.hash(genre)));
+            }
+            key = Hashing.mix(key, min);
+        }
+        return key;
+    }
+}
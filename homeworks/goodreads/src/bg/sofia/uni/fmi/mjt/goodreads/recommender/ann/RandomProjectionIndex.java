@@ -0,0 +1,149 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender.ann;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.SimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.composite.CompositeSimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.descriptions.SparseVector;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.descriptions.TFIDFSimilarityCalculator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Random-projection (SimHash) locality-sensitive hashing over TF-IDF description vectors.
+ * <p>
+ * Every bit of a signature is the side of a random hyperplane the vector falls on; two vectors at angle
+ * {@code theta} agree on a bit with probability {@code 1 - theta / pi}, so vectors with a high cosine
+ * similarity tend to share signatures. Each table uses {@code bitsPerTable} bits as its bucket key, and
+ * books become candidates of each other if they share a bucket in at least one table. More tables raise
+ * recall, more bits per table make the buckets more selective.
+ * <p>
+ * Hyperplane coordinates are random signs derived from the term id by hashing, so no projection matrix
+ * is stored whatever the size of the vocabulary.
+ */
+public class RandomProjectionIndex implements CandidateIndex {
+    private static final int MAX_BITS = 63;
+
+    private final TFIDFSimilarityCalculator descriptions;
+    private final int tables;
+    private final int bitsPerTable;
+    private final long seed;
+    private final Buckets[] buckets;
+
+    /**
+     * Builds the index.
+     *
+     * @param books        the books; a book's id is its position in the list
+     * @param descriptions the calculator providing the TF-IDF vectors of the books
+     * @param tables       the number of hash tables, at least 1
+     * @param bitsPerTable the number of signature bits per table, from 1 to 63
+     * @param seed         the seed of the hyperplanes
+     * @throws IllegalArgumentException if books or descriptions is null, or a count is out of range
+     */
+    public RandomProjectionIndex(List<Book> books, TFIDFSimilarityCalculator descriptions, int tables,
+                                 int bitsPerTable, long seed) {
+        if (books == null || descriptions == null) {
+            throw new IllegalArgumentException("Books and descriptions calculator cannot be null");
+        }
+        if (tables <= 0 || bitsPerTable <= 0 || bitsPerTable > MAX_BITS) {
+            throw new IllegalArgumentException("Tables must be positive and bits per table between 1 and " + MAX_BITS);
+        }
+
+        this.descriptions = descriptions;
+        this.tables = tables;
+        this.bitsPerTable = bitsPerTable;
+        this.seed = seed;
+        this.buckets = new Buckets[tables];
+        for (int table = 0; table < tables; table++) {
+            buckets[table] = new Buckets();
+        }
+
+        double[] projections = new double[tables * bitsPerTable];
+        for (int id = 0; id < books.size(); id++) {
+            SparseVector vector = descriptions.vectorOf(books.get(id));
+            if (vector.size() > 0) {
+                project(vector, projections);
+                for (int table = 0; table < tables; table++) {
+                    buckets[table].add(signature(projections, table), id);
+                }
+            }
+        }
+        for (Buckets table : buckets) {
+            table.seal();
+        }
+    }
+
+    /**
+     * Finds the TF-IDF calculator a recommender scores with, so that an index factory can hash with the
+     * vectors of whatever calculator the recommender is built or updated with.
+     *
+     * @param calculator a TF-IDF calculator, or a composite calculator with one among its calculators
+     * @return the TF-IDF calculator
+     * @throws IllegalArgumentException if calculator neither is nor contains a TF-IDF calculator
+     */
+    public static TFIDFSimilarityCalculator descriptionsOf(SimilarityCalculator calculator) {
+        if (calculator instanceof TFIDFSimilarityCalculator descriptions) {
+            return descriptions;
+        }
+        if (calculator instanceof CompositeSimilarityCalculator composite) {
+            for (SimilarityCalculator child : composite.calculators().keySet()) {
+                if (child instanceof TFIDFSimilarityCalculator descriptions) {
+                    return descriptions;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Calculator does not score by TF-IDF description similarity");
+    }
+
+    @Override
+    public int[] candidates(Book origin) {
+        SparseVector vector = descriptions.vectorOf(origin);
+        if (vector.size() == 0) {
+            return new int[0];
+        }
+
+        double[] projections = new double[tables * bitsPerTable];
+        project(vector, projections);
+
+        BitSet ids = new BitSet();
+        for (int table = 0; table < tables; table++) {
+            for (int id : buckets[table].get(signature(projections, table))) {
+                ids.set(id);
+            }
+        }
+        return ids.stream().toArray();
+    }
+
+    /**
+     * Computes the dot products of the vector with all hyperplanes, whose coordinates are +1 or -1.
+     */
+    private void project(SparseVector vector, double[] projections) {
+        Arrays.fill(projections, 0.0);
+        for (int i = 0; i < vector.size(); i++) {
+            long termSeed = Hashing.mix(seed, vector.term(i));
+            float weight = vector.weight(i);
+
+            // Each 64-bit hash supplies the signs of 64 hyperplanes
+            long signs = 0;
+            for (int plane = 0; plane < projections.length; plane++) {
+                if (plane % Long.SIZE == 0) {
+                    signs = Hashing.mix(termSeed, plane / Long.SIZE);
+                }
+                projections[plane] += (signs & 1L) == 0 ? weight : -weight;
+                signs >>>= 1;
+            }
+        }
+    }
+
+    private long signature(double[] projections, int table) {
+        long signature = 0;
+        int offset = table * bitsPerTable;
+        for (int bit = 0; bit < bitsPerTable; bit++) {
+            if (projections[offset + bit] >= 0) {
+                signature |= 1L << bit;
+            }
+        }
+        return signature;
+    }
+}
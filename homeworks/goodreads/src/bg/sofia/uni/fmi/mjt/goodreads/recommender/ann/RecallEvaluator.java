@@ -0,0 +1,77 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender.ann;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.BookRecommenderAPI;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
+
+/**
+ * Measures how close an approximate recommender comes to an exact one, to tune the recall/latency trade-off
+ * of a {@link CandidateIndex}.
+ */
+public final class RecallEvaluator {
+
+    private RecallEvaluator() {
+    }
+
+    /**
+     * The outcome of an evaluation.
+     *
+     * @param recall            the fraction of the exact recommendations the approximate recommender found
+     * @param exactMillis       the average time of an exact recommendation, in milliseconds
+     * @param approximateMillis the average time of an approximate recommendation, in milliseconds
+     */
+    public record Result(double recall, double exactMillis, double approximateMillis) {
+    }
+
+    /**
+     * Recommends k books for every query with both recommenders and compares the results. Exact
+     * recommendations with a similarity of zero are not counted, since any book could take their place.
+     *
+     * @param exact       the exact recommender, e.g. a BookRecommender with a CompositeSimilarityCalculator
+     * @param approximate the recommender under evaluation
+     * @param queries     the origin books
+     * @param k           the number of recommendations per query
+     * @return the average recall and latencies
+     * @throws IllegalArgumentException if a recommender or queries is null, queries is empty or k is not positive
+     */
+    public static Result evaluate(BookRecommenderAPI exact, BookRecommenderAPI approximate,
+                                  Collection<Book> queries, int k) {
+        if (exact == null || approximate == null || queries == null || queries.isEmpty()) {
+            throw new IllegalArgumentException("Recommenders and queries cannot be null or empty");
+        }
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of recommendations must be positive");
+        }
+
+        long exactNanos = 0;
+        long approximateNanos = 0;
+        long relevant = 0;
+        long found = 0;
+        for (Book query : queries) {
+            long start = System.nanoTime();
+            SortedMap<Book, Double> expected = exact.recommendBooks(query, k);
+            exactNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Set<Book> actual = approximate.recommendBooks(query, k).keySet();
+            approximateNanos += System.nanoTime() - start;
+
+            Set<Book> similar = expected.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+            relevant += similar.size();
+            found += similar.stream().filter(actual::contains).count();
+        }
+
+        double recall = relevant == 0 ? 1.0 : (double) found / relevant;
+        double nanosPerMilli = 1_000_000.0;
+        return new Result(recall, exactNanos / nanosPerMilli / queries.size(),
+            approximateNanos / nanosPerMilli / queries.size());
+    }
+}
@@ -0,0 +1,166 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender.ann;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.BookRecommender;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.composite.CompositeSimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.descriptions.TFIDFSimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.genres.GenresOverlapSimilarityCalculator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class RecallEvaluatorTest {
+    private static final int BOOKS = 2000;
+    private static final int TOPICS = 40;
+    private static final int WORDS_PER_TOPIC = 30;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+    private static final int PROJECTION_TABLES = 96;
+    private static final int PROJECTION_BITS = 9;
+    private static final double MAX_CANDIDATES = 0.25;
+
+    private Set<Book> books;
+    private List<Book> queries;
+    private TFIDFSimilarityCalculator descriptions;
+    private CompositeSimilarityCalculator composite;
+    private BookRecommender exact;
+
+    /**
+     * Books about one of a few topics: most words of a description and the genres of a book come from
+     * its topic, the rest are noise, so every book has a handful of clearly similar ones.
+     */
+    @Before
+    public void setUp() {
+        Random random = new Random(42);
+        books = new LinkedHashSet<>();
+        for (int i = 0; i < BOOKS; i++) {
+            int topic = random.nextInt(TOPICS);
+
+            Set<String> genres = new HashSet<>();
+            for (int j = 1 + random.nextInt(3); j > 0; j--) {
+                genres.add("Genre" + (topic + random.nextInt(3)) % TOPICS);
+            }
+
+            StringBuilder description = new StringBuilder();
+            for (int j = 8 + random.nextInt(16); j > 0; j--) {
+                int word = random.nextInt(4) == 0
+                    ? random.nextInt(TOPICS * WORDS_PER_TOPIC)
+                    : topic * WORDS_PER_TOPIC + random.nextInt(WORDS_PER_TOPIC);
+                description.append("word").append(word).append(' ');
+            }
+
+            books.add(new Book("Title " + i, "Author " + i % 100, description.toString(), genres, 4.0, 100,
+                "https://example.com/" + i));
+        }
+        queries = new ArrayList<>(books).subList(0, QUERIES);
+
+        descriptions = new TFIDFSimilarityCalculator(books);
+        composite = new CompositeSimilarityCalculator();
+        composite.addCalculator(descriptions, 1.0);
+        composite.addCalculator(new GenresOverlapSimilarityCalculator(), 1.0);
+        exact = new BookRecommender(books, composite);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEvaluateWithEmptyQueries() {
+        RecallEvaluator.evaluate(exact, exact, List.of(), K);
+    }
+
+    @Test
+    public void testExactRecommenderHasFullRecall() {
+        assertEquals(1.0, RecallEvaluator.evaluate(exact, exact, queries, K).recall(), 0.0);
+    }
+
+    @Test
+    public void testMinHashRecall() {
+        BookRecommender approximate = new BookRecommender(books, composite,
+            (list, calculator) -> new MinHashIndex(list, 16, 3, 1));
+
+        double recall = RecallEvaluator.evaluate(exact, approximate, queries, K).recall();
+        assertTrue("MinHash recall " + recall, recall >= 0.8);
+        double candidates = candidateFraction(new MinHashIndex(new ArrayList<>(books), 16, 3, 1));
+        assertTrue("MinHash candidates " + candidates, candidates < MAX_CANDIDATES);
+    }
+
+    /**
+     * Random projection hashes descriptions only, so it is measured against the description similarity.
+     */
+    @Test
+    public void testRandomProjectionRecall() {
+        BookRecommender exactDescriptions = new BookRecommender(books, descriptions);
+        BookRecommender approximate = new BookRecommender(books, descriptions,
+            (list, calculator) -> randomProjection(list, PROJECTION_TABLES, PROJECTION_BITS));
+
+        double recall = RecallEvaluator.evaluate(exactDescriptions, approximate, queries, K).recall();
+        assertTrue("Random projection recall " + recall, recall >= 0.7);
+        double candidates = candidateFraction(randomProjection(new ArrayList<>(books), PROJECTION_TABLES,
+            PROJECTION_BITS));
+        assertTrue("Random projection candidates " + candidates, candidates < MAX_CANDIDATES);
+    }
+
+    @Test
+    public void testUnionRecall() {
+        BookRecommender approximate = new BookRecommender(books, composite,
+            (list, calculator) -> CandidateIndex.union(new MinHashIndex(list, 16, 3, 1),
+                randomProjection(list, PROJECTION_TABLES, PROJECTION_BITS)));
+
+        double recall = RecallEvaluator.evaluate(exact, approximate, queries, K).recall();
+        assertTrue("Union recall " + recall, recall >= 0.95);
+        List<Book> list = new ArrayList<>(books);
+        double candidates = candidateFraction(CandidateIndex.union(new MinHashIndex(list, 16, 3, 1),
+            randomProjection(list, PROJECTION_TABLES, PROJECTION_BITS)));
+        assertTrue("Union candidates " + candidates, candidates < MAX_CANDIDATES);
+    }
+
+    @Test
+    public void testMoreTablesTradeCandidatesForRecall() {
+        BookRecommender exactDescriptions = new BookRecommender(books, descriptions);
+        BookRecommender few = new BookRecommender(books, descriptions,
+            (list, calculator) -> randomProjection(list, 16, PROJECTION_BITS));
+        BookRecommender many = new BookRecommender(books, descriptions,
+            (list, calculator) -> randomProjection(list, PROJECTION_TABLES, PROJECTION_BITS));
+
+        double fewRecall = RecallEvaluator.evaluate(exactDescriptions, few, queries, K).recall();
+        double manyRecall = RecallEvaluator.evaluate(exactDescriptions, many, queries, K).recall();
+        assertTrue("Recall " + fewRecall + " with 16 tables, " + manyRecall + " with " + PROJECTION_TABLES,
+            manyRecall > fewRecall);
+
+        List<Book> list = new ArrayList<>(books);
+        double fewCandidates = candidateFraction(randomProjection(list, 16, PROJECTION_BITS));
+        double manyCandidates = candidateFraction(randomProjection(list, PROJECTION_TABLES, PROJECTION_BITS));
+        assertTrue("Candidates " + fewCandidates + " with 16 tables, " + manyCandidates + " with " +
+            PROJECTION_TABLES, manyCandidates > fewCandidates);
+    }
+
+    @Test
+    public void testMoreBitsPruneMoreCandidates() {
+        List<Book> list = new ArrayList<>(books);
+        double coarse = candidateFraction(randomProjection(list, 32, 6));
+        double fine = candidateFraction(randomProjection(list, 32, PROJECTION_BITS));
+        assertTrue("Candidates " + coarse + " with 6 bits, " + fine + " with " + PROJECTION_BITS,
+            fine < coarse / 2);
+    }
+
+    private RandomProjectionIndex randomProjection(List<Book> list, int tables, int bits) {
+        return new RandomProjectionIndex(list, descriptions, tables, bits, 2);
+    }
+
+    /**
+     * Returns the average fraction of the catalog the index returns as candidates for the queries.
+     */
+    private double candidateFraction(CandidateIndex index) {
+        long candidates = 0;
+        for (Book query : queries) {
+            candidates += index.candidates(query).length;
+        }
+        return (double) candidates / queries.size() / books.size();
+    }
+}
@@ -0,0 +1,198 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.caching;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.SimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.composite.CompositeSimilarityCalculator;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the scores of a symmetric similarity calculator for a bounded number of book pairs.
+ * <p>
+ * Every book of a fixed collection gets a dense int id, and a pair is keyed by the long made of
+ * its smaller and its greater id, so both orders of a pair share one entry. Entries are kept in
+ * primitive arrays, grouped in sets of {@value #WAYS} entries; a key can only be stored in the set
+ * its hash selects, and a full set evicts its least recently used entry. Sets are guarded by a fixed
+ * number of striped locks, and the delegate is called outside them, so threads scoring different
+ * pairs rarely wait for each other. Pairs involving books outside the collection are not cached.
+ */
+public class CachingSimilarityCalculator implements SimilarityCalculator {
+    private static final int WAYS = 4;
+    private static final int MAX_STRIPES = 64;
+    private static final long EMPTY = -1L;
+
+    private final SimilarityCalculator delegate;
+    private final Map<Book, Integer> ids;
+    private final long[] keys;
+    private final double[] scores;
+    private final long[] lastUsed;
+    private final long[] clocks;
+    private final Object[] locks;
+    private final int setMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache in front of a calculator.
+     *
+     * @param delegate the calculator to cache; its similarity must not depend on the order of the books
+     * @param books    the books whose pairs are cached; compared by identity
+     * @param capacity the number of pairs to keep, rounded up to a power of two
+     * @throws IllegalArgumentException if delegate or books is null, books contains null, or capacity is
+     *                                  not positive
+     */
+    public CachingSimilarityCalculator(SimilarityCalculator delegate, Collection<Book> books, int capacity) {
+        if (delegate == null || books == null || books.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Calculator and books cannot be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.delegate = delegate;
+        this.ids = new IdentityHashMap<>(books.size());
+        for (Book book : books) {
+            ids.putIfAbsent(book, ids.size());
+        }
+
+        int neededSets = (capacity + WAYS - 1) / WAYS;
+        int sets = neededSets == 1 ? 1 : Integer.highestOneBit(neededSets - 1) << 1;
+        this.setMask = sets - 1;
+        this.keys = new long[sets * WAYS];
+        this.scores = new double[sets * WAYS];
+        this.lastUsed = new long[sets * WAYS];
+        Arrays.fill(keys, EMPTY);
+
+        int stripes = Math.min(MAX_STRIPES, sets);
+        this.clocks = new long[stripes];
+        this.locks = new Object[stripes];
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            locks[stripe] = new Object();
+        }
+    }
+
+    /**
+     * Creates a composite calculator with the same weights as the given one, caching the score of every
+     * child calculator separately. Unlike caching the composite, the cached scores of a child can then be
+     * shared by composites that combine it differently; each child's cache is found among the calculators
+     * of the result.
+     *
+     * @param composite the composite calculator
+     * @param books     the books whose pairs are cached; compared by identity
+     * @param capacity  the number of pairs to keep for each child
+     * @return the composite of the cached children
+     * @throws IllegalArgumentException if composite or books is null, books contains null, or capacity is
+     *                                  not positive
+     */
+    public static CompositeSimilarityCalculator cachingChildren(CompositeSimilarityCalculator composite,
+                                                                Collection<Book> books, int capacity) {
+        if (composite == null) {
+            throw new IllegalArgumentException("Calculator cannot be null");
+        }
+
+        CompositeSimilarityCalculator cached = new CompositeSimilarityCalculator();
+        composite.calculators().forEach((calculator, weight) ->
+            cached.addCalculator(new CachingSimilarityCalculator(calculator, books, capacity), weight));
+        return cached;
+    }
+
+    @Override
+    public double calculateSimilarity(Book first, Book second) {
+        if (first == null || second == null) {
+            throw new IllegalArgumentException("Books cannot be null");
+        }
+
+        Integer firstId = ids.get(first);
+        Integer secondId = ids.get(second);
+        if (firstId == null || secondId == null) {
+            return delegate.calculateSimilarity(first, second);
+        }
+
+        long key = firstId < secondId
+            ? ((long) firstId << Integer.SIZE) | secondId
+            : ((long) secondId << Integer.SIZE) | firstId;
+        int set = set(key);
+        int stripe = set & (locks.length - 1);
+
+        synchronized (locks[stripe]) {
+            for (int entry = set * WAYS; entry < (set + 1) * WAYS; entry++) {
+                if (keys[entry] == key) {
+                    lastUsed[entry] = ++clocks[stripe];
+                    hits.increment();
+                    return scores[entry];
+                }
+            }
+        }
+
+        misses.increment();
+        double score = delegate.calculateSimilarity(first, second);
+
+        synchronized (locks[stripe]) {
+            store(set, stripe, key, score);
+        }
+        return score;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of pairs the cache can hold.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Stores a score in the empty or least recently used entry of its set, unless another thread has
+     * stored it since the lookup. The caller holds the lock of the set's stripe.
+     */
+    private void store(int set, int stripe, long key, double score) {
+        int victim = set * WAYS;
+        for (int entry = set * WAYS; entry < (set + 1) * WAYS; entry++) {
+            if (keys[entry] == key) {
+                return;
+            }
+            if (keys[entry] == EMPTY) {
+                victim = entry;
+                break;
+            }
+            if (lastUsed[entry] < lastUsed[victim]) {
+                victim = entry;
+            }
+        }
+
+        if (keys[victim] != EMPTY) {
+            evictions.increment();
+        }
+        keys[victim] = key;
+        scores[victim] = score;
+        lastUsed[victim] = ++clocks[stripe];
+    }
+
+    private int set(long key) {
+        // SplitMix64 finalizer, so that neighbouring ids spread over all sets
+        long mixed = key;
+        mixed = (mixed ^ (mixed >>> 30)) * 0xbf58476d1ce4e5b9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94d049bb133111ebL;
+        mixed ^= mixed >>> 31;
+        return (int) mixed & setMask;
+    }
+}
@@ -44,6 +44,15 @@ public class CompositeSimilarityCalculator implements SimilarityCalculator {
         totalWeight += weight;
     }
 
+    /**
+     * Returns the added calculators with their weights.
+     *
+     * @return an unmodifiable copy of the calculators and weights
+     */
+    public Map<SimilarityCalculator, Double> calculators() {
+        return Map.copyOf(calculatorsWithWeights);
+    }
+
     /**
      * Calculates the combined similarity score between two books using all added calculators.
      * The final score is a weighted average of the scores from all calculators.
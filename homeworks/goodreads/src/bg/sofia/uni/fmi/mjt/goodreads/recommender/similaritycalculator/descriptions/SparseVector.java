@@ -0,0 +1,107 @@
+package bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.descriptions;
+
+import java.util.Arrays;
+
+/**
+ * An immutable sparse vector of term weights, stored as term ids in ascending order and the
+ * weights of those terms. Only non-zero weights are stored.
+ */
+public final class SparseVector {
+    public static final SparseVector EMPTY = new SparseVector(new int[0], new float[0]);
+
+    private final int[] terms;
+    private final float[] weights;
+
+    /**
+     * Creates a vector from parallel arrays; the arrays are not copied.
+     *
+     * @param terms   term ids in strictly ascending order
+     * @param weights the weight of each term
+     * @throws IllegalArgumentException if the arrays are null or have different lengths
+     */
+    public SparseVector(int[] terms, float[] weights) {
+        if (terms == null || weights == null || terms.length != weights.length) {
+            throw new IllegalArgumentException("Terms and weights must be arrays of equal length");
+        }
+
+        this.terms = terms;
+        this.weights = weights;
+    }
+
+    /**
+     * Scales weights so that the vector has a Euclidean length of 1, and sorts them by term.
+     *
+     * @param terms   distinct term ids, in any order; the array is reordered
+     * @param weights the weight of each term; the array is reordered
+     * @return the normalized vector, or {@link #EMPTY} if all weights are zero
+     */
+    public static SparseVector normalized(int[] terms, double[] weights) {
+        double squaredNorm = 0.0;
+        int nonZero = 0;
+        for (double weight : weights) {
+            squaredNorm += weight * weight;
+            nonZero += weight == 0.0 ? 0 : 1;
+        }
+        if (squaredNorm <= 0) {
+            return EMPTY;
+        }
+
+        long[] packed = new long[nonZero];
+        int count = 0;
+        for (int i = 0; i < terms.length; i++) {
+            if (weights[i] != 0.0) {
+                packed[count++] = ((long) terms[i] << 32) | i;
+            }
+        }
+        Arrays.sort(packed);
+
+        double norm = Math.sqrt(squaredNorm);
+        int[] sortedTerms = new int[nonZero];
+        float[] sortedWeights = new float[nonZero];
+        for (int i = 0; i < nonZero; i++) {
+            int index = (int) packed[i];
+            sortedTerms[i] = terms[index];
+            sortedWeights[i] = (float) (weights[index] / norm);
+        }
+        return new SparseVector(sortedTerms, sortedWeights);
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    public int term(int index) {
+        return terms[index];
+    }
+
+    public float weight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Computes the dot product by walking both sorted term lists once.
+     *
+     * @param other the other vector
+     * @return the dot product; the cosine similarity if both vectors are normalized
+     */
+    public double dot(SparseVector other) {
+        int[] otherTerms = other.terms;
+        float[] otherWeights = other.weights;
+
+        double sum = 0.0;
+        int i = 0;
+        int j = 0;
+        while (i < terms.length && j < otherTerms.length) {
+            int term = terms[i];
+            int otherTerm = otherTerms[j];
+            if (term == otherTerm) {
+                sum += (double) weights[i++] * otherWeights[j++];
+            } else if (term < otherTerm) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sum;
+    }
+}
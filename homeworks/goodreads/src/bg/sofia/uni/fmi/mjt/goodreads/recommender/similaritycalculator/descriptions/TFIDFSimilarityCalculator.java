@@ -2,24 +2,47 @@ package bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.descript
 
 import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
 import bg.sofia.uni.fmi.mjt.goodreads.recommender.similaritycalculator.SimilarityCalculator;
+import bg.sofia.uni.fmi.mjt.goodreads.tokenizer.TermDictionary;
 import bg.sofia.uni.fmi.mjt.goodreads.tokenizer.TextTokenizer;
+import bg.sofia.uni.fmi.mjt.goodreads.tokenizer.TokenizedCatalog;
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedArray;
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedIntArray;
+import bg.sofia.uni.fmi.mjt.goodreads.util.Shards;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Calculates the similarity between two books based on the TF-IDF (Term Frequency-Inverse Document Frequency)
  * of their descriptions.
+ * <p>
+ * The term counts of every description of the collection are computed once and stored sparsely, with integer
+ * term ids, by the catalog id of the book. They do not depend on the other books, so calculators updated from
+ * this one share them. The IDF of a term and the norm of a book's TF-IDF vector do, so every calculator keeps
+ * its own: a calculator created from a collection computes them for all terms and books, and an updated one
+ * computes each of them the first time it is needed. The similarity of two books is then a single merge of
+ * their sorted term lists. Term counts of books outside the catalog are computed on demand.
+ * <p>
+ * A calculator is immutable. {@link #update} creates the calculator of a changed collection by adjusting the
+ * document frequencies of the terms of the changed books only.
  */
 public class TFIDFSimilarityCalculator implements SimilarityCalculator {
-    private final Map<String, Double> idfMap;
-    private final TextTokenizer tokenizer;
+    private static final int MIN_SHARD_SIZE = 1024;
+
+    private final TokenizedCatalog catalog;
+    private final ChunkedIntArray docFreq;
+    private final int totalDocs;
+    private final double logTotalDocs;
+    // Term counts of the described books of the collection, by catalog id
+    private final ChunkedArray<SparseVector> termCounts;
+    // IDF by term id and vector norms by catalog id, computed for this calculator's document frequencies
+    private final LazyDoubles idf;
+    private final LazyDoubles norms;
     
     /**
      * Creates a new TFIDFSimilarityCalculator with the given collection of books.
@@ -28,12 +51,178 @@ public class TFIDFSimilarityCalculator implements SimilarityCalculator {
      * @throws IllegalArgumentException if books is null or empty, or if any book has a null description
      */
     public TFIDFSimilarityCalculator(Collection<Book> books) {
+        this(books, books == null || books.isEmpty() ? null : TokenizedCatalog.of(books));
+    }
+
+    /**
+     * Creates a new TFIDFSimilarityCalculator with the given collection of books, reusing their tokens
+     * from a catalog shared with other components. Term ids are the ids of the catalog's dictionary.
+     *
+     * @param books   the collection of books to analyze for IDF calculation
+     * @param catalog the tokenized books; books missing from it are tokenized against its dictionary,
+     *                and their terms outside it are ignored
+     * @throws IllegalArgumentException if books is null or empty, or catalog is null
+     */
+    public TFIDFSimilarityCalculator(Collection<Book> books, TokenizedCatalog catalog) {
+        this(books, catalog, null);
+    }
+
+    /**
+     * Creates a new TFIDFSimilarityCalculator with the given collection of books, tokenizing the descriptions,
+     * counting terms and document frequencies and computing the norms in parallel. The result is the same as when
+     * building sequentially.
+     *
+     * @param books the collection of books to analyze for IDF calculation
+     * @param pool  the pool to build on, or null to build on the calling thread
+     * @throws IllegalArgumentException if books is null or empty
+     */
+    public TFIDFSimilarityCalculator(Collection<Book> books, ForkJoinPool pool) {
+        this(books, books == null || books.isEmpty() ? null
+            : pool == null ? TokenizedCatalog.of(books) : TokenizedCatalog.of(books, new TextTokenizer(), pool), pool);
+    }
+
+    /**
+     * Creates a new TFIDFSimilarityCalculator with the given collection of books and their tokens, counting
+     * terms and document frequencies and computing the norms in parallel. Every shard of the descriptions is counted
+     * into its own array of document frequencies, and the arrays are summed, so the result is the same as
+     * when building sequentially.
+     *
+     * @param books   the collection of books to analyze for IDF calculation
+     * @param catalog the tokenized books; books missing from it are tokenized against its dictionary,
+     *                and their terms outside it are ignored
+     * @param pool    the pool to build on, or null to build on the calling thread
+     * @throws IllegalArgumentException if books is null or empty, or catalog is null
+     */
+    public TFIDFSimilarityCalculator(Collection<Book> books, TokenizedCatalog catalog, ForkJoinPool pool) {
         if (books == null || books.isEmpty()) {
             throw new IllegalArgumentException("Books collection cannot be null or empty");
         }
+        if (catalog == null) {
+            throw new IllegalArgumentException("Catalog cannot be null");
+        }
         
-        this.tokenizer = new TextTokenizer();
-        this.idfMap = calculateIDF(books);
+        this.catalog = catalog;
+
+        List<Book> described = new ArrayList<>(books.size());
+        List<int[]> tokens = new ArrayList<>(books.size());
+        for (Book book : books) {
+            if (isDescribed(book)) {
+                described.add(book);
+                tokens.add(catalog.descriptionTokens(book));
+            }
+        }
+
+        int termCount = catalog.dictionary().size();
+        int[] frequencies;
+        if (pool == null) {
+            frequencies = calculateDocumentFrequencies(tokens, 0, tokens.size(), termCount);
+        } else {
+            // Every shard needs arrays as long as the dictionary, so there is one shard per worker
+            Shards split = new Shards(tokens.size(), MIN_SHARD_SIZE, pool.getParallelism());
+            int[][] counts = new int[split.count()][];
+            split.forEach(pool, shard ->
+                counts[shard] = calculateDocumentFrequencies(tokens, split.start(shard), split.end(shard), termCount));
+            frequencies = counts[0];
+            for (int shard = 1; shard < counts.length; shard++) {
+                for (int termId = 0; termId < termCount; termId++) {
+                    frequencies[termId] += counts[shard][termId];
+                }
+            }
+        }
+
+        ChunkedIntArray.Builder newDocFreq = ChunkedIntArray.ofSize(termCount).toBuilder();
+        for (int termId = 0; termId < termCount; termId++) {
+            newDocFreq.set(termId, frequencies[termId]);
+        }
+        this.docFreq = newDocFreq.build();
+        this.totalDocs = tokens.size();
+        this.logTotalDocs = Math.log(totalDocs);
+        this.idf = new LazyDoubles(termCount);
+        for (int termId = 0; termId < termCount; termId++) {
+            idf.set(termId, calculateIDF(termId));
+        }
+
+        int[] ids = new int[described.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = catalog.id(described.get(i));
+        }
+        this.norms = new LazyDoubles(catalog.idBound());
+        SparseVector[] computed = new SparseVector[tokens.size()];
+        if (pool == null) {
+            countTerms(tokens, ids, computed, 0, computed.length);
+        } else {
+            Shards split = new Shards(tokens.size(), MIN_SHARD_SIZE, pool.getParallelism() * 4);
+            split.forEach(pool, shard -> countTerms(tokens, ids, computed, split.start(shard), split.end(shard)));
+        }
+
+        ChunkedArray.Builder<SparseVector> newTermCounts = ChunkedArray.<SparseVector>ofSize(catalog.idBound())
+            .toBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != TokenizedCatalog.UNKNOWN) {
+                newTermCounts.set(ids[i], computed[i]);
+            }
+        }
+        this.termCounts = newTermCounts.build();
+    }
+
+    private TFIDFSimilarityCalculator(TokenizedCatalog catalog, ChunkedIntArray docFreq, int totalDocs,
+                                      ChunkedArray<SparseVector> termCounts) {
+        this.catalog = catalog;
+        this.docFreq = docFreq;
+        this.totalDocs = totalDocs;
+        this.logTotalDocs = Math.log(totalDocs);
+        this.termCounts = termCounts;
+        this.idf = new LazyDoubles(catalog.dictionary().size());
+        this.norms = new LazyDoubles(catalog.idBound());
+    }
+
+    /**
+     * Creates the calculator of this collection without the removed books and with the added ones. Document
+     * frequencies change only for the terms of these books, and no description is tokenized again.
+     * <p>
+     * The term counts of the kept books are shared with this calculator, and only those of the added books
+     * are computed. Since the IDF of every term depends on the number of documents, the new calculator
+     * computes IDFs and norms lazily, the first time a term or book is scored. This calculator is not
+     * modified and keeps its own.
+     *
+     * @param next    the catalog of this calculator with the same change applied, holding the tokens of
+     *                the added books
+     * @param added   the books to add, none of them already in the collection
+     * @param removed the books of the collection to remove, as held by this calculator's catalog
+     * @return the updated calculator
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public TFIDFSimilarityCalculator update(TokenizedCatalog next, Collection<Book> added, Collection<Book> removed) {
+        if (next == null || added == null || removed == null) {
+            throw new IllegalArgumentException("Catalog, added and removed books cannot be null");
+        }
+
+        ChunkedIntArray.Builder newDocFreq = docFreq.toBuilder();
+        ChunkedArray.Builder<SparseVector> newTermCounts = termCounts.toBuilder();
+        int newTotalDocs = totalDocs;
+        for (Book book : removed) {
+            if (isDescribed(book)) {
+                int id = catalog.id(book);
+                addDocument(newDocFreq, termCountsOf(book, id), -1);
+                if (id != TokenizedCatalog.UNKNOWN) {
+                    newTermCounts.set(id, null);
+                }
+                newTotalDocs--;
+            }
+        }
+        for (Book book : added) {
+            if (isDescribed(book)) {
+                SparseVector counts = countTerms(next.descriptionTokens(book));
+                addDocument(newDocFreq, counts, 1);
+                int id = next.id(book);
+                if (id != TokenizedCatalog.UNKNOWN) {
+                    newTermCounts.set(id, counts);
+                }
+                newTotalDocs++;
+            }
+        }
+
+        return new TFIDFSimilarityCalculator(next, newDocFreq.build(), newTotalDocs, newTermCounts.build());
     }
     
     @Override
@@ -41,115 +230,217 @@ public class TFIDFSimilarityCalculator implements SimilarityCalculator {
         if (first == null || second == null) {
             throw new IllegalArgumentException("Books cannot be null");
         }
-        
-        String desc1 = first.description();
-        String desc2 = second.description();
-        
-        if (desc1 == null || desc2 == null || desc1.isBlank() || desc2.isBlank()) {
-            return 0.0;
+
+        int firstId = catalog.id(first);
+        int secondId = catalog.id(second);
+        SparseVector firstCounts = termCountsOf(first, firstId);
+        SparseVector secondCounts = termCountsOf(second, secondId);
+
+        // The TF-IDF weight of a term is its count scaled by its IDF; the scale of the TF does not
+        // change the cosine similarity, so it is left out
+        double dot = 0.0;
+        int i = 0;
+        int j = 0;
+        while (i < firstCounts.size() && j < secondCounts.size()) {
+            int term = firstCounts.term(i);
+            int otherTerm = secondCounts.term(j);
+            if (term == otherTerm) {
+                double termIdf = idf(term);
+                dot += (double) firstCounts.weight(i++) * secondCounts.weight(j++) * termIdf * termIdf;
+            } else if (term < otherTerm) {
+                i++;
+            } else {
+                j++;
+            }
         }
-        
-        // Tokenize and get term frequencies
-        List<String> tokens1 = tokenizer.tokenize(desc1);
-        List<String> tokens2 = tokenizer.tokenize(desc2);
-        
-        if (tokens1.isEmpty() || tokens2.isEmpty()) {
+        if (dot == 0.0) {
             return 0.0;
         }
-        
-        // Calculate TF-IDF vectors
-        Map<String, Double> tfidf1 = calculateTFIDFVector(tokens1);
-        Map<String, Double> tfidf2 = calculateTFIDFVector(tokens2);
-        
-        // Calculate cosine similarity
-        return cosineSimilarity(tfidf1, tfidf2);
+
+        return Math.min(1.0, dot / (norm(firstId, firstCounts) * norm(secondId, secondCounts)));
     }
-    
-    private Map<String, Double> calculateTFIDFVector(List<String> tokens) {
-        // Calculate term frequencies (TF)
-        Map<String, Double> tfMap = new HashMap<>();
-        int totalTerms = tokens.size();
-        
-        for (String term : tokens) {
-            tfMap.put(term, tfMap.getOrDefault(term, 0.0) + 1.0);
+
+    /**
+     * Returns the L2-normalized TF-IDF vector of a book's description, with the term ids of the catalog.
+     *
+     * @param book the book
+     * @return the vector; empty if the description has no terms known to the collection
+     * @throws IllegalArgumentException if book is null
+     */
+    public SparseVector vectorOf(Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Book cannot be null");
         }
-        
-        // Convert to TF-IDF
-        Map<String, Double> tfidf = new HashMap<>();
-        
-        for (Map.Entry<String, Double> entry : tfMap.entrySet()) {
-            String term = entry.getKey();
-            double tf = entry.getValue() / totalTerms;
-            double idf = idfMap.getOrDefault(term, 0.0);
-            tfidf.put(term, tf * idf);
+
+        SparseVector counts = termCountsOf(book, catalog.id(book));
+        int[] terms = new int[counts.size()];
+        double[] weights = new double[counts.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = counts.term(i);
+            weights[i] = counts.weight(i) * idf(terms[i]);
         }
-        
-        return tfidf;
+        return SparseVector.normalized(terms, weights);
     }
-    
-    private double cosineSimilarity(Map<String, Double> vec1, Map<String, Double> vec2) {
-        // Get all unique terms from both vectors
-        Set<String> allTerms = new java.util.HashSet<>();
-        allTerms.addAll(vec1.keySet());
-        allTerms.addAll(vec2.keySet());
-        
-        if (allTerms.isEmpty()) {
-            return 0.0;
+
+    /**
+     * Returns the number of terms of the catalog; term ids range from 0 to this value - 1.
+     *
+     * @return the number of terms
+     */
+    public int termCount() {
+        return catalog.dictionary().size();
+    }
+
+    /**
+     * Returns the term counts of a book's description, from this calculator's books if it is one of them.
+     */
+    private SparseVector termCountsOf(Book book, int id) {
+        SparseVector counts = id == TokenizedCatalog.UNKNOWN || id >= termCounts.size() ? null : termCounts.get(id);
+        if (counts != null) {
+            return counts;
         }
-        
-        // Calculate dot product
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-        
-        for (String term : allTerms) {
-            double v1 = vec1.getOrDefault(term, 0.0);
-            double v2 = vec2.getOrDefault(term, 0.0);
-            
-            dotProduct += v1 * v2;
-            norm1 += v1 * v1;
-            norm2 += v2 * v2;
+        return isDescribed(book) ? countTerms(catalog.descriptionTokens(book)) : SparseVector.EMPTY;
+    }
+
+    private double idf(int term) {
+        double value = idf.get(term);
+        if (Double.isNaN(value)) {
+            value = calculateIDF(term);
+            idf.set(term, value);
         }
-        
-        // Avoid division by zero
-        if (norm1 <= 0 || norm2 <= 0) {
-            return 0.0;
+        return value;
+    }
+
+    private double calculateIDF(int term) {
+        // IDF of a term: log(totalDocs / docFreq); terms of no description are unknown
+        int frequency = term < docFreq.size() ? docFreq.get(term) : 0;
+        return frequency == 0 ? 0.0 : logTotalDocs - Math.log(frequency);
+    }
+
+    /**
+     * Returns the length of a book's TF-IDF vector with unscaled term frequencies.
+     */
+    private double norm(int id, SparseVector counts) {
+        double value = id == TokenizedCatalog.UNKNOWN ? Double.NaN : norms.get(id);
+        if (Double.isNaN(value)) {
+            value = calculateNorm(counts);
+            if (id != TokenizedCatalog.UNKNOWN) {
+                norms.set(id, value);
+            }
+        }
+        return value;
+    }
+
+    private double calculateNorm(SparseVector counts) {
+        double squaredNorm = 0.0;
+        for (int i = 0; i < counts.size(); i++) {
+            double weight = counts.weight(i) * idf(counts.term(i));
+            squaredNorm += weight * weight;
+        }
+        return Math.sqrt(squaredNorm);
+    }
+
+    /**
+     * Counts the terms of a range of descriptions, and computes the norms of the books in the catalog.
+     */
+    private void countTerms(List<int[]> tokens, int[] ids, SparseVector[] counts, int from, int to) {
+        for (int i = from; i < to; i++) {
+            counts[i] = countTerms(tokens.get(i));
+            if (ids[i] != TokenizedCatalog.UNKNOWN) {
+                norms.set(ids[i], calculateNorm(counts[i]));
+            }
+        }
+    }
+
+    /**
+     * Counts the occurrences of every known term of a description, from runs of equal ids.
+     */
+    private static SparseVector countTerms(int[] tokens) {
+        int[] sorted = tokens.clone();
+        Arrays.sort(sorted);
+        int[] terms = new int[sorted.length];
+        float[] counts = new float[sorted.length];
+        int count = 0;
+        for (int from = 0, to; from < sorted.length; from = to) {
+            to = from + 1;
+            while (to < sorted.length && sorted[to] == sorted[from]) {
+                to++;
+            }
+            if (sorted[from] != TermDictionary.UNKNOWN) {
+                terms[count] = sorted[from];
+                counts[count++] = to - from;
+            }
+        }
+
+        return count == 0 ? SparseVector.EMPTY
+            : new SparseVector(Arrays.copyOf(terms, count), Arrays.copyOf(counts, count));
+    }
+
+    /**
+     * Adds delta to the document frequency of every term of a description.
+     */
+    private static void addDocument(ChunkedIntArray.Builder docFreq, SparseVector counts, int delta) {
+        for (int i = 0; i < counts.size(); i++) {
+            int term = counts.term(i);
+            docFreq.set(term, (term < docFreq.size() ? docFreq.get(term) : 0) + delta);
         }
-        
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
     }
     
-    private Map<String, Double> calculateIDF(Collection<Book> books) {
-        Map<String, Integer> docFreq = new HashMap<>();
-        int totalDocs = 0;
+    private static int[] calculateDocumentFrequencies(List<int[]> tokens, int from, int to, int termCount) {
+        int[] docFreq = new int[termCount];
+        int[] lastDoc = new int[termCount];
+        Arrays.fill(lastDoc, -1);
         
-        // Count document frequency for each term
-        for (Book book : books) {
-            if (book.description() != null && !book.description().isBlank()) {
-                List<String> tokens = tokenizer.tokenize(book.description());
-                Set<String> uniqueTokens = Set.copyOf(tokens);
-                
-                for (String token : uniqueTokens) {
-                    docFreq.put(token, docFreq.getOrDefault(token, 0) + 1);
+        // Count document frequency for each term, once per document
+        for (int doc = from; doc < to; doc++) {
+            for (int termId : tokens.get(doc)) {
+                if (termId != TermDictionary.UNKNOWN && lastDoc[termId] != doc) {
+                    lastDoc[termId] = doc;
+                    docFreq[termId]++;
                 }
-                
-                totalDocs++;
             }
         }
-        
-        if (totalDocs == 0) {
-            return Collections.emptyMap();
+        return docFreq;
+    }
+
+    private static boolean isDescribed(Book book) {
+        return book.description() != null && !book.description().isBlank();
+    }
+
+    /**
+     * Non-negative doubles computed on first use, in chunks allocated on first use, so that a calculator
+     * created by an update pays only for the values it reads. Threads that compute the same value at the
+     * same time store equal results.
+     */
+    private static final class LazyDoubles {
+        private static final int CHUNK_SIZE = ChunkedArray.CHUNK_SIZE;
+        private static final int CHUNK_BITS = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+        // Stored values have the sign bit set, so that 0 marks a value that is not computed yet
+        private static final long COMPUTED = Long.MIN_VALUE;
+
+        private final AtomicReferenceArray<AtomicLongArray> chunks;
+
+        LazyDoubles(int size) {
+            this.chunks = new AtomicReferenceArray<>((size + CHUNK_SIZE - 1) >>> CHUNK_BITS);
         }
-        
-        // Calculate IDF for each term: log(totalDocs / docFreq)
-        Map<String, Double> idfMap = new HashMap<>();
-        double logTotalDocs = Math.log(totalDocs);
-        
-        for (Map.Entry<String, Integer> entry : docFreq.entrySet()) {
-            double idf = logTotalDocs - Math.log(entry.getValue());
-            idfMap.put(entry.getKey(), idf);
+
+        /**
+         * Returns a value, or NaN if it is not computed yet.
+         */
+        double get(int index) {
+            AtomicLongArray chunk = chunks.getAcquire(index >>> CHUNK_BITS);
+            long bits = chunk == null ? 0 : chunk.getAcquire(index & CHUNK_MASK);
+            return bits == 0 ? Double.NaN : Double.longBitsToDouble(bits & ~COMPUTED);
+        }
+
+        void set(int index, double value) {
+            AtomicLongArray chunk = chunks.getAcquire(index >>> CHUNK_BITS);
+            if (chunk == null) {
+                chunks.compareAndSet(index >>> CHUNK_BITS, null, new AtomicLongArray(CHUNK_SIZE));
+                chunk = chunks.getAcquire(index >>> CHUNK_BITS);
+            }
+            chunk.setRelease(index & CHUNK_MASK, Double.doubleToRawLongBits(value) | COMPUTED);
         }
-        
-        return idfMap;
     }
 }
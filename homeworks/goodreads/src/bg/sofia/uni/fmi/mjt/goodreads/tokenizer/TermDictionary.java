@@ -0,0 +1,195 @@
+package bg.sofia.uni.fmi.mjt.goodreads.tokenizer;
+
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedArray;
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedIntArray;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+
+/**
+ * An immutable mapping of terms to dense int ids, from 0 to {@link #size()} - 1.
+ * <p>
+ * Terms are kept in an open-addressing hash table that can be probed with a range of a char array,
+ * so a tokenizer can look up the token it is scanning without creating a String for it. The terms and
+ * the table are chunked arrays, so a dictionary extended by {@link #with} shares all chunks it did not
+ * write to with this one.
+ */
+public final class TermDictionary {
+    public static final int UNKNOWN = -1;
+
+    private static final TermDictionary EMPTY =
+        new TermDictionary(ChunkedArray.empty(), ChunkedIntArray.empty(), ChunkedIntArray.ofSize(capacityFor(0)));
+
+    private final ChunkedArray<String> terms;
+    private final ChunkedIntArray hashes;
+    // Holds id + 1 of the term in each slot, 0 for empty slots
+    private final ChunkedIntArray slots;
+    private final int mask;
+
+    private TermDictionary(ChunkedArray<String> terms, ChunkedIntArray hashes, ChunkedIntArray slots) {
+        this.terms = terms;
+        this.hashes = hashes;
+        this.slots = slots;
+        this.mask = slots.size() - 1;
+    }
+
+    /**
+     * Creates a dictionary of the distinct terms, with ids in iteration order.
+     *
+     * @param terms the terms
+     * @return the dictionary
+     * @throws IllegalArgumentException if terms is null or contains null
+     */
+    public static TermDictionary of(Collection<String> terms) {
+        if (terms == null || terms.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Terms cannot be null");
+        }
+
+        return EMPTY.with(terms);
+    }
+
+    /**
+     * Creates a dictionary of these terms followed by the given ones that are not already in it.
+     * Terms keep their ids, so ids handed out by this dictionary stay valid in the new one.
+     * <p>
+     * Only the new terms are hashed and inserted, unless the table has to grow; it doubles when it gets
+     * half full, so adding a term costs amortized constant time, plus the copy of the chunk index.
+     *
+     * @param added the terms to add
+     * @return the extended dictionary, or this one if every term is already in it
+     * @throws IllegalArgumentException if added is null or contains null
+     */
+    public TermDictionary with(Collection<String> added) {
+        if (added == null || added.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Terms cannot be null");
+        }
+
+        LinkedHashSet<String> fresh = new LinkedHashSet<>();
+        for (String term : added) {
+            if (id(term) == UNKNOWN) {
+                fresh.add(term);
+            }
+        }
+        if (fresh.isEmpty()) {
+            return this;
+        }
+
+        ChunkedArray.Builder<String> newTerms = terms.toBuilder();
+        ChunkedIntArray.Builder newHashes = hashes.toBuilder();
+        for (String term : fresh) {
+            newTerms.add(term);
+            newHashes.add(hash(term));
+        }
+
+        int capacity = capacityFor(newTerms.size());
+        boolean grown = capacity != slots.size();
+        ChunkedIntArray.Builder newSlots = grown ? ChunkedIntArray.ofSize(capacity).toBuilder() : slots.toBuilder();
+        for (int id = grown ? 0 : terms.size(); id < newTerms.size(); id++) {
+            int slot = newHashes.get(id) & (capacity - 1);
+            while (newSlots.get(slot) != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            newSlots.set(slot, id + 1);
+        }
+
+        return new TermDictionary(newTerms.build(), newHashes.build(), newSlots.build());
+    }
+
+    public int size() {
+        return terms.size();
+    }
+
+    /**
+     * Returns the term with the given id.
+     *
+     * @param id the term id
+     * @return the term
+     * @throws IndexOutOfBoundsException if there is no term with this id
+     */
+    public String term(int id) {
+        return terms.get(id);
+    }
+
+    /**
+     * Returns the id of a term.
+     *
+     * @param term the term
+     * @return the id, or {@link #UNKNOWN} if the term is not in the dictionary
+     */
+    public int id(String term) {
+        int hash = hash(term);
+        for (int slot = hash & mask; slots.get(slot) != 0; slot = (slot + 1) & mask) {
+            int id = slots.get(slot) - 1;
+            if (hashes.get(id) == hash && terms.get(id).equals(term)) {
+                return id;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns the id of the term spelled by a range of chars, without creating a String.
+     *
+     * @param chars  the chars
+     * @param offset the start of the term
+     * @param length the length of the term
+     * @return the id, or {@link #UNKNOWN} if the term is not in the dictionary
+     */
+    public int id(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        for (int slot = hash & mask; slots.get(slot) != 0; slot = (slot + 1) & mask) {
+            int id = slots.get(slot) - 1;
+            if (hashes.get(id) == hash && equals(terms.get(id), chars, offset, length)) {
+                return id;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    public boolean contains(char[] chars, int offset, int length) {
+        return id(chars, offset, length) != UNKNOWN;
+    }
+
+    /**
+     * Returns all terms, ordered by id.
+     *
+     * @return a new array of the terms
+     */
+    public String[] terms() {
+        return terms.asList().toArray(String[]::new);
+    }
+
+    private static int capacityFor(int size) {
+        return Integer.highestOneBit(Math.max(4, size * 2 - 1)) << 1;
+    }
+
+    private static boolean equals(String term, char[] chars, int offset, int length) {
+        if (term.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (term.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same as String.hashCode, spread so that the low bits used for the slot depend on all chars
+    private static int hash(String term) {
+        return spread(term.hashCode());
+    }
+
+    private static int hash(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return spread(hash);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -7,30 +7,48 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
 /**
  * Utility class for tokenizing text by removing punctuation, converting to lowercase,
  * and filtering out stopwords.
+ * <p>
+ * A token is a maximal run of ASCII letters and digits of the lowercased text; every other
+ * character separates tokens. The text is scanned once, char by char, into a reusable
+ * per-thread buffer. Only text containing non-ASCII characters (or any text under a locale
+ * whose lowercasing of ASCII is special) is lowercased with {@link String#toLowerCase()}
+ * first, since lowercasing such characters can produce ASCII letters.
  */
 public class TextTokenizer {
     private static final String STOPWORDS_FILE = "/stopwords.txt";
-    private static final String PUNCTUATION_REGEX = "[^a-zA-Z0-9\\s]";
-    private static final String WHITESPACE_REGEX = "\\s+";
-    
-    private final Set<String> stopwords;
+    private static final int INITIAL_BUFFER_SIZE = 64;
+    private static final int ASCII_LIMIT = 0x80;
+    private static final int LOWERCASE_OFFSET = 'a' - 'A';
+
+    private static volatile TermDictionary defaultStopwords;
+
+    private final TermDictionary stopwords;
+    private final ThreadLocal<char[]> buffers = ThreadLocal.withInitial(() -> new char[INITIAL_BUFFER_SIZE]);
     
     /**
-     * Creates a new TextTokenizer with default stopwords.
+     * Creates a new TextTokenizer with default stopwords. The stopwords file is read by the first
+     * tokenizer only; later ones share its dictionary.
      * 
      * @throws IllegalStateException if the stopwords file cannot be loaded
      */
     public TextTokenizer() {
-        this.stopwords = loadStopwords();
+        TermDictionary loaded = defaultStopwords;
+        if (loaded == null) {
+            // Racing first tokenizers may each load the file; they produce equal dictionaries
+            loaded = TermDictionary.of(loadStopwords());
+            defaultStopwords = loaded;
+        }
+        this.stopwords = loaded;
     }
     
     /**
@@ -48,29 +66,94 @@ public class TextTokenizer {
         if (input == null) {
             throw new IllegalArgumentException("Input cannot be null");
         }
-        
-        if (input.isBlank()) {
-            return List.of();
+
+        List<String> tokens = new ArrayList<>();
+        scan(input, (buffer, start, length) -> tokens.add(new String(buffer, start, length)));
+        return tokens;
+    }
+
+    /**
+     * Tokenizes the input text like {@link #tokenize(String)}, but reports the dictionary id of every token
+     * instead of the token itself. No String is created for the tokens.
+     *
+     * @param input      the text to tokenize
+     * @param dictionary the dictionary to look the tokens up in
+     * @param consumer   receives the id of every token in text order; {@link TermDictionary#UNKNOWN} for
+     *                   tokens that are not in the dictionary
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public void tokenizeToIds(String input, TermDictionary dictionary, IntConsumer consumer) {
+        if (input == null || dictionary == null || consumer == null) {
+            throw new IllegalArgumentException("Input, dictionary and consumer cannot be null");
+        }
+
+        scan(input, (buffer, start, length) -> consumer.accept(dictionary.id(buffer, start, length)));
+    }
+
+    /**
+     * Tokenizes the input text into the ids of the tokens found in the dictionary, skipping unknown tokens.
+     *
+     * @param input      the text to tokenize
+     * @param dictionary the dictionary to look the tokens up in
+     * @return the ids of the known tokens in text order
+     * @throws IllegalArgumentException if input or dictionary is null
+     */
+    public int[] tokenizeToIds(String input, TermDictionary dictionary) {
+        IdsCollector ids = new IdsCollector();
+        tokenizeToIds(input, dictionary, ids);
+        return ids.toArray();
+    }
+
+    /**
+     * Writes the lowercased text into the thread's buffer and reports every token that is not a stopword
+     * as a range of it.
+     */
+    private void scan(String input, TokenSink sink) {
+        String text = needsFullLowercase(input) ? input.toLowerCase() : input;
+
+        char[] buffer = buffers.get();
+        if (buffer.length < text.length()) {
+            buffer = Arrays.copyOf(buffer, Math.max(text.length(), buffer.length * 2));
+            buffers.set(buffer);
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (isTokenChar(c)) {
+                buffer[i] = c >= 'A' && c <= 'Z' ? (char) (c + LOWERCASE_OFFSET) : c;
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                if (!stopwords.contains(buffer, start, i - start)) {
+                    sink.accept(buffer, start, i - start);
+                }
+                start = -1;
+            }
         }
-        
-        // Convert to lowercase and remove punctuation
-        String cleaned = input.toLowerCase()
-                .replaceAll(PUNCTUATION_REGEX, " ")
-                .replaceAll(WHITESPACE_REGEX, " ")
-                .trim();
-                
-        if (cleaned.isEmpty()) {
-            return List.of();
+    }
+
+    private static boolean isTokenChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean needsFullLowercase(String input) {
+        String language = Locale.getDefault().getLanguage();
+        if (language.equals("tr") || language.equals("az")) {
+            return true; // Uppercase I does not lowercase to i there
         }
-        
-        // Split into words and filter out stopwords
-        return Arrays.stream(cleaned.split(WHITESPACE_REGEX))
-                .filter(word -> !word.isBlank() && !stopwords.contains(word))
-                .collect(Collectors.toList());
+
+        for (int i = 0; i < input.length(); i++) {
+            if (input.charAt(i) >= ASCII_LIMIT) {
+                return true;
+            }
+        }
+        return false;
     }
     
-    private Set<String> loadStopwords() {
-        try (InputStream is = getClass().getResourceAsStream(STOPWORDS_FILE);
+    private static Set<String> loadStopwords() {
+        try (InputStream is = TextTokenizer.class.getResourceAsStream(STOPWORDS_FILE);
              BufferedReader reader = new BufferedReader(new InputStreamReader(
                      Objects.requireNonNull(is), StandardCharsets.UTF_8))) {
             
@@ -83,4 +166,29 @@ public class TextTokenizer {
             throw new IllegalStateException("Could not load stopwords", e);
         }
     }
+
+    @FunctionalInterface
+    private interface TokenSink {
+        void accept(char[] buffer, int start, int length);
+    }
+
+    private static final class IdsCollector implements IntConsumer {
+        private int[] ids = new int[16];
+        private int count;
+
+        @Override
+        public void accept(int id) {
+            if (id == TermDictionary.UNKNOWN) {
+                return;
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, count);
+        }
+    }
 }
@@ -0,0 +1,337 @@
+package bg.sofia.uni.fmi.mjt.goodreads.tokenizer;
+
+import bg.sofia.uni.fmi.mjt.goodreads.book.Book;
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedArray;
+import bg.sofia.uni.fmi.mjt.goodreads.util.ChunkedHashMap;
+import bg.sofia.uni.fmi.mjt.goodreads.util.Shards;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The titles and descriptions of a collection of books, tokenized once into the ids of a shared
+ * {@link TermDictionary}.
+ * <p>
+ * Components built over the same catalog, such as the keyword index of a book finder and a TF-IDF
+ * similarity calculator, read the token ids of a book from here instead of tokenizing its text again,
+ * and agree on the id of every term.
+ * <p>
+ * Every book gets a catalog id when it is added, and the tokens are stored in chunked arrays by that id,
+ * so an updated catalog shares the chunks of all books it did not touch with the catalog it came from.
+ */
+public final class TokenizedCatalog {
+    public static final int UNKNOWN = -1;
+
+    private static final int[] NO_TOKENS = new int[0];
+    private static final int MIN_SHARD_SIZE = 1024;
+
+    private final TextTokenizer tokenizer;
+    private final TermDictionary dictionary;
+    // Catalog ids are never reused, so the id of a removed book stays empty
+    private final ChunkedHashMap<Book, Integer> ids;
+    private final ChunkedArray<int[]> titles;
+    private final ChunkedArray<int[]> descriptions;
+
+    private TokenizedCatalog(TextTokenizer tokenizer, TermDictionary dictionary, ChunkedHashMap<Book, Integer> ids,
+                             ChunkedArray<int[]> titles, ChunkedArray<int[]> descriptions) {
+        this.tokenizer = tokenizer;
+        this.dictionary = dictionary;
+        this.ids = ids;
+        this.titles = titles;
+        this.descriptions = descriptions;
+    }
+
+    private static TokenizedCatalog empty(TextTokenizer tokenizer) {
+        return new TokenizedCatalog(tokenizer, TermDictionary.of(List.of()), ChunkedHashMap.identity(),
+            ChunkedArray.empty(), ChunkedArray.empty());
+    }
+
+    /**
+     * Tokenizes the books with a tokenizer using the default stopwords.
+     *
+     * @param books the books
+     * @return the tokenized catalog
+     * @throws IllegalArgumentException if books is null or contains null
+     */
+    public static TokenizedCatalog of(Collection<Book> books) {
+        return of(books, new TextTokenizer());
+    }
+
+    /**
+     * Tokenizes the title and description of every book once, assigning term ids in order of first occurrence.
+     *
+     * @param books     the books
+     * @param tokenizer the tokenizer, also used for texts outside the catalog
+     * @return the tokenized catalog
+     * @throws IllegalArgumentException if books or tokenizer is null, or books contains null
+     */
+    public static TokenizedCatalog of(Collection<Book> books, TextTokenizer tokenizer) {
+        if (books == null || tokenizer == null || books.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Books and tokenizer cannot be null");
+        }
+
+        return empty(tokenizer).update(books, List.of(), null);
+    }
+
+    /**
+     * Tokenizes the books like {@link #of(Collection, TextTokenizer)}, in parallel. Each shard of the books
+     * is tokenized on the pool into term ids of its own; the shards' terms are then numbered in shard order,
+     * so every term gets the same id as when the books are tokenized sequentially.
+     *
+     * @param books     the books
+     * @param tokenizer the tokenizer, also used for texts outside the catalog
+     * @param pool      the pool to tokenize on
+     * @return the tokenized catalog
+     * @throws IllegalArgumentException if any argument is null, or books contains null
+     */
+    public static TokenizedCatalog of(Collection<Book> books, TextTokenizer tokenizer, ForkJoinPool pool) {
+        if (books == null || tokenizer == null || pool == null || books.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Books, tokenizer and pool cannot be null");
+        }
+
+        return empty(tokenizer).update(books, List.of(), pool);
+    }
+
+    /**
+     * Creates a catalog of these books without the removed ones and with the added ones. Only the added books
+     * are tokenized; their new terms are appended to the dictionary, so every term keeps its id. Terms are
+     * never removed from the dictionary.
+     * <p>
+     * Besides tokenizing the added books, an update writes only the chunks holding the changed books, so
+     * its cost grows with the number of changed books rather than with the size of the catalog.
+     *
+     * @param added   the books to add
+     * @param removed books of this catalog to remove; compared by identity
+     * @return the updated catalog
+     * @throws IllegalArgumentException if added or removed is null or contains null
+     */
+    public TokenizedCatalog update(Collection<Book> added, Collection<Book> removed) {
+        if (added == null || removed == null
+            || added.stream().anyMatch(Objects::isNull) || removed.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Added and removed books cannot be null");
+        }
+
+        return update(added, removed, null);
+    }
+
+    /**
+     * Updates the catalog, tokenizing the added books on the pool, or on the calling thread if pool is null.
+     */
+    private TokenizedCatalog update(Collection<Book> added, Collection<Book> removed, ForkJoinPool pool) {
+        Book[] books = added.toArray(Book[]::new);
+        Shard[] shards;
+        if (pool == null) {
+            shards = new Shard[] {tokenize(books, 0, books.length)};
+        } else {
+            Shards split = new Shards(books.length, MIN_SHARD_SIZE, pool.getParallelism() * 4);
+            shards = new Shard[split.count()];
+            split.forEach(pool, shard -> shards[shard] = tokenize(books, split.start(shard), split.end(shard)));
+        }
+
+        // Numbering new terms shard by shard gives them their ids in order of first occurrence
+        Map<String, Integer> termIds = new HashMap<>();
+        List<String> terms = new ArrayList<>();
+        int[][] mappings = new int[shards.length][];
+        for (int shard = 0; shard < shards.length; shard++) {
+            List<String> shardTerms = shards[shard].newTerms();
+            mappings[shard] = new int[shardTerms.size()];
+            for (int i = 0; i < shardTerms.size(); i++) {
+                mappings[shard][i] = dictionary.size() + termIds.computeIfAbsent(shardTerms.get(i), term -> {
+                    terms.add(term);
+                    return terms.size() - 1;
+                });
+            }
+        }
+        // The new terms of the first shard are numbered first, so its ids are already final
+        if (shards.length > 1) {
+            Shards split = new Shards(shards.length - 1, 1, pool.getParallelism());
+            split.forEach(pool, part -> {
+                for (int shard = split.start(part) + 1; shard <= split.end(part); shard++) {
+                    shards[shard].renumber(mappings[shard], dictionary.size());
+                }
+            });
+        }
+
+        ChunkedHashMap.Builder<Book, Integer> newIds = ids.toBuilder();
+        ChunkedArray.Builder<int[]> newTitles = titles.toBuilder();
+        ChunkedArray.Builder<int[]> newDescriptions = descriptions.toBuilder();
+        for (Book book : removed) {
+            Integer id = newIds.remove(book);
+            if (id != null) {
+                newTitles.set(id, null);
+                newDescriptions.set(id, null);
+            }
+        }
+        for (Shard shard : shards) {
+            for (int i = 0; i < shard.books().length; i++) {
+                Integer id = newIds.get(shard.books()[i]);
+                if (id == null) {
+                    id = newTitles.size();
+                    newIds.put(shard.books()[i], id);
+                }
+                newTitles.set(id, shard.titles()[i]);
+                newDescriptions.set(id, shard.descriptions()[i]);
+            }
+        }
+
+        return new TokenizedCatalog(tokenizer, dictionary.with(terms), newIds.build(), newTitles.build(),
+            newDescriptions.build());
+    }
+
+    /**
+     * Tokenizes a range of books. Terms missing from the dictionary get ids following it, numbered
+     * within the shard.
+     */
+    private Shard tokenize(Book[] books, int from, int to) {
+        Map<String, Integer> termIds = new HashMap<>();
+        List<String> terms = new ArrayList<>();
+        int[][] shardTitles = new int[to - from][];
+        int[][] shardDescriptions = new int[to - from][];
+        for (int i = from; i < to; i++) {
+            shardTitles[i - from] = toIds(books[i].title(), termIds, terms);
+            shardDescriptions[i - from] = toIds(books[i].description(), termIds, terms);
+        }
+        return new Shard(Arrays.copyOfRange(books, from, to), shardTitles, shardDescriptions, terms);
+    }
+
+    public TextTokenizer tokenizer() {
+        return tokenizer;
+    }
+
+    public TermDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Checks whether the book is one of the catalog's books; books are compared by identity.
+     *
+     * @param book the book
+     * @return true if the catalog was built with this book instance
+     */
+    public boolean contains(Book book) {
+        return ids.containsKey(book);
+    }
+
+    /**
+     * Returns the catalog id of a book. A book keeps its id in every catalog updated from this one for as long
+     * as it stays in them, and the id of a removed book is never given to another book.
+     *
+     * @param book the book; compared by identity
+     * @return the id, or {@link #UNKNOWN} if the book is not in the catalog
+     * @throws IllegalArgumentException if book is null
+     */
+    public int id(Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Book cannot be null");
+        }
+
+        Integer id = ids.get(book);
+        return id != null ? id : UNKNOWN;
+    }
+
+    /**
+     * Returns a bound of the catalog ids.
+     *
+     * @return a value greater than the id of every book of the catalog
+     */
+    public int idBound() {
+        return titles.size();
+    }
+
+    /**
+     * Returns the token ids of a book's title.
+     *
+     * @param book the book
+     * @return the ids in text order, empty if the title is null; for a book outside the catalog,
+     *     {@link TermDictionary#UNKNOWN} stands for every token that is not in the dictionary.
+     *     The array must not be modified.
+     * @throws IllegalArgumentException if book is null
+     */
+    public int[] titleTokens(Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Book cannot be null");
+        }
+
+        Integer id = ids.get(book);
+        return id != null ? titles.get(id) : tokenize(book.title());
+    }
+
+    /**
+     * Returns the token ids of a book's description.
+     *
+     * @param book the book
+     * @return the ids in text order, empty if the description is null; for a book outside the catalog,
+     *     {@link TermDictionary#UNKNOWN} stands for every token that is not in the dictionary.
+     *     The array must not be modified.
+     * @throws IllegalArgumentException if book is null
+     */
+    public int[] descriptionTokens(Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Book cannot be null");
+        }
+
+        Integer id = ids.get(book);
+        return id != null ? descriptions.get(id) : tokenize(book.description());
+    }
+
+    private record Shard(Book[] books, int[][] titles, int[][] descriptions, List<String> newTerms) {
+
+        /**
+         * Replaces the shard's ids of new terms, from base on, with their ids in the catalog.
+         */
+        void renumber(int[] mapping, int base) {
+            renumber(titles, mapping, base);
+            renumber(descriptions, mapping, base);
+        }
+
+        private static void renumber(int[][] texts, int[] mapping, int base) {
+            for (int[] ids : texts) {
+                for (int i = 0; i < ids.length; i++) {
+                    if (ids[i] >= base) {
+                        ids[i] = mapping[ids[i] - base];
+                    }
+                }
+            }
+        }
+    }
+
+    private int[] tokenize(String text) {
+        if (text == null) {
+            return NO_TOKENS;
+        }
+
+        IntStream.Builder ids = IntStream.builder();
+        tokenizer.tokenizeToIds(text, dictionary, ids);
+        return ids.build().toArray();
+    }
+
+    /**
+     * Converts the tokens of a text to ids, giving tokens missing from the dictionary the ids following it,
+     * in order of first occurrence.
+     */
+    private int[] toIds(String text, Map<String, Integer> newTermIds, List<String> newTerms) {
+        if (text == null) {
+            return NO_TOKENS;
+        }
+
+        List<String> tokens = tokenizer.tokenize(text);
+        int[] ids = new int[tokens.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dictionary.id(tokens.get(i));
+            if (ids[i] == TermDictionary.UNKNOWN) {
+                ids[i] = newTermIds.computeIfAbsent(tokens.get(i), term -> {
+                    newTerms.add(term);
+                    return dictionary.size() + newTerms.size() - 1;
+                });
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,205 @@
+package bg.sofia.uni.fmi.mjt.goodreads.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * An immutable array of references stored in chunks of {@value #CHUNK_SIZE} elements.
+ * <p>
+ * A {@link Builder} made from an array copies the index of its chunks, but copies a chunk only when it
+ * writes to it, so the changed array shares every other chunk with the original one. Changing k elements
+ * of an array of size n costs O(n / {@value #CHUNK_SIZE} + k * {@value #CHUNK_SIZE}) instead of O(n).
+ * Chunks left with nothing but nulls are dropped.
+ *
+ * @param <E> the type of the elements
+ */
+public final class ChunkedArray<E> {
+    public static final int CHUNK_SIZE = 1 << 10;
+    private static final int CHUNK_BITS = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // null stands for a chunk of nulls
+    private final Object[][] chunks;
+    private final int size;
+
+    private ChunkedArray(Object[][] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static <E> ChunkedArray<E> empty() {
+        return ofSize(0);
+    }
+
+    /**
+     * Creates an array of nulls.
+     *
+     * @param size the size of the array
+     * @param <E>  the type of the elements
+     * @return the array
+     * @throws IllegalArgumentException if size is negative
+     */
+    public static <E> ChunkedArray<E> ofSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size cannot be negative");
+        }
+
+        return new ChunkedArray<>(new Object[chunkCount(size)][], size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an element.
+     *
+     * @param index the index of the element
+     * @return the element, possibly null
+     * @throws IndexOutOfBoundsException if index is negative or not less than the size
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        Object[] chunk = chunks[index >>> CHUNK_BITS];
+        return chunk == null ? null : (E) chunk[index & CHUNK_MASK];
+    }
+
+    /**
+     * Returns an unmodifiable list view of the array.
+     *
+     * @return the view
+     */
+    public List<E> asList() {
+        return new ListView<>(this);
+    }
+
+    /**
+     * Starts a changed copy of this array, which is not modified.
+     *
+     * @return a builder holding the elements of this array
+     */
+    public Builder<E> toBuilder() {
+        return new Builder<>(chunks, size);
+    }
+
+    private static int chunkCount(int size) {
+        return (size + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+    }
+
+    /**
+     * Collects the changes of an array. Chunks shared with the array the builder was made from, or with
+     * an array it has built, are copied before their first change.
+     *
+     * @param <E> the type of the elements
+     */
+    public static final class Builder<E> {
+        private Object[][] chunks;
+        private boolean[] owned;
+        private int size;
+
+        private Builder(Object[][] chunks, int size) {
+            this.chunks = chunks.clone();
+            this.owned = new boolean[chunks.length];
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns an element.
+         *
+         * @param index the index of the element
+         * @return the element, possibly null
+         * @throws IndexOutOfBoundsException if index is negative or not less than the size
+         */
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            Objects.checkIndex(index, size);
+            Object[] chunk = chunks[index >>> CHUNK_BITS];
+            return chunk == null ? null : (E) chunk[index & CHUNK_MASK];
+        }
+
+        /**
+         * Replaces an element. Setting an element at or after the end grows the array, filling the gap
+         * with nulls.
+         *
+         * @param index   the index of the element
+         * @param element the element, possibly null
+         * @return this builder
+         * @throws IndexOutOfBoundsException if index is negative
+         */
+        public Builder<E> set(int index, E element) {
+            if (index < 0) {
+                throw new IndexOutOfBoundsException("Index cannot be negative: " + index);
+            }
+            if (index >= size) {
+                grow(index + 1);
+            }
+
+            int chunk = index >>> CHUNK_BITS;
+            if (element == null && chunks[chunk] == null) {
+                return this;
+            }
+            if (!owned[chunk]) {
+                chunks[chunk] = chunks[chunk] == null ? new Object[CHUNK_SIZE] : chunks[chunk].clone();
+                owned[chunk] = true;
+            }
+            chunks[chunk][index & CHUNK_MASK] = element;
+            return this;
+        }
+
+        public Builder<E> add(E element) {
+            return set(size, element);
+        }
+
+        /**
+         * Creates an array of the elements. The builder can still be used; its later changes do not
+         * affect the array.
+         *
+         * @return the array
+         */
+        public ChunkedArray<E> build() {
+            for (int chunk = 0; chunk < owned.length; chunk++) {
+                if (owned[chunk] && Arrays.stream(chunks[chunk]).allMatch(Objects::isNull)) {
+                    chunks[chunk] = null;
+                }
+            }
+            owned = new boolean[chunks.length];
+            return new ChunkedArray<>(Arrays.copyOf(chunks, chunkCount(size)), size);
+        }
+
+        private void grow(int newSize) {
+            int needed = chunkCount(newSize);
+            if (needed > chunks.length) {
+                int length = Math.max(needed, chunks.length * 2);
+                chunks = Arrays.copyOf(chunks, length);
+                owned = Arrays.copyOf(owned, length);
+            }
+            size = newSize;
+        }
+    }
+
+    private static final class ListView<E> extends AbstractList<E> implements RandomAccess {
+        private final ChunkedArray<E> array;
+
+        ListView(ChunkedArray<E> array) {
+            this.array = array;
+        }
+
+        @Override
+        public E get(int index) {
+            return array.get(index);
+        }
+
+        @Override
+        public int size() {
+            return array.size();
+        }
+    }
+}
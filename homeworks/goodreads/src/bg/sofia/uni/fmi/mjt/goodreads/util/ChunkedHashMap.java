@@ -0,0 +1,284 @@
+package bg.sofia.uni.fmi.mjt.goodreads.util;
+
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable hash map whose open-addressing table is a {@link ChunkedArray}, so a version changed through a
+ * {@link Builder} shares every chunk of the table it did not write to with the map it was made from.
+ * <p>
+ * Keys are placed by linear probing, and a removal shifts the keys following it back into place instead of
+ * leaving a marker, so lookups do not slow down as keys come and go. The table doubles, and is rebuilt, when
+ * it becomes half full. Keys are compared with {@link Object#equals}, or by identity in maps created with
+ * {@link #identity()}. Keys and values cannot be null.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class ChunkedHashMap<K, V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private final boolean identity;
+    // The key of slot i is at 2 * i and its value at 2 * i + 1; null keys mark empty slots
+    private final ChunkedArray<Object> table;
+    private final int size;
+
+    private ChunkedHashMap(boolean identity, ChunkedArray<Object> table, int size) {
+        this.identity = identity;
+        this.table = table;
+        this.size = size;
+    }
+
+    /**
+     * Creates an empty map comparing keys with {@link Object#equals}.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return the map
+     */
+    public static <K, V> ChunkedHashMap<K, V> of() {
+        return new ChunkedHashMap<>(false, ChunkedArray.ofSize(2 * MIN_CAPACITY), 0);
+    }
+
+    /**
+     * Creates an empty map comparing keys by identity.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return the map
+     */
+    public static <K, V> ChunkedHashMap<K, V> identity() {
+        return new ChunkedHashMap<>(true, ChunkedArray.ofSize(2 * MIN_CAPACITY), 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or null if the key is not in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int slot = find(key);
+        return slot < 0 ? null : (V) table.get(2 * slot + 1);
+    }
+
+    /**
+     * Returns the value of a key, or a default value.
+     *
+     * @param key          the key
+     * @param defaultValue the value to return if the key is not in the map
+     * @return the value, or defaultValue if the key is not in the map
+     */
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Passes every entry to the action, in no particular order.
+     *
+     * @param action the action
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < table.size(); i += 2) {
+            Object key = table.get(i);
+            if (key != null) {
+                action.accept((K) key, (V) table.get(i + 1));
+            }
+        }
+    }
+
+    /**
+     * Starts a changed copy of this map, which is not modified.
+     *
+     * @return a builder holding the entries of this map
+     */
+    public Builder<K, V> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    /**
+     * Returns the slot of a key, or -1 if the key is not in the map.
+     */
+    private int find(Object key) {
+        if (key == null) {
+            return -1;
+        }
+
+        int mask = table.size() / 2 - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            Object candidate = table.get(2 * slot);
+            if (candidate == null) {
+                return -1;
+            }
+            if (identity ? candidate == key : candidate.equals(key)) {
+                return slot;
+            }
+        }
+    }
+
+    private int hash(Object key) {
+        int hash = identity ? System.identityHashCode(key) : key.hashCode();
+        // Fibonacci hashing, so that keys with sequential hashes do not form long runs
+        hash *= 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Collects the changes of a map.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     */
+    public static final class Builder<K, V> {
+        private final ChunkedHashMap<K, V> map;
+        private ChunkedArray.Builder<Object> table;
+        private int size;
+
+        private Builder(ChunkedHashMap<K, V> map) {
+            this.map = map;
+            this.table = map.table.toBuilder();
+            this.size = map.size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the value of a key.
+         *
+         * @param key the key
+         * @return the value, or null if the key is not in the map
+         */
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            int slot = find(key);
+            return slot < 0 ? null : (V) table.get(2 * slot + 1);
+        }
+
+        /**
+         * Maps a key to a value.
+         *
+         * @param key   the key
+         * @param value the value
+         * @return the previous value of the key, or null if it was not in the map
+         * @throws IllegalArgumentException if key or value is null
+         */
+        @SuppressWarnings("unchecked")
+        public V put(K key, V value) {
+            if (key == null || value == null) {
+                throw new IllegalArgumentException("Key and value cannot be null");
+            }
+
+            int slot = find(key);
+            if (slot >= 0) {
+                V previous = (V) table.get(2 * slot + 1);
+                table.set(2 * slot + 1, value);
+                return previous;
+            }
+
+            if (2 * (size + 1) > capacity()) {
+                resize(2 * capacity());
+            }
+            slot = map.hash(key) & (capacity() - 1);
+            while (table.get(2 * slot) != null) {
+                slot = (slot + 1) & (capacity() - 1);
+            }
+            table.set(2 * slot, key);
+            table.set(2 * slot + 1, value);
+            size++;
+            return null;
+        }
+
+        /**
+         * Removes a key.
+         *
+         * @param key the key
+         * @return the value of the key, or null if it was not in the map
+         */
+        @SuppressWarnings("unchecked")
+        public V remove(Object key) {
+            int hole = find(key);
+            if (hole < 0) {
+                return null;
+            }
+            V value = (V) table.get(2 * hole + 1);
+
+            // Move back every following key of the run whose home slot is not between the hole and the key
+            int mask = capacity() - 1;
+            for (int slot = (hole + 1) & mask; table.get(2 * slot) != null; slot = (slot + 1) & mask) {
+                int home = map.hash(table.get(2 * slot)) & mask;
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    table.set(2 * hole, table.get(2 * slot));
+                    table.set(2 * hole + 1, table.get(2 * slot + 1));
+                    hole = slot;
+                }
+            }
+            table.set(2 * hole, null);
+            table.set(2 * hole + 1, null);
+            size--;
+            return value;
+        }
+
+        /**
+         * Creates a map of the entries. The builder can still be used; its later changes do not affect the map.
+         *
+         * @return the map
+         */
+        public ChunkedHashMap<K, V> build() {
+            return new ChunkedHashMap<>(map.identity, table.build(), size);
+        }
+
+        private int capacity() {
+            return table.size() / 2;
+        }
+
+        private int find(Object key) {
+            if (key == null) {
+                return -1;
+            }
+
+            int mask = capacity() - 1;
+            for (int slot = map.hash(key) & mask; ; slot = (slot + 1) & mask) {
+                Object candidate = table.get(2 * slot);
+                if (candidate == null) {
+                    return -1;
+                }
+                if (map.identity ? candidate == key : candidate.equals(key)) {
+                    return slot;
+                }
+            }
+        }
+
+        private void resize(int newCapacity) {
+            ChunkedArray.Builder<Object> old = table;
+            table = ChunkedArray.ofSize(2 * newCapacity).toBuilder();
+            int mask = newCapacity - 1;
+            for (int i = 0; i < old.size(); i += 2) {
+                Object key = old.get(i);
+                if (key != null) {
+                    int slot = map.hash(key) & mask;
+                    while (table.get(2 * slot) != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table.set(2 * slot, key);
+                    table.set(2 * slot + 1, old.get(i + 1));
+                }
+            }
+        }
+    }
+}
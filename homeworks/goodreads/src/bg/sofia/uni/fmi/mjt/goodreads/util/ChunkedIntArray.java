@@ -0,0 +1,159 @@
+package bg.sofia.uni.fmi.mjt.goodreads.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An immutable array of ints stored in chunks of {@value ChunkedArray#CHUNK_SIZE} elements, which versions
+ * made by a {@link Builder} share unless they change them; the int counterpart of {@link ChunkedArray}.
+ * Chunks that were never written to are not allocated and read as zeros.
+ */
+public final class ChunkedIntArray {
+    private static final int CHUNK_SIZE = ChunkedArray.CHUNK_SIZE;
+    private static final int CHUNK_BITS = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // null stands for a chunk of zeros
+    private final int[][] chunks;
+    private final int size;
+
+    private ChunkedIntArray(int[][] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static ChunkedIntArray empty() {
+        return ofSize(0);
+    }
+
+    /**
+     * Creates an array of zeros.
+     *
+     * @param size the size of the array
+     * @return the array
+     * @throws IllegalArgumentException if size is negative
+     */
+    public static ChunkedIntArray ofSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size cannot be negative");
+        }
+
+        return new ChunkedIntArray(new int[chunkCount(size)][], size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an element.
+     *
+     * @param index the index of the element
+     * @return the element
+     * @throws IndexOutOfBoundsException if index is negative or not less than the size
+     */
+    public int get(int index) {
+        Objects.checkIndex(index, size);
+        int[] chunk = chunks[index >>> CHUNK_BITS];
+        return chunk == null ? 0 : chunk[index & CHUNK_MASK];
+    }
+
+    /**
+     * Starts a changed copy of this array, which is not modified.
+     *
+     * @return a builder holding the elements of this array
+     */
+    public Builder toBuilder() {
+        return new Builder(chunks, size);
+    }
+
+    private static int chunkCount(int size) {
+        return (size + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+    }
+
+    /**
+     * Collects the changes of an array, copying a shared chunk before its first change.
+     */
+    public static final class Builder {
+        private int[][] chunks;
+        private boolean[] owned;
+        private int size;
+
+        private Builder(int[][] chunks, int size) {
+            this.chunks = chunks.clone();
+            this.owned = new boolean[chunks.length];
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns an element.
+         *
+         * @param index the index of the element
+         * @return the element
+         * @throws IndexOutOfBoundsException if index is negative or not less than the size
+         */
+        public int get(int index) {
+            Objects.checkIndex(index, size);
+            int[] chunk = chunks[index >>> CHUNK_BITS];
+            return chunk == null ? 0 : chunk[index & CHUNK_MASK];
+        }
+
+        /**
+         * Replaces an element. Setting an element at or after the end grows the array, filling the gap
+         * with zeros.
+         *
+         * @param index the index of the element
+         * @param value the new value
+         * @return this builder
+         * @throws IndexOutOfBoundsException if index is negative
+         */
+        public Builder set(int index, int value) {
+            if (index < 0) {
+                throw new IndexOutOfBoundsException("Index cannot be negative: " + index);
+            }
+            if (index >= size) {
+                grow(index + 1);
+            }
+
+            int chunk = index >>> CHUNK_BITS;
+            if (value == 0 && chunks[chunk] == null) {
+                return this;
+            }
+            if (!owned[chunk]) {
+                chunks[chunk] = chunks[chunk] == null ? new int[CHUNK_SIZE] : chunks[chunk].clone();
+                owned[chunk] = true;
+            }
+            chunks[chunk][index & CHUNK_MASK] = value;
+            return this;
+        }
+
+        public Builder add(int value) {
+            return set(size, value);
+        }
+
+        /**
+         * Creates an array of the elements. The builder can still be used; its later changes do not
+         * affect the array.
+         *
+         * @return the array
+         */
+        public ChunkedIntArray build() {
+            owned = new boolean[chunks.length];
+            return new ChunkedIntArray(Arrays.copyOf(chunks, chunkCount(size)), size);
+        }
+
+        private void grow(int newSize) {
+            int needed = chunkCount(newSize);
+            if (needed > chunks.length) {
+                int length = Math.max(needed, chunks.length * 2);
+                chunks = Arrays.copyOf(chunks, length);
+                owned = Arrays.copyOf(owned, length);
+            }
+            size = newSize;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package bg.sofia.uni.fmi.mjt.goodreads.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Splits a range of items into contiguous shards processed in parallel on a fork-join pool.
+ * Callers keep one result per shard and combine the results in shard order, so the outcome
+ * does not depend on how the shards were scheduled.
+ */
+public final class Shards {
+    private final int size;
+    private final int count;
+
+    /**
+     * Splits the items into at most maxShards shards of at least minShardSize items each,
+     * or into a single shard if there are fewer items than that.
+     *
+     * @param size         the number of items
+     * @param minShardSize the least number of items worth a task of its own
+     * @param maxShards    the greatest number of shards, usually a small multiple of the parallelism of the pool
+     * @throws IllegalArgumentException if size is negative, or minShardSize or maxShards is not positive
+     */
+    public Shards(int size, int minShardSize, int maxShards) {
+        if (size < 0 || minShardSize <= 0 || maxShards <= 0) {
+            throw new IllegalArgumentException("Size cannot be negative, shard size and count must be positive");
+        }
+
+        this.size = size;
+        this.count = Math.max(1, Math.min(maxShards, size / minShardSize));
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int start(int shard) {
+        return (int) ((long) size * shard / count);
+    }
+
+    public int end(int shard) {
+        return start(shard + 1);
+    }
+
+    /**
+     * Runs the action for every shard on the pool and waits for all of them.
+     *
+     * @param pool   the pool
+     * @param action receives the index of a shard, from 0 to {@link #count()} - 1
+     */
+    public void forEach(ForkJoinPool pool, IntConsumer action) {
+        pool.invoke(new ShardsTask(0, count, action));
+    }
+
+    private static final class ShardsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        ShardsTask(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    action.accept(from);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ShardsTask(from, middle, action), new ShardsTask(middle, to, action));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package bg.sofia.uni.fmi.mjt.goodreads.util;
+
+/**
+ * Keeps the best {@code capacity} scored ids seen so far in a binary heap with the worst of
+ * them on top, so offering an id that does not make the cut costs a single comparison.
+ * Higher scores are better; equal scores are ordered by ascending id.
+ */
+public class TopScores {
+    private final double[] scores;
+    private final int[] ids;
+    private int size;
+
+    /**
+     * @param capacity the number of ids to keep
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public TopScores(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.scores = new double[capacity];
+        this.ids = new int[capacity];
+    }
+
+    public void offer(double score, int id) {
+        if (size < scores.length) {
+            scores[size] = score;
+            ids[size] = id;
+            siftUp(size++);
+        } else if (isBetter(score, id, scores[0], ids[0])) {
+            scores[0] = score;
+            ids[0] = id;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == scores.length;
+    }
+
+    /**
+     * Returns the score an id has to beat to be kept once the heap is full.
+     *
+     * @return the lowest kept score, or negative infinity while the heap is not full
+     */
+    public double threshold() {
+        return isFull() ? scores[0] : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Empties the heap into the given arrays, best first.
+     *
+     * @param sortedIds    receives the ids; must have room for {@link #size()} elements
+     * @param sortedScores receives the scores of the ids; must have room for {@link #size()} elements
+     */
+    public void drain(int[] sortedIds, double[] sortedScores) {
+        for (int i = size - 1; i >= 0; i--) {
+            sortedIds[i] = ids[0];
+            sortedScores[i] = scores[0];
+            size--;
+            scores[0] = scores[size];
+            ids[0] = ids[size];
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Compares two scored ids in the order this heap keeps them.
+     *
+     * @return true if the first id ranks before the second one
+     */
+    public static boolean isBetter(double score, int id, double otherScore, int otherId) {
+        int compared = Double.compare(score, otherScore);
+        return compared > 0 || (compared == 0 && id < otherId);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isBetter(scores[parent], ids[parent], scores[index], ids[index])) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && isBetter(scores[worst], ids[worst], scores[left], ids[left])) {
+                worst = left;
+            }
+            if (right < size && isBetter(scores[worst], ids[worst], scores[right], ids[right])) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int first, int second) {
+        double score = scores[first];
+        scores[first] = scores[second];
+        scores[second] = score;
+
+        int id = ids[first];
+        ids[first] = ids[second];
+        ids[second] = id;
+    }
+}